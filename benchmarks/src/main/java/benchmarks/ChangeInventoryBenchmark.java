@@ -0,0 +1,102 @@
+package benchmarks;
+
+import components.ChangeInventory;
+import enumerations.Coin;
+import enumerations.Note;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Change computation over differently shaped inventories, both against the
+ * cached change table (counts unchanged between calls) and right after a
+ * sale changed the counts, which is what a purchase actually pays for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeInventoryBenchmark {
+    @Param({"SPARSE", "COINS_ONLY", "DENSE", "NOTES_HEAVY"})
+    public String inventoryShape;
+
+    @Param({"35", "1865", "9990"})
+    public long amountInCents;
+
+    private ChangeInventory changeInventory;
+
+    @Setup
+    public void setUp() {
+        this.changeInventory = new ChangeInventory();
+
+        switch (this.inventoryShape) {
+            case "SPARSE":
+                this.changeInventory.putPayableWithCount(Coin.TEN_CENTS, 5);
+                this.changeInventory.putPayableWithCount(Coin.TWENTY_FIVE_CENTS, 3);
+                this.changeInventory.putPayableWithCount(Coin.ONE_DOLLAR, 120);
+                break;
+            case "COINS_ONLY":
+                this.changeInventory.putPayableWithCount(Coin.TEN_CENTS, 200);
+                this.changeInventory.putPayableWithCount(Coin.TWENTY_FIVE_CENTS, 200);
+                this.changeInventory.putPayableWithCount(Coin.FIFTY_CENTS, 200);
+                this.changeInventory.putPayableWithCount(Coin.ONE_DOLLAR, 200);
+                break;
+            case "DENSE":
+                this.changeInventory.putPayableWithCount(Coin.TEN_CENTS, 50);
+                this.changeInventory.putPayableWithCount(Coin.TWENTY_FIVE_CENTS, 50);
+                this.changeInventory.putPayableWithCount(Coin.FIFTY_CENTS, 50);
+                this.changeInventory.putPayableWithCount(Coin.ONE_DOLLAR, 50);
+                this.changeInventory.putPayableWithCount(Note.TWENTY_DOLLARS_BILL, 10);
+                this.changeInventory.putPayableWithCount(Note.FIFTY_DOLLARS_BILL, 10);
+                break;
+            case "NOTES_HEAVY":
+                this.changeInventory.putPayableWithCount(Coin.TEN_CENTS, 20);
+                this.changeInventory.putPayableWithCount(Coin.TWENTY_FIVE_CENTS, 20);
+                this.changeInventory.putPayableWithCount(Coin.ONE_DOLLAR, 10);
+                this.changeInventory.putPayableWithCount(Note.TWENTY_DOLLARS_BILL, 100);
+                this.changeInventory.putPayableWithCount(Note.FIFTY_DOLLARS_BILL, 100);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown inventory shape " + this.inventoryShape);
+        }
+    }
+
+    @Benchmark
+    public boolean canProduceChangeForAmount() {
+        return this.changeInventory.canProduceChangeForAmount(this.amountInCents);
+    }
+
+    @Benchmark
+    public void getChange(Blackhole blackhole) {
+        if (this.changeInventory.canProduceChangeForAmount(this.amountInCents)) {
+            blackhole.consume(this.changeInventory.getChange(this.amountInCents));
+        }
+    }
+
+    /**
+     * A dime goes in and out again, so every call sees changed counts and
+     * rebuilds the change table, while the inventory stays the same shape.
+     */
+    @Benchmark
+    public void getChangeAfterSale(Blackhole blackhole) {
+        this.changeInventory.add(Coin.TEN_CENTS, 1);
+        this.changeInventory.deduct(Coin.TEN_CENTS, 1);
+
+        if (this.changeInventory.canProduceChangeForAmount(this.amountInCents)) {
+            blackhole.consume(this.changeInventory.getChange(this.amountInCents));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import core.SnackVendingMachine;
+import core.VendingSession;
+import enumerations.Card;
+import enumerations.CardAuthorizationStatus;
+import enumerations.Coin;
+import enumerations.Note;
+import events.MachineEventBus;
+import events.NoOpEventSink;
+import interfaces.CardPaymentProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import payment.CardAuthorization;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * insertMoney through each money slot: validation, crediting the session
+ * and, for coins and notes, its escrow. Cards are authorized by a processor
+ * that answers at once, so insertCard measures the machine's side of
+ * starting an authorization.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertMoneyBenchmark {
+    private MachineEventBus eventBus;
+    private SnackVendingMachine machine;
+    private VendingSession session;
+    private Card card;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.eventBus = new MachineEventBus(NoOpEventSink.INSTANCE);
+        this.machine = new SnackVendingMachine();
+        this.machine.setEventBus(this.eventBus);
+        this.machine.setCardPaymentProcessor(new CardPaymentProcessor() {
+            @Override
+            public CompletableFuture<CardAuthorization> authorize(Card card, long amountInCents) {
+                return CompletableFuture.completedFuture(
+                        new CardAuthorization(1, card, amountInCents, CardAuthorizationStatus.APPROVED)
+                );
+            }
+
+            @Override
+            public CompletableFuture<Void> capture(CardAuthorization authorization, long amountInCents) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public void release(CardAuthorization authorization) { }
+        });
+        this.card = new Card("4002123456789900", "VISA", 20);
+    }
+
+    /**
+     * Starts every iteration from an empty inventory and session, so counts
+     * and balances cannot overflow however fast the slots are.
+     */
+    @Setup(Level.Iteration)
+    public void resetMachine() {
+        this.machine.getChangeInventory().clear();
+        this.session = this.machine.openSession();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.eventBus.close();
+    }
+
+    @Benchmark
+    public long insertCoin() {
+        this.machine.insertMoney(this.session, this.machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS);
+        return this.session.getAccumulatedMoneyInCents();
+    }
+
+    @Benchmark
+    public long insertNote() {
+        this.machine.insertMoney(this.session, this.machine.getNoteSlot(), Note.TWENTY_DOLLARS_BILL);
+        return this.session.getAccumulatedMoneyInCents();
+    }
+
+    @Benchmark
+    public long insertCard() {
+        this.machine.insertMoney(this.session, this.machine.getCardSlot(), this.card);
+        return this.session.getAccumulatedMoneyInCents();
+    }
+}
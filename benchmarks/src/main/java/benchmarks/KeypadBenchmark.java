@@ -0,0 +1,70 @@
+package benchmarks;
+
+import components.Button;
+import components.Keypad;
+import core.SnackVendingMachine;
+import events.MachineEventBus;
+import events.NoOpEventSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keypad.pressButton including the DisplayScreen edit every press makes
+ * (frames are drawn by the screen's renderer, off the benchmark thread):
+ * typing a slot code, correcting it and clearing the display.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeypadBenchmark {
+    private MachineEventBus eventBus;
+    private SnackVendingMachine machine;
+    private Keypad keypad;
+
+    @Setup
+    public void setUp() {
+        this.eventBus = new MachineEventBus(NoOpEventSink.INSTANCE);
+        this.machine = new SnackVendingMachine(8, 12);
+        this.machine.setEventBus(this.eventBus);
+        this.keypad = this.machine.getKeypad();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.eventBus.close();
+    }
+
+    @Benchmark
+    public int typeSlotCode() {
+        this.keypad.pressButton(Button.H);
+        this.keypad.pressButton(Button.DIGIT_ONE);
+        this.keypad.pressButton(Button.DIGIT_TWO);
+
+        return this.keypad.pressButton(Button.CLEAR) + this.keypad.getEnteredSlotId();
+    }
+
+    @Benchmark
+    public int correctSlotCode() {
+        this.keypad.pressButton(Button.C);
+        this.keypad.pressButton(Button.DIGIT_NINE);
+        this.keypad.pressButton(Button.DELETE);
+        this.keypad.pressButton(Button.DIGIT_THREE);
+        int slotId = this.keypad.getEnteredSlotId();
+
+        return this.keypad.pressButton(Button.CLEAR) + slotId;
+    }
+}
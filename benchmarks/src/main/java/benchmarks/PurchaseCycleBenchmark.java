@@ -0,0 +1,120 @@
+package benchmarks;
+
+import components.Button;
+import components.Keypad;
+import core.PurchaseOrder;
+import core.SnackVendingMachine;
+import core.VendingSession;
+import enumerations.Coin;
+import enumerations.PaymentType;
+import enumerations.SnackItem;
+import events.MachineEventBus;
+import events.NoOpEventSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.Pair;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full purchases of a bagel (1.50$) paid with two dollar coins, so every
+ * purchase also pays out a half-dollar of change: through a session, through
+ * the keypad as a customer would, and as part of a batch of purchase orders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PurchaseCycleBenchmark {
+    private static final int BATCH_SIZE = 1024;
+    private static final int STOCK_PER_SLOT = 100_000_000;
+
+    private MachineEventBus eventBus;
+    private SnackVendingMachine machine;
+    private VendingSession session;
+    private PurchaseOrder[] purchaseOrders;
+    private int slotId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.eventBus = new MachineEventBus(NoOpEventSink.INSTANCE);
+        this.machine = new SnackVendingMachine();
+        this.machine.setEventBus(this.eventBus);
+        this.session = this.machine.openSession();
+        this.purchaseOrders = new PurchaseOrder[BATCH_SIZE];
+
+        for (int orderIndex = 0; orderIndex < BATCH_SIZE; orderIndex++) {
+            this.purchaseOrders[orderIndex] = new PurchaseOrder(
+                    orderIndex % this.machine.getSnackSlotGrid().getSlotsCount(),
+                    PaymentType.CASH,
+                    Coin.ONE_DOLLAR,
+                    Coin.ONE_DOLLAR
+            );
+        }
+    }
+
+    /**
+     * Restocks every slot and the half-dollars before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void restock() {
+        for (int slotId = 0; slotId < this.machine.getSnackSlotGrid().getSlotsCount(); slotId++) {
+            this.machine.getSnackSlot(slotId).setItem(SnackItem.BAGEL);
+            this.machine.getSnackSlot(slotId).setCapacity(STOCK_PER_SLOT);
+            this.machine.getSnackSlot(slotId).setQuantity(STOCK_PER_SLOT);
+        }
+
+        this.machine.getChangeInventory().clear();
+        this.machine.getChangeInventory().putPayableWithCount(Coin.FIFTY_CENTS, STOCK_PER_SLOT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.eventBus.close();
+    }
+
+    @Benchmark
+    public Pair<SnackItem, ?> purchaseThroughSession() {
+        this.slotId = (this.slotId + 1) % this.machine.getSnackSlotGrid().getSlotsCount();
+        this.session.setShouldStartProcessingRequest(true);
+        this.machine.processRequestAndReturnSelectedSnackItem(this.session, this.machine.getSnackSlot(this.slotId));
+        this.machine.insertMoney(this.session, this.machine.getCoinSlot(), Coin.ONE_DOLLAR);
+        this.machine.insertMoney(this.session, this.machine.getCoinSlot(), Coin.ONE_DOLLAR);
+
+        return this.machine.dispenseSelectedItemAndCustomerChange(this.session);
+    }
+
+    @Benchmark
+    public Pair<SnackItem, ?> purchaseThroughKeypad() {
+        Keypad keypad = this.machine.getKeypad();
+
+        keypad.pressButton(Button.CLEAR);
+        keypad.pressButton(Button.A);
+        keypad.pressButton(Button.DIGIT_ONE);
+        keypad.pressButton(Button.CONFIRM);
+        this.machine.processRequestAndReturnSelectedSnackItem(this.machine.getSnackSlot(keypad.getEnteredSlotId()));
+        this.machine.insertMoney(this.machine.getCoinSlot(), Coin.ONE_DOLLAR);
+        this.machine.insertMoney(this.machine.getCoinSlot(), Coin.ONE_DOLLAR);
+
+        return this.machine.dispenseSelectedItemAndCustomerChange();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object purchaseInBatch() {
+        return this.machine.processPurchaseOrders(this.purchaseOrders);
+    }
+}
@@ -6,11 +6,21 @@ public enum Button {
     C("C", 2),
     D("D", 3),
     E("E", 4),
+    F("F", 5),
+    G("G", 6),
+    H("H", 7),
+    I("I", 8),
+    J("J", 9),
     DIGIT_ONE("1", 0),
     DIGIT_TWO("2", 1),
     DIGIT_THREE("3", 2),
     DIGIT_FOUR("4", 3),
     DIGIT_FIVE("5", 4),
+    DIGIT_SIX("6", 5),
+    DIGIT_SEVEN("7", 6),
+    DIGIT_EIGHT("8", 7),
+    DIGIT_NINE("9", 8),
+    DIGIT_ZERO("0", -6), // ONLY MEANINGFUL AS PART OF A MULTI-DIGIT COLUMN CODE, e.g H10
     CONFIRM("CONFIRM", -1),
     CLEAR("CLEAR", -2),
     DELETE("DELETE", -3),
@@ -1,9 +1,8 @@
 package components;
 import core.SnackVendingMachine;
 import enumerations.Card;
-import exception.InvalidEntryException;
+import enumerations.OperationResult;
 import interfaces.Payable;
-import utils.ValidationExceptionMessageHandler;
 
 public class CardSlot extends MoneySlot {
     public CardSlot(SnackVendingMachine snackVendingMachine) {
@@ -11,14 +10,8 @@ public class CardSlot extends MoneySlot {
     }
 
     @Override
-    public boolean validate(Payable entry) throws InvalidEntryException {
-        if (! (entry instanceof Card)) {
-            throw new InvalidEntryException(
-                    ValidationExceptionMessageHandler.getInvalidPayableEnteredMessage(entry)
-            );
-        }
-
-        return true;
+    public OperationResult checkEntry(Payable entry) {
+        return entry instanceof Card ? OperationResult.OK : OperationResult.INVALID_ENTRY;
     }
 
     @Override
@@ -1,122 +1,579 @@
 package components;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
-import java.util.List;
-import java.util.HashMap;
+import java.util.Set;
+import java.util.Iterator;
 import interfaces.Payable;
-import java.math.BigDecimal;
-import java.util.Comparator;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.LinkedHashMap;
-import java.util.stream.Stream;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import enumerations.ExceptionMessage;
 import exception.InsufficientChangeException;
+import interfaces.MachineJournal;
+import journal.NoOpMachineJournal;
+import metrics.ChangeInventoryMetrics;
 
 public class ChangeInventory {
-    private Map<Payable, Integer> inventory;
+    public static final long DEFAULT_CHANGE_TABLE_CEILING_IN_CENTS = 10_000;
+
+    private static final int[] CHANGE_INDEXES = DenominationRegistry.getChangeIndexes();
+    private static final long[] CHANGE_WORTHS_IN_CENTS = new long[CHANGE_INDEXES.length];
+
+    static {
+        for (int index = 0; index < CHANGE_INDEXES.length; index++) {
+            CHANGE_WORTHS_IN_CENTS[index] = DenominationRegistry.getWorthInCents(CHANGE_INDEXES[index]);
+        }
+    }
+
+    private final AtomicIntegerArray counts;
+    private final AtomicLong modificationsCount;
+    private final Map<Payable, Integer> inventoryView;
+    private final long changeTableCeilingInCents;
+    private final ChangeInventoryMetrics metrics;
+    private volatile VersionedChangeTable changeTable;
+    private volatile MachineJournal journal;
 
     public ChangeInventory() {
-        this.inventory = new HashMap<Payable, Integer>();
+        this(DEFAULT_CHANGE_TABLE_CEILING_IN_CENTS);
+    }
+
+    public ChangeInventory(long changeTableCeilingInCents) {
+        this.counts = new AtomicIntegerArray(DenominationRegistry.size());
+        this.modificationsCount = new AtomicLong();
+        this.inventoryView = new InventoryView();
+        this.changeTableCeilingInCents = changeTableCeilingInCents;
+        this.journal = NoOpMachineJournal.INSTANCE;
+        this.metrics = new ChangeInventoryMetrics();
+    }
+
+    public ChangeInventoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    public MachineJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @param journal journal every change of a count is recorded to, as a delta.
+     */
+    public void setJournal(MachineJournal journal) {
+        this.journal = journal;
     }
 
+    /**
+     * @return read-only view of the non-zero counts, Payable -> count, in descending order of worth.
+     */
     public Map<Payable, Integer> getInventory() {
-        return inventory;
+        return inventoryView;
     }
 
     public void setInventory(Map<Payable, Integer> inventory) {
-        this.inventory = inventory;
+        this.clear();
+
+        for (Map.Entry<Payable, Integer> entry : inventory.entrySet()) {
+            this.putPayableWithCount(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public long getChangeTableCeilingInCents() {
+        return changeTableCeilingInCents;
     }
 
     public int getCountOfPayable(Payable payable) {
-        return this.inventory.getOrDefault(payable, 0);
+        int index = DenominationRegistry.indexOf(payable);
+        return index < 0 ? 0 : this.counts.get(index);
     }
 
     public void add(Payable payable, int additionCount) {
-        int count = this.inventory.getOrDefault(payable, 0);
-        this.inventory.put(payable, count + additionCount);
+        int index = indexOfDenomination(payable);
+
+        this.counts.getAndAdd(index, additionCount);
+        this.modificationsCount.incrementAndGet();
+        this.journal.recordChangeCountAdjusted(index, additionCount);
     }
 
     public void deduct(Payable payable, int deductionCount) {
-        if (this.hasSufficientCountOfPayable(payable, deductionCount)) {
-            inventory.put(payable, inventory.get(payable) - deductionCount);
+        this.tryDeduct(payable, deductionCount);
+    }
+
+    /**
+     * Deducts the count iff the inventory holds at least that many of the payable.
+     *
+     * @return true if the deduction was applied.
+     */
+    public boolean tryDeduct(Payable payable, int deductionCount) {
+        int index = indexOfDenomination(payable);
+        boolean isDeducted = this.tryDeductAtIndex(index, deductionCount);
+
+        if (isDeducted) {
+            this.modificationsCount.incrementAndGet();
+            this.journal.recordChangeCountAdjusted(index, -deductionCount);
+        }
+
+        return isDeducted;
+    }
+
+    /**
+     * Deducts every count of the change or none of them: counts are taken one
+     * denomination at a time by compare-and-set and, if any of them is short,
+     * the ones already taken are put back.
+     *
+     * @return true if the whole change was deducted.
+     */
+    public boolean tryDeductAll(Map<Payable, Integer> change) {
+        int[] indexes = new int[change.size()];
+        int[] deductionCounts = new int[indexes.length];
+        int deductedCount = 0;
+
+        for (Map.Entry<Payable, Integer> entry : change.entrySet()) {
+            indexes[deductedCount] = indexOfDenomination(entry.getKey());
+            deductionCounts[deductedCount] = entry.getValue();
+
+            if (! this.tryDeductAtIndex(indexes[deductedCount], deductionCounts[deductedCount])) {
+                for (int index = 0; index < deductedCount; index++) {
+                    this.counts.getAndAdd(indexes[index], deductionCounts[index]);
+                }
+
+                this.modificationsCount.incrementAndGet();
+                return false;
+            }
+
+            deductedCount++;
+        }
+
+        this.modificationsCount.incrementAndGet();
+
+        for (int index = 0; index < deductedCount; index++) {
+            this.journal.recordChangeCountAdjusted(indexes[index], -deductionCounts[index]);
+        }
+
+        return true;
+    }
+
+    private boolean tryDeductAtIndex(int index, int deductionCount) {
+        while (true) {
+            int count = this.counts.get(index);
+
+            if (count < deductionCount) {
+                return false;
+            } else if (this.counts.compareAndSet(index, count, count - deductionCount)) {
+                return true;
+            }
         }
     }
 
     public void clear() {
-        this.inventory.clear();
+        for (int index = 0; index < this.counts.length(); index++) {
+            int clearedCount = this.counts.getAndSet(index, 0);
+
+            if (clearedCount != 0) {
+                this.journal.recordChangeCountAdjusted(index, -clearedCount);
+            }
+        }
+
+        this.modificationsCount.incrementAndGet();
     }
 
     public void putPayableWithCount(Payable payable, int count) {
-        this.inventory.put(payable, count);
+        int index = indexOfDenomination(payable);
+        int previousCount = this.counts.getAndSet(index, count);
+
+        this.modificationsCount.incrementAndGet();
+        this.journal.recordChangeCountAdjusted(index, count - previousCount);
+    }
+
+    /**
+     * @return count of bytes writeCountsTo puts.
+     */
+    public int getSerializedSize() {
+        return Integer.BYTES * (1 + this.counts.length());
+    }
+
+    /**
+     * Puts the count of denominations, then every count in DenominationRegistry order.
+     */
+    public void writeCountsTo(ByteBuffer buffer) {
+        buffer.putInt(this.counts.length());
+
+        for (int index = 0; index < this.counts.length(); index++) {
+            buffer.putInt(this.counts.get(index));
+        }
+    }
+
+    /**
+     * Replaces every count with the ones written by writeCountsTo. The counts
+     * are checked before any is replaced, so rejected ones leave the
+     * inventory and the buffer as they were.
+     *
+     * @throws IllegalArgumentException if they were written for another set of denominations, or any is negative.
+     */
+    public void readCountsFrom(ByteBuffer buffer) {
+        checkCounts(buffer, this.counts.length());
+        int denominationsCount = buffer.getInt();
+
+        for (int index = 0; index < denominationsCount; index++) {
+            int count = buffer.getInt();
+            int previousCount = this.counts.getAndSet(index, count);
+
+            if (count != previousCount) {
+                this.journal.recordChangeCountAdjusted(index, count - previousCount);
+            }
+        }
+
+        this.modificationsCount.incrementAndGet();
     }
 
     public boolean hasSufficientCountOfPayable(Payable payable, int count) {
         return this.getCountOfPayable(payable) >= count ;
     }
 
-    public Map<Payable, Integer> getChange(BigDecimal amount) throws InsufficientChangeException {
-        Map<Payable, Integer> change = new LinkedHashMap<>();
+    public Map<Payable, Integer> getChange(long amountInCents) throws InsufficientChangeException {
+        Map<Payable, Integer> change = this.findChange(amountInCents);
 
-        final List<Payable> ALLOWED_PAYABLES = Stream.concat(NoteSlot.ALLOWED_NOTES.stream(), CoinSlot.ALLOWED_COINS.stream())
-                .sorted(Comparator.comparing(Payable::getWorth).reversed())
-                .collect(Collectors.toList());
+        if (change == null) {
+            throw new InsufficientChangeException(
+                    ExceptionMessage.INSUFFICIENT_CHANGE_IN_INVENTORY.getMessage()
+            );
+        }
 
-        if (amount.compareTo(BigDecimal.valueOf(0)) > 0) {
-            BigDecimal balance = amount;
-            BigDecimal inventoryAvailablePayableCount, calculatedPayableCount;
+        return change;
+    }
+
+    /**
+     * Same as getChange, for callers to whom insufficient change is an
+     * expected outcome rather than an error.
+     *
+     * @return the change, Payable -> count, or null if the amount cannot be produced from the inventory.
+     */
+    public Map<Payable, Integer> findChange(long amountInCents) {
+        long startNanos = this.metrics.startTiming();
+        Map<Payable, Integer> change = new LinkedHashMap<>();
 
-            for (Payable allowedPayable: ALLOWED_PAYABLES) {
-                if (balance.compareTo(allowedPayable.getWorth()) >= 0) {
-                    calculatedPayableCount = balance.divideToIntegralValue(allowedPayable.getWorth());
-                    inventoryAvailablePayableCount = BigDecimal.valueOf(this.getCountOfPayable(allowedPayable));
+        if (amountInCents > 0) {
+            int[] plan = new int[CHANGE_INDEXES.length];
 
-                    int minCountAvailable = calculatedPayableCount.compareTo(inventoryAvailablePayableCount) < 0 ?
-                            calculatedPayableCount.intValue():
-                            inventoryAvailablePayableCount.intValue();
+            if (! this.getChangeTableFor(amountInCents).fillPlan(amountInCents, plan)) {
+                this.metrics.countInsufficientChange();
+                this.metrics.recordGetChangeLatency(startNanos);
+                return null;
+            }
 
-                    change.put(allowedPayable, minCountAvailable);
-                    balance = balance.subtract(allowedPayable.getWorth().multiply(BigDecimal.valueOf(minCountAvailable)));
+            for (int index = 0; index < plan.length; index++) {
+                if (plan[index] > 0) {
+                    change.put(DenominationRegistry.getDenomination(CHANGE_INDEXES[index]), plan[index]);
                 }
             }
+        }
+
+        this.metrics.recordGetChangeLatency(startNanos);
+        return change;
+    }
 
+    /**
+     * Computes the change plan for the amount once and takes its coins out of
+     * the inventory straight away, so nothing can claim them before the
+     * returned reservation is committed or rolled back. If another thread
+     * takes some of the planned coins first, the plan is recomputed.
+     *
+     * @throws InsufficientChangeException if the amount cannot be produced from the inventory.
+     */
+    public ChangeReservation reserveChange(long amountInCents) throws InsufficientChangeException {
+        ChangeReservation changeReservation = this.tryReserveChange(amountInCents);
+
+        if (changeReservation == null) {
+            throw new InsufficientChangeException(
+                    ExceptionMessage.INSUFFICIENT_CHANGE_IN_INVENTORY.getMessage()
+            );
+        }
+
+        return changeReservation;
+    }
+
+    /**
+     * Same as reserveChange, without throwing.
+     *
+     * @return the reservation, or null if the amount cannot be produced from the inventory.
+     */
+    public ChangeReservation tryReserveChange(long amountInCents) {
+        while (true) {
+            Map<Payable, Integer> change = this.findChange(amountInCents);
+
+            if (change == null) {
+                return null;
+            } else if (this.tryDeductAll(change)) {
+                return new ChangeReservation(this, change);
+            }
+        }
+    }
 
-            if (balance.compareTo(BigDecimal.ZERO) > 0) {
-                Payable payable = ALLOWED_PAYABLES.stream()
-                        .filter(p -> {
-                            BigDecimal[] values = amount.divideAndRemainder(p.getWorth());
-                            return values[1].compareTo(BigDecimal.ZERO) == 0 &&
-                                    this.getCountOfPayable(p) == values[0].intValue();
-                        })
-                        .findFirst()
-                        .orElse(null);
-
-                if (payable == null) {
-                    throw new InsufficientChangeException(
-                            ExceptionMessage.INSUFFICIENT_CHANGE_IN_INVENTORY.getMessage()
-                    );
+    /**
+     * Same as tryReserveChange, for a customer whose inserted payables are
+     * still in escrow: the change is reserved from the inventory alone if it
+     * can be, otherwise from the inventory and the escrow together (e.g a
+     * quarter back out of the customer's own two quarters). The escrow is
+     * left as it is until the reservation is committed, which takes the
+     * escrowed part of the change out of it, so a rolled back reservation
+     * leaves the customer's payables in escrow, to be given back as they
+     * came in.
+     *
+     * @return the reservation, or null if the amount cannot be produced even with the escrow.
+     */
+    public ChangeReservation tryReserveChange(long amountInCents, Escrow escrow) {
+        ChangeReservation changeReservation = this.tryReserveChange(amountInCents);
+
+        if (changeReservation != null || escrow.isEmpty()) {
+            return changeReservation;
+        }
+
+        while (true) {
+            int[] plan = this.planChangeWith(amountInCents, escrow);
+
+            if (plan == null) {
+                return null;
+            }
+
+            Map<Payable, Integer> change = new LinkedHashMap<>();
+            Map<Payable, Integer> inventoryChange = new LinkedHashMap<>();
+            int[] escrowCounts = new int[this.counts.length()];
+
+            for (int index = 0; index < plan.length; index++) {
+                int denominationIndex = CHANGE_INDEXES[index];
+                Payable denomination = DenominationRegistry.getDenomination(denominationIndex);
+
+                if (plan[index] > 0) {
+                    // The customer's own payables first, nobody else can take them.
+                    escrowCounts[denominationIndex] = Math.min(plan[index], escrow.getCount(denominationIndex));
+                    change.put(denomination, plan[index]);
+                }
+
+                if (plan[index] > escrowCounts[denominationIndex]) {
+                    inventoryChange.put(denomination, plan[index] - escrowCounts[denominationIndex]);
                 }
+            }
 
-                change.clear();
-                change.put(payable, this.getCountOfPayable(payable));
+            if (this.tryDeductAll(inventoryChange)) {
+                return new ChangeReservation(this, change, escrow, escrowCounts);
             }
         }
+    }
 
-        return change;
+    /**
+     * Takes every escrowed payable into the inventory once the sale they paid
+     * for commits, and empties the escrow.
+     */
+    public void mergeEscrow(Escrow escrow) {
+        for (int index = 0; index < this.counts.length(); index++) {
+            int count = escrow.getCount(index);
+
+            if (count > 0) {
+                Payable payable = DenominationRegistry.getDenomination(index);
+
+                this.add(payable, count);
+                this.journal.recordEscrowReleased(payable, count);
+            }
+        }
+
+        escrow.clear();
+    }
+
+    public boolean canProduceChangeForAmount(long amountInCents) {
+        return amountInCents <= 0 || this.getChangeTableFor(amountInCents).canProduce(amountInCents);
     }
 
-    public boolean canProduceChangeForAmount(BigDecimal amount) {
-        try {
-            getChange(amount);
-            return true;
-        } catch (InsufficientChangeException insufficientChangeException) {
-            return false;
+    /**
+     * Returns the cached change table, rebuilding it first if the counts
+     * changed since it was built or it does not reach the amount. Amounts
+     * above the ceiling get a one-off table sized for them, which is not cached.
+     *
+     * A rebuilt table only reaches the next power of two above the amount
+     * (up to the ceiling): counts change with nearly every sale, and most
+     * change amounts are far below the ceiling, so building the whole table
+     * each time would dominate the cost of a purchase.
+     *
+     * The modifications count is read before the counts, so a cached table
+     * is never older than the version it is tagged with.
+     */
+    private ChangeTable getChangeTableFor(long amountInCents) {
+        if (amountInCents > this.changeTableCeilingInCents) {
+            return this.buildChangeTable(amountInCents);
         }
+
+        long version = this.modificationsCount.get();
+        VersionedChangeTable cachedChangeTable = this.changeTable;
+
+        if (cachedChangeTable == null
+                || cachedChangeTable.version != version
+                || cachedChangeTable.table.getCeilingInCents() < amountInCents) {
+            long ceilingInCents = Math.min(this.changeTableCeilingInCents, Long.highestOneBit(amountInCents) << 1);
+
+            cachedChangeTable = new VersionedChangeTable(version, this.buildChangeTable(ceilingInCents));
+            this.changeTable = cachedChangeTable;
+        }
+
+        return cachedChangeTable.table;
+    }
+
+    /**
+     * Builds a one-off table over the inventory and the escrow together,
+     * which is only needed when the inventory alone falls short.
+     *
+     * @return count of every change denomination, in CHANGE_INDEXES order, or null if the amount cannot be produced.
+     */
+    private int[] planChangeWith(long amountInCents, Escrow escrow) {
+        int[] changeCounts = new int[CHANGE_INDEXES.length];
+        int[] plan = new int[CHANGE_INDEXES.length];
+
+        for (int index = 0; index < CHANGE_INDEXES.length; index++) {
+            changeCounts[index] = this.counts.get(CHANGE_INDEXES[index]) + escrow.getCount(CHANGE_INDEXES[index]);
+        }
+
+        this.metrics.countChangeTableBuild();
+        return new ChangeTable(CHANGE_WORTHS_IN_CENTS, changeCounts, amountInCents).fillPlan(amountInCents, plan) ? plan : null;
+    }
+
+    /**
+     * Takes the counts out of the escrow, as change handed straight back to the customer.
+     */
+    void releaseFromEscrow(Escrow escrow, int[] escrowCounts) {
+        for (int index = 0; index < escrowCounts.length; index++) {
+            if (escrowCounts[index] > 0) {
+                escrow.setCount(index, escrow.getCount(index) - escrowCounts[index]);
+                this.journal.recordEscrowReleased(DenominationRegistry.getDenomination(index), escrowCounts[index]);
+            }
+        }
+    }
+
+    private ChangeTable buildChangeTable(long ceilingInCents) {
+        this.metrics.countChangeTableBuild();
+        int[] changeCounts = new int[CHANGE_INDEXES.length];
+
+        for (int index = 0; index < CHANGE_INDEXES.length; index++) {
+            changeCounts[index] = this.counts.get(CHANGE_INDEXES[index]);
+        }
+
+        return new ChangeTable(CHANGE_WORTHS_IN_CENTS, changeCounts, ceilingInCents);
     }
 
     public void reflectInventoryDeductionsForChange(Map<Payable, Integer> change) {
-        for (Payable payable: change.keySet()) {
-            this.deduct(payable, change.get(payable));
+        for (Map.Entry<Payable, Integer> entry : change.entrySet()) {
+            this.deduct(entry.getKey(), entry.getValue());
         }
     }
 
+    /**
+     * Checks counts written by writeCountsTo at the buffer's position, without moving it.
+     *
+     * @throws IllegalArgumentException if they were written for another set of denominations, or any is negative.
+     */
+    static void checkCounts(ByteBuffer buffer, int expectedDenominationsCount) {
+        int position = buffer.position();
+
+        if (buffer.remaining() < Integer.BYTES * (1 + expectedDenominationsCount)) {
+            throw new IllegalArgumentException("Counts are cut short: " + buffer.remaining() + " bytes left");
+        }
+
+        int denominationsCount = buffer.getInt(position);
+
+        if (denominationsCount != expectedDenominationsCount) {
+            throw new IllegalArgumentException("Counts are for " + denominationsCount + " denominations, not " + expectedDenominationsCount);
+        }
+
+        for (int index = 0; index < denominationsCount; index++) {
+            int count = buffer.getInt(position + Integer.BYTES * (1 + index));
+
+            if (count < 0) {
+                throw new IllegalArgumentException("Negative count of " + DenominationRegistry.getDenomination(index) + ": " + count);
+            }
+        }
+    }
+
+    private static int indexOfDenomination(Payable payable) {
+        int index = DenominationRegistry.indexOf(payable);
+
+        if (index < 0) {
+            throw new IllegalArgumentException("Only coins and notes can be kept in the change inventory: " + payable);
+        }
+
+        return index;
+    }
+
+    private static final class VersionedChangeTable {
+        private final long version;
+        private final ChangeTable table;
+
+        private VersionedChangeTable(long version, ChangeTable table) {
+            this.version = version;
+            this.table = table;
+        }
+    }
+
+    private class InventoryView extends AbstractMap<Payable, Integer> {
+        @Override
+        public Integer get(Object key) {
+            if (! (key instanceof Payable)) {
+                return null;
+            }
+
+            int index = DenominationRegistry.indexOf((Payable) key);
+            int count = index < 0 ? 0 : counts.get(index);
+            return count == 0 ? null : count;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return this.get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<Payable, Integer>> entrySet() {
+            return new AbstractSet<Entry<Payable, Integer>>() {
+                @Override
+                public Iterator<Entry<Payable, Integer>> iterator() {
+                    return new Iterator<Entry<Payable, Integer>>() {
+                        private int nextIndex = this.advanceFrom(0);
+
+                        private int advanceFrom(int index) {
+                            while (index < counts.length() && counts.get(index) == 0) {
+                                index++;
+                            }
+
+                            return index;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return nextIndex < counts.length();
+                        }
+
+                        @Override
+                        public Entry<Payable, Integer> next() {
+                            if (! this.hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            int index = nextIndex;
+                            nextIndex = this.advanceFrom(index + 1);
+                            return new SimpleImmutableEntry<>(DenominationRegistry.getDenomination(index), counts.get(index));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+
+                    for (int index = 0; index < counts.length(); index++) {
+                        size += counts.get(index) == 0 ? 0 : 1;
+                    }
+
+                    return size;
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package components;
+
+import interfaces.Payable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handle over change that has already been taken out of a ChangeInventory.
+ * The coins are held aside until the reservation is either committed (they
+ * leave the machine as customer change) or rolled back (they are put back).
+ * Part of the change may come from the customer's escrow: those payables
+ * stay in escrow until the reservation is committed.
+ */
+public class ChangeReservation {
+    private final ChangeInventory changeInventory;
+    private final Map<Payable, Integer> change;
+    private final Escrow escrow;
+    private final int[] escrowCounts;
+    private final AtomicBoolean isSettled;
+
+    ChangeReservation(ChangeInventory changeInventory, Map<Payable, Integer> change) {
+        this(changeInventory, change, null, null);
+    }
+
+    /**
+     * @param escrowCounts count of every payable of the change to take out of the escrow, by DenominationRegistry index.
+     */
+    ChangeReservation(ChangeInventory changeInventory, Map<Payable, Integer> change, Escrow escrow, int[] escrowCounts) {
+        this.changeInventory = changeInventory;
+        this.change = Collections.unmodifiableMap(change);
+        this.escrow = escrow;
+        this.escrowCounts = escrowCounts;
+        this.isSettled = new AtomicBoolean(false);
+    }
+
+    public Map<Payable, Integer> getChange() {
+        return change;
+    }
+
+    public boolean isSettled() {
+        return isSettled.get();
+    }
+
+    /**
+     * Finalizes the reservation, the held coins are handed out as change.
+     *
+     * @return the reserved change, Payable -> count.
+     */
+    public Map<Payable, Integer> commit() {
+        this.settle();
+
+        if (this.escrow != null) {
+            this.changeInventory.releaseFromEscrow(this.escrow, this.escrowCounts);
+        }
+
+        return change;
+    }
+
+    /**
+     * Cancels the reservation and returns the held coins to the inventory.
+     */
+    public void rollback() {
+        this.settle();
+
+        for (Map.Entry<Payable, Integer> entry : change.entrySet()) {
+            int inventoryCount = this.escrow == null ?
+                    entry.getValue() :
+                    entry.getValue() - this.escrowCounts[DenominationRegistry.indexOf(entry.getKey())];
+
+            if (inventoryCount > 0) {
+                this.changeInventory.add(entry.getKey(), inventoryCount);
+            }
+        }
+    }
+
+    private void settle() {
+        if (! this.isSettled.compareAndSet(false, true)) {
+            throw new IllegalStateException("Change reservation is already committed or rolled back");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package components;
+
+import java.util.Arrays;
+
+/**
+ * Bounded-knapsack change table over integer cents.
+ *
+ * For every amount up to the ceiling (in steps of the denominations' greatest
+ * common divisor) it stores the minimum number of pieces needed to pay it out
+ * of the given counts, and for every denomination how many pieces the optimal
+ * plan takes, so a change plan is rebuilt by walking the table backwards.
+ */
+public class ChangeTable {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final long[] denominationsInCents;
+    private final long unitInCents;
+    private final long ceilingInCents;
+    private final int[] minimumPiecesCount;
+    private final int[][] takenPiecesCount;
+
+    /**
+     * @param denominationsInCents worth of each denomination, in any order.
+     * @param counts available count of each denomination, aligned with denominationsInCents.
+     * @param ceilingInCents largest amount the table has to answer for.
+     */
+    public ChangeTable(long[] denominationsInCents, int[] counts, long ceilingInCents) {
+        this.denominationsInCents = denominationsInCents.clone();
+        this.unitInCents = greatestCommonDivisor(denominationsInCents);
+        this.ceilingInCents = ceilingInCents;
+
+        int amountsCount = (int) (ceilingInCents / this.unitInCents) + 1;
+        this.minimumPiecesCount = new int[amountsCount];
+        this.takenPiecesCount = new int[denominationsInCents.length][];
+
+        Arrays.fill(this.minimumPiecesCount, UNREACHABLE);
+        this.minimumPiecesCount[0] = 0;
+
+        int[] previous = new int[amountsCount];
+        int[] windowIndexes = new int[amountsCount];
+        int[] windowValues = new int[amountsCount];
+
+        for (int denominationIndex = 0; denominationIndex < denominationsInCents.length; denominationIndex++) {
+            int step = (int) (denominationsInCents[denominationIndex] / this.unitInCents);
+            int count = Math.max(counts[denominationIndex], 0);
+            int[] taken = new int[amountsCount];
+
+            System.arraycopy(this.minimumPiecesCount, 0, previous, 0, amountsCount);
+
+            if (count > 0) {
+                // new[j] = min over i in [j - count, j] of (previous[i] - i) + j, per residue class of the step.
+                for (int residue = 0; residue < step && residue < amountsCount; residue++) {
+                    int head = 0, tail = 0;
+
+                    for (int j = 0, amount = residue; amount < amountsCount; j++, amount += step) {
+                        if (previous[amount] != UNREACHABLE) {
+                            int value = previous[amount] - j;
+
+                            while (tail > head && windowValues[tail - 1] >= value) {
+                                tail--;
+                            }
+
+                            windowIndexes[tail] = j;
+                            windowValues[tail++] = value;
+                        }
+
+                        while (tail > head && windowIndexes[head] < j - count) {
+                            head++;
+                        }
+
+                        if (tail > head) {
+                            this.minimumPiecesCount[amount] = windowValues[head] + j;
+                            taken[amount] = j - windowIndexes[head];
+                        } else {
+                            this.minimumPiecesCount[amount] = UNREACHABLE;
+                        }
+                    }
+                }
+            }
+
+            this.takenPiecesCount[denominationIndex] = taken;
+        }
+    }
+
+    public long getCeilingInCents() {
+        return ceilingInCents;
+    }
+
+    public boolean canProduce(long amountInCents) {
+        return this.getMinimumPiecesCount(amountInCents) != UNREACHABLE;
+    }
+
+    /**
+     * @return the minimum count of pieces summing to the amount, or Integer.MAX_VALUE if it cannot be paid.
+     */
+    public int getMinimumPiecesCount(long amountInCents) {
+        if (amountInCents < 0 || amountInCents > this.ceilingInCents || amountInCents % this.unitInCents != 0) {
+            return UNREACHABLE;
+        }
+
+        return this.minimumPiecesCount[(int) (amountInCents / this.unitInCents)];
+    }
+
+    /**
+     * Walks the table back from the given amount and writes the optimal count
+     * of each denomination into plan (aligned with the denominations array).
+     *
+     * @return false if the amount cannot be produced, plan is left untouched then.
+     */
+    public boolean fillPlan(long amountInCents, int[] plan) {
+        if (! this.canProduce(amountInCents)) {
+            return false;
+        }
+
+        int amount = (int) (amountInCents / this.unitInCents);
+
+        for (int denominationIndex = this.denominationsInCents.length - 1; denominationIndex >= 0; denominationIndex--) {
+            int taken = this.takenPiecesCount[denominationIndex][amount];
+            plan[denominationIndex] = taken;
+            amount -= taken * (int) (this.denominationsInCents[denominationIndex] / this.unitInCents);
+        }
+
+        return true;
+    }
+
+    private static long greatestCommonDivisor(long[] values) {
+        long divisor = 0;
+
+        for (long value : values) {
+            long a = divisor, b = value;
+
+            while (b != 0) {
+                long remainder = a % b;
+                a = b;
+                b = remainder;
+            }
+
+            divisor = a;
+        }
+
+        return divisor == 0 ? 1 : divisor;
+    }
+}
@@ -2,11 +2,8 @@ package components;
 
 import core.SnackVendingMachine;
 import enumerations.Coin;
-import enumerations.Note;
-import exception.InvalidEntryException;
-import exception.UnsupportedPayableTypeException;
+import enumerations.OperationResult;
 import interfaces.Payable;
-import utils.ValidationExceptionMessageHandler;
 
 import java.util.Arrays;
 import java.util.List;
@@ -20,27 +17,17 @@ public class CoinSlot extends MoneySlot {
     );
 
     public CoinSlot(SnackVendingMachine snackVendingMachine) {
-        super(snackVendingMachine);
+        super(snackVendingMachine, CoinSlot.ALLOWED_COINS);
     }
 
     @Override
-    public boolean validate(Payable entry) throws InvalidEntryException, UnsupportedPayableTypeException {
+    public OperationResult checkEntry(Payable entry) {
         if (! (entry instanceof Coin)) {
-            throw new InvalidEntryException(
-                    ValidationExceptionMessageHandler.getInvalidPayableEnteredMessage(entry)
-            );
-        } else if (! isSupportedPayableType(entry)) {
-            throw new UnsupportedPayableTypeException(
-                    ValidationExceptionMessageHandler.getUnsupportedPayableTypeMessage(entry)
-            );
+            return OperationResult.INVALID_ENTRY;
+        } else if (! this.isSupportedPayableType(entry)) {
+            return OperationResult.UNSUPPORTED_PAYABLE_TYPE;
         }
 
-        return true;
-    }
-
-    @Override
-    public boolean isSupportedPayableType(Payable payable) {
-        return CoinSlot.ALLOWED_COINS.stream()
-                .anyMatch(c -> c.getWorth().compareTo(payable.getWorth()) == 0);
+        return OperationResult.OK;
     }
 }
@@ -0,0 +1,85 @@
+package components;
+
+import enumerations.Coin;
+import enumerations.Note;
+import interfaces.Payable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Gives every Coin and Note a dense index, once at startup, in descending
+ * order of worth. Inventories keep their counts in plain arrays addressed by
+ * these indexes instead of hashing Payable keys. Worths are fixed when the
+ * Coin and Note constants are created, so the order never goes stale.
+ */
+public final class DenominationRegistry {
+    private static final Payable[] DENOMINATIONS;
+    private static final long[] WORTHS_IN_CENTS;
+    private static final int[] COIN_INDEXES = new int[Coin.values().length];
+    private static final int[] NOTE_INDEXES = new int[Note.values().length];
+    private static final int[] CHANGE_INDEXES;
+
+    static {
+        DENOMINATIONS = new Payable[COIN_INDEXES.length + NOTE_INDEXES.length];
+        System.arraycopy(Note.values(), 0, DENOMINATIONS, 0, NOTE_INDEXES.length);
+        System.arraycopy(Coin.values(), 0, DENOMINATIONS, NOTE_INDEXES.length, COIN_INDEXES.length);
+        Arrays.sort(DENOMINATIONS, Comparator.comparingLong(Payable::getWorthInCents).reversed());
+
+        WORTHS_IN_CENTS = new long[DENOMINATIONS.length];
+
+        for (int index = 0; index < DENOMINATIONS.length; index++) {
+            Payable denomination = DENOMINATIONS[index];
+            WORTHS_IN_CENTS[index] = denomination.getWorthInCents();
+
+            if (denomination instanceof Coin) {
+                COIN_INDEXES[((Coin) denomination).ordinal()] = index;
+            } else {
+                NOTE_INDEXES[((Note) denomination).ordinal()] = index;
+            }
+        }
+
+        CHANGE_INDEXES = Arrays.stream(DENOMINATIONS)
+                .filter(d -> NoteSlot.ALLOWED_NOTES.contains(d) || CoinSlot.ALLOWED_COINS.contains(d))
+                .mapToInt(DenominationRegistry::indexOf)
+                .toArray();
+    }
+
+    private DenominationRegistry() { }
+
+    public static int size() {
+        return DENOMINATIONS.length;
+    }
+
+    /**
+     * @return the dense index of the payable, or -1 if it is not a Coin or a Note.
+     */
+    public static int indexOf(Payable payable) {
+        if (payable instanceof Coin) {
+            return COIN_INDEXES[((Coin) payable).ordinal()];
+        } else if (payable instanceof Note) {
+            return NOTE_INDEXES[((Note) payable).ordinal()];
+        }
+
+        return -1;
+    }
+
+    public static boolean isDenomination(Payable payable) {
+        return indexOf(payable) >= 0;
+    }
+
+    public static Payable getDenomination(int index) {
+        return DENOMINATIONS[index];
+    }
+
+    public static long getWorthInCents(int index) {
+        return WORTHS_IN_CENTS[index];
+    }
+
+    /**
+     * @return indexes of the denominations the machine pays change with, in descending order of worth.
+     */
+    public static int[] getChangeIndexes() {
+        return CHANGE_INDEXES.clone();
+    }
+}
@@ -0,0 +1,186 @@
+package components;
+
+import interfaces.DisplayDriver;
+import metrics.HistogramSnapshot;
+import metrics.LatencyHistogram;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Draws a DisplayScreen on its driver in frames, off the thread that edits
+ * the screen. Edits only mark the screen dirty: the first one schedules a
+ * frame no sooner than one refresh interval after the previous frame, and
+ * every edit made until it runs is coalesced into it. A frame whose text is
+ * the same as the last drawn one is skipped.
+ *
+ * Frames run on a shared daemon thread unless the renderer is given its own
+ * executor, e.g when the driver is slow and machines must not wait on each
+ * other's screens.
+ */
+public class DisplayRenderer {
+    public static final int DEFAULT_FRAMES_PER_SECOND = 30;
+
+    private final DisplayScreen screen;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean isFrameScheduled;
+    private final LatencyHistogram frameLatency;
+    private final LongAdder updatesCount;
+    private final LongAdder renderedFramesCount;
+    private final LongAdder skippedFramesCount;
+    private final LongAdder failedFramesCount;
+    private volatile DisplayDriver driver;
+    private volatile long frameIntervalNanos;
+    private volatile long lastFrameNanos;
+    private char[] frame;
+    private char[] lastFrame;
+    private int lastFrameLength;
+
+    public DisplayRenderer(DisplayScreen screen, DisplayDriver driver) {
+        this(screen, driver, DEFAULT_FRAMES_PER_SECOND, SharedExecutorHolder.SHARED_EXECUTOR);
+    }
+
+    /**
+     * @param executor executor frames are drawn on, it is not shut down by the renderer.
+     */
+    public DisplayRenderer(DisplayScreen screen, DisplayDriver driver, int framesPerSecond, ScheduledExecutorService executor) {
+        this.screen = screen;
+        this.driver = driver;
+        this.executor = executor;
+        this.isFrameScheduled = new AtomicBoolean(false);
+        this.frameLatency = new LatencyHistogram();
+        this.updatesCount = new LongAdder();
+        this.renderedFramesCount = new LongAdder();
+        this.skippedFramesCount = new LongAdder();
+        this.failedFramesCount = new LongAdder();
+        this.frame = new char[screen.getCapacity()];
+        this.lastFrame = new char[screen.getCapacity()];
+        this.lastFrameLength = -1;
+        this.setFramesPerSecond(framesPerSecond);
+        this.lastFrameNanos = System.nanoTime() - this.frameIntervalNanos;
+    }
+
+    public DisplayDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * The next frame is drawn on the new driver, even if its text did not change.
+     */
+    public synchronized void setDriver(DisplayDriver driver) {
+        this.driver = driver;
+        this.lastFrameLength = -1;
+        this.markDirty();
+    }
+
+    public int getFramesPerSecond() {
+        return (int) (TimeUnit.SECONDS.toNanos(1) / frameIntervalNanos);
+    }
+
+    public void setFramesPerSecond(int framesPerSecond) {
+        if (framesPerSecond < 1) {
+            throw new IllegalArgumentException("Frames per second must be positive: " + framesPerSecond);
+        }
+
+        this.frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+    }
+
+    /**
+     * Called on every edit of the screen, never blocks on the driver.
+     */
+    public void markDirty() {
+        this.updatesCount.increment();
+
+        if (this.isFrameScheduled.compareAndSet(false, true)) {
+            long delayNanos = this.lastFrameNanos + this.frameIntervalNanos - System.nanoTime();
+            this.executor.schedule(this::renderFrame, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Waits until the screen's current text was drawn, or found unchanged.
+     */
+    public void flush() {
+        try {
+            this.executor.submit(this::renderFrame).get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException executionException) {
+            throw new IllegalStateException("Display frame failed", executionException.getCause());
+        }
+    }
+
+    /**
+     * @return count of edits of the screen, i.e frames that would be drawn without coalescing.
+     */
+    public long getUpdatesCount() {
+        return updatesCount.sum();
+    }
+
+    public long getRenderedFramesCount() {
+        return renderedFramesCount.sum();
+    }
+
+    /**
+     * @return count of frames not drawn because their text was the one already on the screen.
+     */
+    public long getSkippedFramesCount() {
+        return skippedFramesCount.sum();
+    }
+
+    /**
+     * @return count of frames the driver threw on.
+     */
+    public long getFailedFramesCount() {
+        return failedFramesCount.sum();
+    }
+
+    /**
+     * @return time the driver took to draw each frame.
+     */
+    public HistogramSnapshot getFrameLatency() {
+        return frameLatency.snapshot();
+    }
+
+    private synchronized void renderFrame() {
+        // Cleared first, so an edit made while this frame is copied or drawn schedules the next one.
+        this.isFrameScheduled.set(false);
+        this.lastFrameNanos = System.nanoTime();
+
+        int frameLength = this.screen.copyTextTo(this.frame);
+
+        if (frameLength == this.lastFrameLength
+                && Arrays.equals(this.frame, 0, frameLength, this.lastFrame, 0, frameLength)) {
+            this.skippedFramesCount.increment();
+            return;
+        }
+
+        try {
+            this.driver.draw(this.frame, frameLength);
+        } catch (RuntimeException driverException) {
+            this.failedFramesCount.increment();
+            return;
+        }
+
+        this.frameLatency.recordSince(this.lastFrameNanos);
+        this.renderedFramesCount.increment();
+
+        char[] drawnFrame = this.frame;
+        this.frame = this.lastFrame;
+        this.lastFrame = drawnFrame;
+        this.lastFrameLength = frameLength;
+    }
+
+    private static class SharedExecutorHolder {
+        private static final ScheduledExecutorService SHARED_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "display-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
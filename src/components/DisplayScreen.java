@@ -1,52 +1,145 @@
 package components;
 
+import events.MachineEvent;
+import events.MachineEventBus;
+import interfaces.DisplayDriver;
+
+/**
+ * Text of the machine's screen, kept in a fixed char buffer of the screen's
+ * width: appending and deleting work in place, text beyond the capacity is
+ * cut off.
+ *
+ * Edits do not draw the screen, they mark it dirty for its DisplayRenderer,
+ * which draws it in coalesced frames on another thread. By default frames
+ * are published on the screen's event bus.
+ */
 public class DisplayScreen {
-    private StringBuilder textBuilder;
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private final char[] text;
+    private final DisplayRenderer renderer;
+    private int length;
+    private MachineEventBus eventBus;
 
     public DisplayScreen() {
-        this.textBuilder = new StringBuilder("");
+        this(MachineEventBus.getDefault());
+    }
+
+    public DisplayScreen(MachineEventBus eventBus) {
+        this.eventBus = eventBus;
+        this.text = new char[DEFAULT_CAPACITY];
+        this.renderer = new DisplayRenderer(this, this::publishFrame);
         this.display();
     }
 
     public DisplayScreen(String text) {
-        this.textBuilder = new StringBuilder(text);
-        this.display();
+        this(new StringBuilder(text));
     }
 
     public DisplayScreen(StringBuilder textBuilder) {
-        this.textBuilder = textBuilder;
+        this.eventBus = MachineEventBus.getDefault();
+        this.text = new char[Math.max(DEFAULT_CAPACITY, textBuilder.length())];
+        this.renderer = new DisplayRenderer(this, this::publishFrame);
+        this.copyFrom(textBuilder);
+        this.display();
+    }
+
+    public int getCapacity() {
+        return text.length;
+    }
+
+    public DisplayRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * @param driver device the screen is drawn on instead of the event bus.
+     */
+    public void setDriver(DisplayDriver driver) {
+        this.renderer.setDriver(driver);
+    }
+
+    public synchronized int getLength() {
+        return length;
+    }
+
+    public synchronized void appendText(String text) {
+        int appendedLength = Math.min(text.length(), this.text.length - this.length);
+
+        text.getChars(0, appendedLength, this.text, this.length);
+        this.length += appendedLength;
         this.display();
     }
 
-    public void appendText(String text) {
-        this.textBuilder.append(text);
+    public synchronized void appendCharacter(char character) {
+        if (this.length < this.text.length) {
+            this.text[this.length++] = character;
+        }
+
         this.display();
     }
 
-    public void delete() {
-        this.textBuilder = new StringBuilder(this.textBuilder.substring(0, this.textBuilder.length() - 1));
+    public synchronized void delete() {
+        if (this.length > 0) {
+            this.length--;
+        }
+
         this.display();
     }
 
-    public void clear() {
-        this.textBuilder.replace(0, textBuilder.length(), "");
+    public synchronized void clear() {
+        this.length = 0;
         this.display();
     }
 
+    /**
+     * Marks the screen dirty, its text is drawn with the renderer's next frame.
+     */
     public void display() {
-        System.out.println(getDisplayedText());
+        this.renderer.markDirty();
+    }
+
+    public MachineEventBus getEventBus() {
+        return eventBus;
+    }
+
+    public void setEventBus(MachineEventBus eventBus) {
+        this.eventBus = eventBus;
     }
 
-    public StringBuilder getTextBuilder() {
-        return textBuilder;
+    /**
+     * @return a copy of the displayed text.
+     */
+    public synchronized StringBuilder getTextBuilder() {
+        return new StringBuilder(this.length).append(this.text, 0, this.length);
     }
 
-    public void setTextBuilder(StringBuilder textBuilder) {
-        this.textBuilder = textBuilder;
+    public synchronized void setTextBuilder(StringBuilder textBuilder) {
+        this.copyFrom(textBuilder);
         this.display();
     }
 
-    public String getDisplayedText() {
-        return getTextBuilder().toString();
+    public synchronized String getDisplayedText() {
+        return new String(this.text, 0, this.length);
+    }
+
+    /**
+     * @return count of characters copied, i.e the text's length.
+     */
+    synchronized int copyTextTo(char[] frame) {
+        System.arraycopy(this.text, 0, frame, 0, this.length);
+        return this.length;
+    }
+
+    private void publishFrame(char[] frame, int length) {
+        this.eventBus.publish(MachineEvent.displayUpdated(new String(frame, 0, length)));
+    }
+
+    private void copyFrom(CharSequence textBuilder) {
+        this.length = Math.min(textBuilder.length(), this.text.length);
+
+        for (int index = 0; index < this.length; index++) {
+            this.text[index] = textBuilder.charAt(index);
+        }
     }
 }
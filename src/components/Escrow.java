@@ -0,0 +1,117 @@
+package components;
+
+import interfaces.Payable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Coins and notes a customer inserted during a session, held apart from the
+ * machine's ChangeInventory until the sale commits: a cancelled session gives
+ * back exactly the payables that came in, without computing any change.
+ * Counts are kept by DenominationRegistry index. Like its session, an escrow
+ * is meant to be used by one customer (thread) at a time.
+ */
+public class Escrow {
+    private final int[] counts;
+    private long worthInCents;
+
+    public Escrow() {
+        this.counts = new int[DenominationRegistry.size()];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the payable is not a coin or a note.
+     */
+    public void add(Payable payable, int count) {
+        int index = DenominationRegistry.indexOf(payable);
+
+        if (index < 0) {
+            throw new IllegalArgumentException("Only coins and notes can be kept in escrow: " + payable);
+        }
+
+        this.counts[index] += count;
+        this.worthInCents += payable.getWorthInCents() * count;
+    }
+
+    /**
+     * @param denominationIndex the payable's index in the DenominationRegistry.
+     */
+    public int getCount(int denominationIndex) {
+        return counts[denominationIndex];
+    }
+
+    public int getCountOfPayable(Payable payable) {
+        int index = DenominationRegistry.indexOf(payable);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * @param denominationIndex the payable's index in the DenominationRegistry.
+     */
+    public void setCount(int denominationIndex, int count) {
+        this.worthInCents += DenominationRegistry.getWorthInCents(denominationIndex) * (count - this.counts[denominationIndex]);
+        this.counts[denominationIndex] = count;
+    }
+
+    public long getWorthInCents() {
+        return worthInCents;
+    }
+
+    public boolean isEmpty() {
+        return worthInCents == 0;
+    }
+
+    /**
+     * @return the escrowed payables, Payable -> count, in descending order of worth.
+     */
+    public Map<Payable, Integer> toMap() {
+        Map<Payable, Integer> payables = new LinkedHashMap<>();
+
+        for (int index = 0; index < this.counts.length; index++) {
+            if (this.counts[index] > 0) {
+                payables.put(DenominationRegistry.getDenomination(index), this.counts[index]);
+            }
+        }
+
+        return payables;
+    }
+
+    /**
+     * @return count of bytes writeCountsTo puts.
+     */
+    public int getSerializedSize() {
+        return Integer.BYTES * (1 + this.counts.length);
+    }
+
+    /**
+     * Puts the count of denominations, then every count in DenominationRegistry order.
+     */
+    public void writeCountsTo(ByteBuffer buffer) {
+        buffer.putInt(this.counts.length);
+        buffer.asIntBuffer().put(this.counts);
+        buffer.position(buffer.position() + this.counts.length * Integer.BYTES);
+    }
+
+    /**
+     * Replaces every count with the ones written by writeCountsTo, once they
+     * are all checked.
+     *
+     * @throws IllegalArgumentException if they were written for another set of denominations, or any is negative.
+     */
+    public void readCountsFrom(ByteBuffer buffer) {
+        ChangeInventory.checkCounts(buffer, this.counts.length);
+        int denominationsCount = buffer.getInt();
+
+        for (int index = 0; index < denominationsCount; index++) {
+            this.setCount(index, buffer.getInt());
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(this.counts, 0);
+        this.worthInCents = 0;
+    }
+}
@@ -4,9 +4,22 @@ import core.SnackVendingMachine;
 
 import java.util.Arrays;
 
+/**
+ * Decodes the stream of pressed buttons straight into the pending selection:
+ * a row letter starts a new slot code and every digit after it extends the
+ * column number, so the slot id is known after each press without parsing
+ * the code. The code typed so far is kept in a fixed buffer, pressing a
+ * button allocates nothing.
+ */
 public class Keypad {
+    public static final int MAX_SLOT_CODE_LENGTH = 10;
+
     private Button[] buttons;
     private SnackVendingMachine snackVendingMachine;
+    private final char[] enteredSlotCode = new char[MAX_SLOT_CODE_LENGTH];
+    private int enteredSlotCodeLength;
+    private int pendingRowIndex = -1;
+    private int pendingColumnNumber;
 
     public Keypad() {
         this.buttons = new Button[] {
@@ -54,23 +67,112 @@ public class Keypad {
         this.snackVendingMachine = snackVendingMachine;
     }
 
+    /**
+     * @return the slot code typed so far: the last row letter pressed followed
+     * by the digits pressed after it, e.g "H12".
+     */
+    public String getEnteredSlotCode() {
+        return new String(this.enteredSlotCode, 0, this.enteredSlotCodeLength);
+    }
+
+    /**
+     * @return flat id of the slot named by the entered slot code, or
+     * SlotCodeResolver.INVALID_SLOT_ID if it does not name a slot of the machine.
+     */
+    public int getEnteredSlotId() {
+        if (this.pendingRowIndex < 0) {
+            return SlotCodeResolver.INVALID_SLOT_ID;
+        }
+
+        return this.getSnackVendingMachine().getSlotCodeResolver().resolve(this.pendingRowIndex, this.pendingColumnNumber);
+    }
+
+    /**
+     * Handles a press of the button. Only row letters and digits are shown
+     * on the display screen, control buttons act on it instead.
+     * Digits typed once the slot code is MAX_SLOT_CODE_LENGTH long are ignored.
+     *
+     * @return the button's index.
+     */
     public int pressButton (Button button) {
         SnackVendingMachine snackVendingMachine = this.getSnackVendingMachine();
         DisplayScreen displayScreen = snackVendingMachine.getDisplayScreen();
-        displayScreen.appendText(button.getLabel());
-
-        if (button.getIndex() == Button.DELETE.getIndex()) {
-            displayScreen.delete();
-        } else if (button.getIndex() == Button.CLEAR.getIndex()) {
-            displayScreen.clear();
-        } else if (button.getIndex() == Button.CONFIRM.getIndex()) {
-            snackVendingMachine.setShouldStartProcessingRequest(true);
-        } else if (button.getIndex() == Button.RESET.getIndex()) {
-            snackVendingMachine.resetToInitialState();
-        } else if (button.getIndex() == Button.CANCEL.getIndex()) {
-            snackVendingMachine.cancelRequestAndRefundCustomer();
+
+        switch (button) {
+            case A: case B: case C: case D: case E:
+            case F: case G: case H: case I: case J:
+                this.clearEnteredSlotCode();
+                this.pendingRowIndex = button.ordinal() - Button.A.ordinal();
+                this.enterCharacter(displayScreen, (char) ('A' + this.pendingRowIndex));
+                break;
+            case DIGIT_ONE: case DIGIT_TWO: case DIGIT_THREE:
+            case DIGIT_FOUR: case DIGIT_FIVE: case DIGIT_SIX:
+            case DIGIT_SEVEN: case DIGIT_EIGHT: case DIGIT_NINE:
+                this.enterDigit(displayScreen, button.ordinal() - Button.DIGIT_ONE.ordinal() + 1);
+                break;
+            case DIGIT_ZERO:
+                this.enterDigit(displayScreen, 0);
+                break;
+            case DELETE:
+                displayScreen.delete();
+                this.deleteLastCharacter();
+                break;
+            case CLEAR:
+                displayScreen.clear();
+                this.clearEnteredSlotCode();
+                break;
+            case CONFIRM:
+                snackVendingMachine.setShouldStartProcessingRequest(true);
+                break;
+            case RESET:
+                snackVendingMachine.resetToInitialState();
+                this.clearEnteredSlotCode();
+                break;
+            case CANCEL:
+                snackVendingMachine.cancelRequestAndRefundCustomer();
+                this.clearEnteredSlotCode();
+                break;
         }
 
         return button.getIndex();
     }
+
+    private void enterDigit(DisplayScreen displayScreen, int digit) {
+        if (this.enterCharacter(displayScreen, (char) ('0' + digit))) {
+            this.pendingColumnNumber = this.pendingColumnNumber * 10 + digit;
+        }
+    }
+
+    /**
+     * @return false if the slot code is already full and the character was ignored.
+     */
+    private boolean enterCharacter(DisplayScreen displayScreen, char character) {
+        if (this.enteredSlotCodeLength == MAX_SLOT_CODE_LENGTH) {
+            return false;
+        }
+
+        this.enteredSlotCode[this.enteredSlotCodeLength++] = character;
+        displayScreen.appendCharacter(character);
+        return true;
+    }
+
+    private void deleteLastCharacter() {
+        if (this.enteredSlotCodeLength == 0) {
+            return;
+        }
+
+        char deletedCharacter = this.enteredSlotCode[--this.enteredSlotCodeLength];
+
+        if (deletedCharacter >= '0' && deletedCharacter <= '9') {
+            this.pendingColumnNumber /= 10;
+        } else {
+            this.pendingRowIndex = -1;
+        }
+    }
+
+    private void clearEnteredSlotCode() {
+        this.enteredSlotCodeLength = 0;
+        this.pendingRowIndex = -1;
+        this.pendingColumnNumber = 0;
+    }
 }
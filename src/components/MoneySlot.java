@@ -1,19 +1,49 @@
 package components;
 
 import core.SnackVendingMachine;
+import enumerations.OperationResult;
 import exception.InvalidEntryException;
 import exception.UnsupportedPayableTypeException;
 import interfaces.Payable;
+import utils.ValidationExceptionMessageHandler;
+
+import java.util.Collection;
+import java.util.Collections;
 
 public abstract class MoneySlot {
     protected SnackVendingMachine owner;
     protected boolean isFunctional = true;
+    private final long acceptedDenominationsMask;
 
     public MoneySlot() {
+        this(null);
     }
 
     public MoneySlot(SnackVendingMachine owner) {
+        this(owner, Collections.emptyList());
+    }
+
+    /**
+     * @param acceptedDenominations coins and notes the slot takes, compiled
+     * into a bitmask of their DenominationRegistry indexes so that checking
+     * an entry is a single bit test.
+     * @throws IllegalArgumentException if one of them is not a coin or a note.
+     */
+    public MoneySlot(SnackVendingMachine owner, Collection<? extends Payable> acceptedDenominations) {
+        long acceptedDenominationsMask = 0;
+
+        for (Payable denomination : acceptedDenominations) {
+            int denominationIndex = DenominationRegistry.indexOf(denomination);
+
+            if (denominationIndex < 0) {
+                throw new IllegalArgumentException("Only coins and notes can be accepted denominations: " + denomination);
+            }
+
+            acceptedDenominationsMask |= 1L << denominationIndex;
+        }
+
         this.owner = owner;
+        this.acceptedDenominationsMask = acceptedDenominationsMask;
     }
 
     public SnackVendingMachine getOwner() {
@@ -32,7 +62,33 @@ public abstract class MoneySlot {
         isFunctional = functional;
     }
 
-    public abstract boolean validate(Payable entry) throws InvalidEntryException, UnsupportedPayableTypeException;
+    /**
+     * Checks the entry the way validate does, but reports a rejected entry
+     * as a result code instead of throwing, so nothing is allocated for it.
+     *
+     * @return OK, INVALID_ENTRY if the entry belongs to another slot or
+     * UNSUPPORTED_PAYABLE_TYPE if the slot does not take it.
+     */
+    public abstract OperationResult checkEntry(Payable entry);
+
+    public boolean validate(Payable entry) throws InvalidEntryException, UnsupportedPayableTypeException {
+        OperationResult result = this.checkEntry(entry);
+
+        if (result == OperationResult.INVALID_ENTRY) {
+            throw new InvalidEntryException(
+                    ValidationExceptionMessageHandler.getInvalidPayableEnteredMessage(entry)
+            );
+        } else if (result == OperationResult.UNSUPPORTED_PAYABLE_TYPE) {
+            throw new UnsupportedPayableTypeException(
+                    ValidationExceptionMessageHandler.getUnsupportedPayableTypeMessage(entry)
+            );
+        }
 
-    public abstract boolean isSupportedPayableType(Payable payable);
+        return true;
+    }
+
+    public boolean isSupportedPayableType(Payable payable) {
+        int denominationIndex = DenominationRegistry.indexOf(payable);
+        return denominationIndex >= 0 && (this.acceptedDenominationsMask & (1L << denominationIndex)) != 0;
+    }
 }
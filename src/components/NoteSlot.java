@@ -5,35 +5,23 @@ import java.util.List;
 import java.util.Arrays;
 import enumerations.Note;
 import core.SnackVendingMachine;
-import exception.InvalidEntryException;
-import exception.UnsupportedPayableTypeException;
-import utils.ValidationExceptionMessageHandler;
+import enumerations.OperationResult;
 
 public class NoteSlot extends MoneySlot {
     public static final List<Note> ALLOWED_NOTES = Arrays.asList(Note.TWENTY_DOLLARS_BILL, Note.FIFTY_DOLLARS_BILL);
 
     public NoteSlot(SnackVendingMachine snackVendingMachine) {
-        super(snackVendingMachine);
+        super(snackVendingMachine, NoteSlot.ALLOWED_NOTES);
     }
 
     @Override
-    public boolean validate(Payable entry) throws InvalidEntryException, UnsupportedPayableTypeException{
+    public OperationResult checkEntry(Payable entry) {
         if (! (entry instanceof Note)) {
-            throw new InvalidEntryException(
-                    ValidationExceptionMessageHandler.getInvalidPayableEnteredMessage(entry)
-            );
+            return OperationResult.INVALID_ENTRY;
         } else if (! this.isSupportedPayableType(entry) ) {
-            throw new UnsupportedPayableTypeException(
-                    ValidationExceptionMessageHandler.getUnsupportedPayableTypeMessage(entry)
-            );
+            return OperationResult.UNSUPPORTED_PAYABLE_TYPE;
         }
 
-        return true;
-    }
-
-    @Override
-    public boolean isSupportedPayableType(Payable payable) {
-        return NoteSlot.ALLOWED_NOTES.stream()
-                .anyMatch(n -> n.getWorth().compareTo(payable.getWorth()) == 0);
+        return OperationResult.OK;
     }
 }
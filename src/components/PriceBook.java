@@ -0,0 +1,47 @@
+package components;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Publishes the current PriceTable of one machine, or of a segment of a
+ * fleet whose machines all share the book. Reading the current table is a
+ * single volatile read and never locks; repricing builds a new table and
+ * swaps the reference, so every machine sharing the book sees the new prices
+ * at once, while sessions that already pinned the previous table finish
+ * their purchase at the prices they were shown.
+ */
+public class PriceBook {
+    private final AtomicReference<PriceTable> currentPriceTable;
+
+    public PriceBook() {
+        this(PriceTable.ofListPrices());
+    }
+
+    public PriceBook(PriceTable priceTable) {
+        this.currentPriceTable = new AtomicReference<>(priceTable);
+    }
+
+    public PriceTable getCurrent() {
+        return this.currentPriceTable.get();
+    }
+
+    /**
+     * Replaces the current table, whatever it is.
+     */
+    public void publish(PriceTable priceTable) {
+        this.currentPriceTable.set(priceTable);
+    }
+
+    /**
+     * Derives the next table from the current one and publishes it, retrying
+     * if another repricing was published meanwhile, so concurrent repricings
+     * are never lost.
+     *
+     * @param repricing builds the new table from the current one, may be called more than once.
+     * @return the published table.
+     */
+    public PriceTable reprice(UnaryOperator<PriceTable> repricing) {
+        return this.currentPriceTable.updateAndGet(repricing);
+    }
+}
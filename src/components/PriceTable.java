@@ -0,0 +1,102 @@
+package components;
+
+import enumerations.SnackItem;
+import utils.Money;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable prices of every SnackItem, in cents, indexed by the item's
+ * ordinal. Repricing builds a new table with the next version number, so a
+ * table can be read from any thread without locking and a session that
+ * pinned one keeps charging the same prices throughout its purchase.
+ */
+public final class PriceTable {
+    private static final SnackItem[] SNACK_ITEMS = SnackItem.values();
+
+    private final long version;
+    private final long[] pricesInCents;
+    private final long highestPriceInCents;
+
+    private PriceTable(long version, long[] pricesInCents) {
+        this.version = version;
+        this.pricesInCents = pricesInCents;
+        this.highestPriceInCents = Arrays.stream(pricesInCents).max().orElse(0);
+    }
+
+    /**
+     * @return version 1 of a table holding every item's list price, i.e SnackItem.getPriceInCents.
+     */
+    public static PriceTable ofListPrices() {
+        long[] pricesInCents = new long[SNACK_ITEMS.length];
+
+        for (SnackItem snackItem : SNACK_ITEMS) {
+            pricesInCents[snackItem.ordinal()] = snackItem.getPriceInCents();
+        }
+
+        return new PriceTable(1, pricesInCents);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getPriceInCents(SnackItem snackItem) {
+        return pricesInCents[snackItem.ordinal()];
+    }
+
+    public BigDecimal getPrice(SnackItem snackItem) {
+        return Money.toBigDecimal(this.getPriceInCents(snackItem));
+    }
+
+    public long getHighestPriceInCents() {
+        return highestPriceInCents;
+    }
+
+    /**
+     * @return the next version of the table, with the item's price replaced.
+     * @throws IllegalArgumentException if the price is negative.
+     */
+    public PriceTable withPriceInCents(SnackItem snackItem, long priceInCents) {
+        long[] pricesInCents = this.pricesInCents.clone();
+
+        pricesInCents[snackItem.ordinal()] = checkPrice(snackItem, priceInCents);
+        return new PriceTable(this.version + 1, pricesInCents);
+    }
+
+    /**
+     * @param pricesInCents SnackItem -> new price in cents, items left out keep their price.
+     * @return the next version of the table, with all the given prices replaced at once.
+     * @throws IllegalArgumentException if a price is negative.
+     */
+    public PriceTable withPricesInCents(Map<SnackItem, Long> pricesInCents) {
+        long[] newPricesInCents = this.pricesInCents.clone();
+
+        for (Map.Entry<SnackItem, Long> entry : pricesInCents.entrySet()) {
+            newPricesInCents[entry.getKey().ordinal()] = checkPrice(entry.getKey(), entry.getValue());
+        }
+
+        return new PriceTable(this.version + 1, newPricesInCents);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("PriceTable{version=").append(version);
+
+        for (SnackItem snackItem : SNACK_ITEMS) {
+            description.append(", ").append(snackItem.getName()).append('=').append(this.getPrice(snackItem));
+        }
+
+        return description.append('}').toString();
+    }
+
+    private static long checkPrice(SnackItem snackItem, long priceInCents) {
+        if (priceInCents < 0) {
+            throw new IllegalArgumentException("Price of " + snackItem.getName() + " cannot be negative: " + priceInCents);
+        }
+
+        return priceInCents;
+    }
+}
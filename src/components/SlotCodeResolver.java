@@ -0,0 +1,92 @@
+package components;
+
+/**
+ * Turns slot codes as typed on the keypad, a row letter followed by a
+ * 1-based column number (e.g "B3" or "H12"), into flat slot ids
+ * (rowIndex * columnsCount + columnIndex) and back. Both directions are
+ * precomputed tables, so resolving does not depend on the grid size.
+ */
+public class SlotCodeResolver {
+    public static final int MAX_ROWS_COUNT = 26;
+    public static final int INVALID_SLOT_ID = -1;
+
+    private final int rowsCount;
+    private final int columnsCount;
+    private final int[] slotIdByRowAndColumnNumber;
+    private final String[] slotCodeBySlotId;
+
+    public SlotCodeResolver(int rowsCount, int columnsCount) {
+        if (rowsCount < 1 || rowsCount > MAX_ROWS_COUNT || columnsCount < 1) {
+            throw new IllegalArgumentException("Unsupported grid size " + rowsCount + "x" + columnsCount);
+        }
+
+        this.rowsCount = rowsCount;
+        this.columnsCount = columnsCount;
+        this.slotIdByRowAndColumnNumber = new int[rowsCount * (columnsCount + 1)];
+        this.slotCodeBySlotId = new String[rowsCount * columnsCount];
+
+        for (int rowIndex = 0; rowIndex < rowsCount; rowIndex++) {
+            this.slotIdByRowAndColumnNumber[rowIndex * (columnsCount + 1)] = INVALID_SLOT_ID;
+
+            for (int columnNumber = 1; columnNumber <= columnsCount; columnNumber++) {
+                int slotId = rowIndex * columnsCount + columnNumber - 1;
+
+                this.slotIdByRowAndColumnNumber[rowIndex * (columnsCount + 1) + columnNumber] = slotId;
+                this.slotCodeBySlotId[slotId] = String.valueOf((char) ('A' + rowIndex)) + columnNumber;
+            }
+        }
+    }
+
+    public int getRowsCount() {
+        return rowsCount;
+    }
+
+    public int getColumnsCount() {
+        return columnsCount;
+    }
+
+    public int getSlotsCount() {
+        return rowsCount * columnsCount;
+    }
+
+    /**
+     * @param code row letter followed by the 1-based column number, e.g "H12".
+     * @return the flat slot id, or INVALID_SLOT_ID if the code does not name a slot of the grid.
+     */
+    public int resolve(CharSequence code) {
+        if (code == null || code.length() < 2) {
+            return INVALID_SLOT_ID;
+        }
+
+        int columnNumber = 0;
+
+        for (int index = 1; index < code.length(); index++) {
+            int digit = code.charAt(index) - '0';
+
+            if (digit < 0 || digit > 9 || columnNumber > this.columnsCount) {
+                return INVALID_SLOT_ID;
+            }
+
+            columnNumber = columnNumber * 10 + digit;
+        }
+
+        return this.resolve(code.charAt(0) - 'A', columnNumber);
+    }
+
+    /**
+     * @param rowIndex 0-based row index, i.e the row letter's offset from 'A'.
+     * @param columnNumber 1-based column number as printed on the machine.
+     * @return the flat slot id, or INVALID_SLOT_ID if the position is outside the grid.
+     */
+    public int resolve(int rowIndex, int columnNumber) {
+        if (rowIndex < 0 || rowIndex >= this.rowsCount || columnNumber < 1 || columnNumber > this.columnsCount) {
+            return INVALID_SLOT_ID;
+        }
+
+        return this.slotIdByRowAndColumnNumber[rowIndex * (this.columnsCount + 1) + columnNumber];
+    }
+
+    public String toCode(int slotId) {
+        return this.slotCodeBySlotId[slotId];
+    }
+}
@@ -1,69 +1,79 @@
 package components;
 
-import enumerations.ExceptionMessage;
 import enumerations.SnackItem;
 import exception.EmptySnackSlotException;
 import exception.FullSnackSlotException;
 
+/**
+ * View over a single slot of a SnackSlotGrid. Slots created on their own
+ * (outside of a machine) are backed by a grid of one slot.
+ */
 public class SnackSlot {
-    private SnackItem item;
-    private int quantity;
-    private int capacity;
+    private final SnackSlotGrid grid;
+    private final int slotId;
 
-    public SnackSlot() { }
+    public SnackSlot() {
+        this(new SnackSlotGrid(1), 0);
+    }
 
     public SnackSlot(SnackItem item, int quantity, int capacity) {
-        this.item = item;
-        this.quantity = quantity;
-        this.capacity = capacity;
+        this();
+        this.setItem(item);
+        this.setCapacity(capacity);
+        this.setQuantity(quantity);
+    }
+
+    public SnackSlot(SnackSlotGrid grid, int slotId) {
+        this.grid = grid;
+        this.slotId = slotId;
+    }
+
+    public SnackSlotGrid getGrid() {
+        return grid;
+    }
+
+    public int getSlotId() {
+        return slotId;
     }
 
     public SnackItem getItem() {
-        return item;
+        return grid.getItem(slotId);
     }
 
     public void setItem(SnackItem item) {
-        this.item = item;
+        this.grid.setItem(slotId, item);
     }
 
     public int getQuantity() {
-        return quantity;
+        return grid.getQuantity(slotId);
     }
 
     public void setQuantity(int quantity) {
-        this.quantity = quantity;
+        this.grid.setQuantity(slotId, quantity);
     }
 
     public int getCapacity() {
-        return capacity;
+        return grid.getCapacity(slotId);
     }
 
     public void setCapacity(int capacity) {
-        this.capacity = capacity;
+        this.grid.setCapacity(slotId, capacity);
     }
 
-    public void addSnackItems(SnackItem... items) {
-        if (this.quantity + items.length > this.capacity) {
-            throw new FullSnackSlotException(ExceptionMessage.FULL_SNACK_SLOT.getMessage());
-        }
-
-        this.setQuantity(this.getQuantity() + items.length);
+    public void addSnackItems(SnackItem... items) throws FullSnackSlotException {
+        this.grid.addItems(slotId, items.length);
     }
 
     public void dispenseSnackItem() throws EmptySnackSlotException {
-        if (this.quantity == 0) {
-            throw new EmptySnackSlotException(ExceptionMessage.EMPTY_SNACK_SLOT.getMessage());
-        }
-
-        this.quantity -= 1;
+        this.grid.dispenseItem(slotId);
     }
 
     @Override
     public String toString() {
         return "components.SnackSlot{" +
-                "item=" + item +
-                ", quantity=" + quantity +
-                ", capacity=" + capacity +
+                "item=" + getItem() +
+                ", quantity=" + getQuantity() +
+                ", capacity=" + getCapacity() +
                 '}';
     }
 }
@@ -0,0 +1,311 @@
+package components;
+
+import enumerations.ExceptionMessage;
+import enumerations.SnackItem;
+import exception.EmptySnackSlotException;
+import exception.FullSnackSlotException;
+import interfaces.MachineJournal;
+import journal.NoOpMachineJournal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage of a machine's snack slots: item ordinals,
+ * quantities and capacities are kept in primitive arrays indexed by the flat
+ * slot id, so whole-grid scans walk contiguous memory. SnackSlot objects are
+ * views over one entry of a grid.
+ *
+ * The grid also maintains, per SnackItem, the total quantity left and the set
+ * of slots that still hold some, updated on every mutation, so availability
+ * and alternate-slot lookups never scan the grid.
+ *
+ * Every change of a slot is recorded to the grid's journal, if it has one.
+ */
+public class SnackSlotGrid {
+    private static final byte NO_ITEM = -1;
+    private static final SnackItem[] SNACK_ITEMS = SnackItem.values();
+
+    private final byte[] itemOrdinals;
+    private final int[] quantities;
+    private final int[] capacities;
+
+    private final long[] totalQuantityByItem;
+    private final int[][] nonEmptySlotIdsByItem;
+    private final int[] nonEmptySlotsCountByItem;
+    private final int[] positionInNonEmptySlotIds;
+    private volatile MachineJournal journal;
+
+    public SnackSlotGrid(int slotsCount) {
+        this.itemOrdinals = new byte[slotsCount];
+        this.quantities = new int[slotsCount];
+        this.capacities = new int[slotsCount];
+
+        this.totalQuantityByItem = new long[SNACK_ITEMS.length];
+        this.nonEmptySlotIdsByItem = new int[SNACK_ITEMS.length][slotsCount];
+        this.nonEmptySlotsCountByItem = new int[SNACK_ITEMS.length];
+        this.positionInNonEmptySlotIds = new int[slotsCount];
+
+        Arrays.fill(this.itemOrdinals, NO_ITEM);
+        Arrays.fill(this.positionInNonEmptySlotIds, -1);
+        this.journal = NoOpMachineJournal.INSTANCE;
+    }
+
+    public MachineJournal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(MachineJournal journal) {
+        this.journal = journal;
+    }
+
+    public int getSlotsCount() {
+        return itemOrdinals.length;
+    }
+
+    public SnackItem getItem(int slotId) {
+        byte itemOrdinal = this.itemOrdinals[slotId];
+        return itemOrdinal == NO_ITEM ? null : SNACK_ITEMS[itemOrdinal];
+    }
+
+    public synchronized void setItem(int slotId, SnackItem item) {
+        this.unindexSlot(slotId);
+        this.itemOrdinals[slotId] = item == null ? NO_ITEM : (byte) item.ordinal();
+        this.indexSlot(slotId);
+        this.recordSlot(slotId);
+    }
+
+    public synchronized int getQuantity(int slotId) {
+        return this.quantities[slotId];
+    }
+
+    public synchronized void setQuantity(int slotId, int quantity) {
+        this.unindexSlot(slotId);
+        this.quantities[slotId] = quantity;
+        this.indexSlot(slotId);
+        this.recordSlot(slotId);
+    }
+
+    public int getCapacity(int slotId) {
+        return this.capacities[slotId];
+    }
+
+    public synchronized void setCapacity(int slotId, int capacity) {
+        this.capacities[slotId] = capacity;
+        this.recordSlot(slotId);
+    }
+
+    public synchronized void addItems(int slotId, int count) throws FullSnackSlotException {
+        if (this.quantities[slotId] + count > this.capacities[slotId]) {
+            throw new FullSnackSlotException(ExceptionMessage.FULL_SNACK_SLOT.getMessage());
+        }
+
+        this.unindexSlot(slotId);
+        this.quantities[slotId] += count;
+        this.indexSlot(slotId);
+        this.recordSlot(slotId);
+    }
+
+    public void dispenseItem(int slotId) throws EmptySnackSlotException {
+        if (! this.tryDispenseItem(slotId)) {
+            throw new EmptySnackSlotException(ExceptionMessage.EMPTY_SNACK_SLOT.getMessage());
+        }
+    }
+
+    /**
+     * @return false, instead of throwing, if the slot has no item left.
+     */
+    public synchronized boolean tryDispenseItem(int slotId) {
+        if (this.quantities[slotId] == 0) {
+            return false;
+        }
+
+        this.unindexSlot(slotId);
+        this.quantities[slotId] -= 1;
+        this.indexSlot(slotId);
+        this.recordSlot(slotId);
+        return true;
+    }
+
+    /**
+     * Puts back an item taken with tryDispenseItem that could not be handed
+     * out after all, e.g because its payment failed.
+     */
+    public synchronized void returnItem(int slotId) {
+        this.unindexSlot(slotId);
+        this.quantities[slotId] += 1;
+        this.indexSlot(slotId);
+        this.recordSlot(slotId);
+    }
+
+    /**
+     * Empties every slot and forgets its item, capacities are kept.
+     */
+    public synchronized void clear() {
+        Arrays.fill(this.itemOrdinals, NO_ITEM);
+        Arrays.fill(this.quantities, 0);
+
+        Arrays.fill(this.totalQuantityByItem, 0);
+        Arrays.fill(this.nonEmptySlotsCountByItem, 0);
+        Arrays.fill(this.positionInNonEmptySlotIds, -1);
+
+        for (int slotId = 0; slotId < this.quantities.length; slotId++) {
+            this.recordSlot(slotId);
+        }
+    }
+
+    /**
+     * @return count of bytes writeTo puts, i.e an item ordinal, a quantity and a capacity per slot.
+     */
+    public int getSerializedSize() {
+        return this.itemOrdinals.length * (Byte.BYTES + Integer.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Puts the item ordinals, then the quantities, then the capacities of
+     * every slot, as three bulk array copies.
+     */
+    public synchronized void writeTo(ByteBuffer buffer) {
+        buffer.put(this.itemOrdinals);
+        buffer.asIntBuffer().put(this.quantities).put(this.capacities);
+        buffer.position(buffer.position() + this.quantities.length * 2 * Integer.BYTES);
+    }
+
+    /**
+     * Replaces every slot with the content written by writeTo, straight into
+     * the arrays, and rebuilds the stock index in a single pass. The content
+     * is checked before anything is replaced, so a rejected one leaves the
+     * grid and the buffer as they were.
+     *
+     * @throws IllegalArgumentException if the buffer names an unknown item, holds a negative count or is too short.
+     */
+    public synchronized void readFrom(ByteBuffer buffer) {
+        int slotsCount = this.itemOrdinals.length;
+        int position = buffer.position();
+
+        if (buffer.remaining() < this.getSerializedSize()) {
+            throw new IllegalArgumentException("Snack slots are cut short: " + buffer.remaining() + " bytes left");
+        }
+
+        for (int slotId = 0; slotId < slotsCount; slotId++) {
+            byte itemOrdinal = buffer.get(position + slotId);
+            int quantity = buffer.getInt(position + slotsCount + slotId * Integer.BYTES);
+            int capacity = buffer.getInt(position + slotsCount + (slotsCount + slotId) * Integer.BYTES);
+
+            if (itemOrdinal < NO_ITEM || itemOrdinal >= SNACK_ITEMS.length) {
+                throw new IllegalArgumentException("Unknown snack item ordinal for slot " + slotId + ": " + itemOrdinal);
+            } else if (quantity < 0 || capacity < 0) {
+                throw new IllegalArgumentException("Negative quantity or capacity for slot " + slotId);
+            }
+        }
+
+        buffer.get(this.itemOrdinals);
+        buffer.asIntBuffer().get(this.quantities).get(this.capacities);
+        buffer.position(buffer.position() + slotsCount * 2 * Integer.BYTES);
+
+        Arrays.fill(this.totalQuantityByItem, 0);
+        Arrays.fill(this.nonEmptySlotsCountByItem, 0);
+        Arrays.fill(this.positionInNonEmptySlotIds, -1);
+
+        for (int slotId = 0; slotId < slotsCount; slotId++) {
+            this.indexSlot(slotId);
+            this.recordSlot(slotId);
+        }
+    }
+
+    /**
+     * @return true if any slot of the grid still holds the item.
+     */
+    public synchronized boolean isAvailable(SnackItem item) {
+        return this.nonEmptySlotsCountByItem[item.ordinal()] > 0;
+    }
+
+    /**
+     * @return total quantity of the item left across all slots of the grid.
+     */
+    public synchronized long getTotalQuantity(SnackItem item) {
+        return this.totalQuantityByItem[item.ordinal()];
+    }
+
+    /**
+     * @return id of a slot that still holds the item, or -1 if the item is sold out everywhere.
+     */
+    public synchronized int findSlotHolding(SnackItem item) {
+        int itemOrdinal = item.ordinal();
+        return this.nonEmptySlotsCountByItem[itemOrdinal] == 0 ? -1 : this.nonEmptySlotIdsByItem[itemOrdinal][0];
+    }
+
+    /**
+     * @return count of slots that are assigned an item but have none left.
+     */
+    public synchronized int countSoldOutSlots() {
+        int soldOutSlotsCount = 0;
+
+        for (int slotId = 0; slotId < this.quantities.length; slotId++) {
+            if (this.quantities[slotId] == 0 && this.itemOrdinals[slotId] != NO_ITEM) {
+                soldOutSlotsCount++;
+            }
+        }
+
+        return soldOutSlotsCount;
+    }
+
+    /**
+     * @return count of items needed to fill every slot up to its capacity.
+     */
+    public synchronized long countMissingItems() {
+        long missingItemsCount = 0;
+
+        for (int slotId = 0; slotId < this.quantities.length; slotId++) {
+            missingItemsCount += this.capacities[slotId] - this.quantities[slotId];
+        }
+
+        return missingItemsCount;
+    }
+
+    private void recordSlot(int slotId) {
+        this.journal.recordSlotUpdated(slotId, this.getItem(slotId), this.quantities[slotId], this.capacities[slotId]);
+    }
+
+    /**
+     * Takes the slot's current item and quantity out of the stock index,
+     * to be followed by indexSlot once the slot was updated.
+     */
+    private void unindexSlot(int slotId) {
+        byte itemOrdinal = this.itemOrdinals[slotId];
+
+        if (itemOrdinal == NO_ITEM) {
+            return;
+        }
+
+        this.totalQuantityByItem[itemOrdinal] -= this.quantities[slotId];
+        int position = this.positionInNonEmptySlotIds[slotId];
+
+        if (position >= 0) {
+            // Swap-remove: move the set's last slot into the freed position.
+            int lastPosition = --this.nonEmptySlotsCountByItem[itemOrdinal];
+            int lastSlotId = this.nonEmptySlotIdsByItem[itemOrdinal][lastPosition];
+
+            this.nonEmptySlotIdsByItem[itemOrdinal][position] = lastSlotId;
+            this.positionInNonEmptySlotIds[lastSlotId] = position;
+            this.positionInNonEmptySlotIds[slotId] = -1;
+        }
+    }
+
+    private void indexSlot(int slotId) {
+        byte itemOrdinal = this.itemOrdinals[slotId];
+
+        if (itemOrdinal == NO_ITEM) {
+            return;
+        }
+
+        this.totalQuantityByItem[itemOrdinal] += this.quantities[slotId];
+
+        if (this.quantities[slotId] > 0) {
+            int position = this.nonEmptySlotsCountByItem[itemOrdinal]++;
+
+            this.nonEmptySlotIdsByItem[itemOrdinal][position] = slotId;
+            this.positionInNonEmptySlotIds[slotId] = position;
+        }
+    }
+}
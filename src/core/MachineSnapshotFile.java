@@ -0,0 +1,89 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshot file of many machines, e.g a whole simulated fleet: a header
+ * (magic, version, machines count) followed by the snapshot of every
+ * machine back to back, as put by SnackVendingMachine.snapshot.
+ *
+ * Files are written from a single direct buffer and read through a
+ * read-only mapping, so restoring does not copy the file onto the heap.
+ */
+public final class MachineSnapshotFile {
+    public static final int MAGIC = 0x534E5346;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int ROWS_COUNT_OFFSET = 2 * Integer.BYTES;
+    private static final int COLUMNS_COUNT_OFFSET = 3 * Integer.BYTES;
+
+    private MachineSnapshotFile() { }
+
+    public static void write(Path path, List<SnackVendingMachine> machines) throws IOException {
+        int size = HEADER_SIZE;
+
+        for (SnackVendingMachine machine : machines) {
+            size += machine.getSnapshotSize();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(machines.size());
+
+        for (SnackVendingMachine machine : machines) {
+            machine.snapshot(buffer);
+        }
+
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        )) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return a new machine per snapshot of the file, in the order they were written.
+     * @throws IllegalArgumentException if the file is not a machines snapshot file.
+     */
+    public static List<SnackVendingMachine> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IllegalArgumentException("Not a machines snapshot file of version " + VERSION + ": " + path);
+            }
+
+            int machinesCount = buffer.getInt();
+            List<SnackVendingMachine> machines = new ArrayList<>(machinesCount);
+
+            for (int machineIndex = 0; machineIndex < machinesCount; machineIndex++) {
+                int position = buffer.position();
+                SnackVendingMachine machine = new SnackVendingMachine(
+                        buffer.getInt(position + ROWS_COUNT_OFFSET),
+                        buffer.getInt(position + COLUMNS_COUNT_OFFSET)
+                );
+
+                machine.restore(buffer);
+                machines.add(machine);
+            }
+
+            return machines;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package core;
+
+import enumerations.PaymentType;
+import interfaces.Payable;
+
+/**
+ * A whole purchase as recorded in the field: the selected slot and every
+ * payable the customer inserted, to be applied by
+ * SnackVendingMachine.processPurchaseOrders without going through the
+ * keypad and the money slots one call at a time.
+ */
+public class PurchaseOrder {
+    private final int slotId;
+    private final PaymentType paymentType;
+    private final Payable[] insertedMoney;
+
+    /**
+     * @param slotId flat slot id, i.e rowIndex * columnsCount + columnIndex.
+     * @param paymentType CASH for accepted coins and notes, CARD for cards.
+     * @param insertedMoney the payables in the order they were inserted.
+     */
+    public PurchaseOrder(int slotId, PaymentType paymentType, Payable... insertedMoney) {
+        this.slotId = slotId;
+        this.paymentType = paymentType;
+        this.insertedMoney = insertedMoney;
+    }
+
+    public int getSlotId() {
+        return slotId;
+    }
+
+    public PaymentType getPaymentType() {
+        return paymentType;
+    }
+
+    public Payable[] getInsertedMoney() {
+        return insertedMoney;
+    }
+}
@@ -0,0 +1,56 @@
+package core;
+
+import enumerations.OperationResult;
+import enumerations.SnackItem;
+import interfaces.Payable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Reusable result of SnackVendingMachine.tryDispenseSelectedItemAndCustomerChange,
+ * a caller keeps one (e.g per session) and passes it to every call, which
+ * overwrites it.
+ */
+public class PurchaseReceipt {
+    private OperationResult result;
+    private SnackItem dispensedItem;
+    private Map<Payable, Integer> change;
+    private boolean isRefunded;
+
+    public PurchaseReceipt() {
+        this.set(OperationResult.OK, null, Collections.emptyMap(), false);
+    }
+
+    public OperationResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return the dispensed item, or null if the purchase did not end with one.
+     */
+    public SnackItem getDispensedItem() {
+        return dispensedItem;
+    }
+
+    /**
+     * @return the customer's change, or the refund if the change could not be produced.
+     */
+    public Map<Payable, Integer> getChange() {
+        return change;
+    }
+
+    /**
+     * @return true if the customer's money was refunded instead of being charged.
+     */
+    public boolean isRefunded() {
+        return isRefunded;
+    }
+
+    void set(OperationResult result, SnackItem dispensedItem, Map<Payable, Integer> change, boolean isRefunded) {
+        this.result = result;
+        this.dispensedItem = dispensedItem;
+        this.change = change;
+        this.isRefunded = isRefunded;
+    }
+}
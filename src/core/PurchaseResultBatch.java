@@ -0,0 +1,126 @@
+package core;
+
+import components.DenominationRegistry;
+import enumerations.PurchaseOutcome;
+import enumerations.SnackItem;
+import interfaces.Payable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Results of a batch of purchase orders, kept column by column: the outcome,
+ * the dispensed item, whether the money was given back and the change of
+ * every order live in one primitive array each, indexed by the order's
+ * position in the batch. Change counts are laid out as one row of
+ * DenominationRegistry.size() counts per order.
+ */
+public class PurchaseResultBatch {
+    private static final PurchaseOutcome[] OUTCOMES = PurchaseOutcome.values();
+    private static final SnackItem[] SNACK_ITEMS = SnackItem.values();
+    private static final byte NO_ITEM = -1;
+
+    private final int size;
+    private final byte[] outcomeOrdinals;
+    private final byte[] dispensedItemOrdinals;
+    private final boolean[] refundedFlags;
+    private final long[] changeInCents;
+    private final int[] changeCounts;
+
+    PurchaseResultBatch(int size) {
+        this.size = size;
+        this.outcomeOrdinals = new byte[size];
+        this.dispensedItemOrdinals = new byte[size];
+        this.refundedFlags = new boolean[size];
+        this.changeInCents = new long[size];
+        this.changeCounts = new int[size * DenominationRegistry.size()];
+
+        Arrays.fill(this.dispensedItemOrdinals, NO_ITEM);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public PurchaseOutcome getOutcome(int orderIndex) {
+        return OUTCOMES[outcomeOrdinals[orderIndex]];
+    }
+
+    /**
+     * @return the dispensed item, or null if the order did not end with one.
+     */
+    public SnackItem getDispensedItem(int orderIndex) {
+        return dispensedItemOrdinals[orderIndex] == NO_ITEM ? null : SNACK_ITEMS[dispensedItemOrdinals[orderIndex]];
+    }
+
+    /**
+     * @return true if the customer's money was given back instead of being charged.
+     */
+    public boolean isRefunded(int orderIndex) {
+        return refundedFlags[orderIndex];
+    }
+
+    /**
+     * @return worth of everything paid out for the order, change or refund.
+     */
+    public long getChangeInCents(int orderIndex) {
+        return changeInCents[orderIndex];
+    }
+
+    /**
+     * @param denominationIndex the payable's index in the DenominationRegistry.
+     */
+    public int getChangeCount(int orderIndex, int denominationIndex) {
+        return changeCounts[orderIndex * DenominationRegistry.size() + denominationIndex];
+    }
+
+    public int getChangeCount(int orderIndex, Payable payable) {
+        int denominationIndex = DenominationRegistry.indexOf(payable);
+        return denominationIndex < 0 ? 0 : this.getChangeCount(orderIndex, denominationIndex);
+    }
+
+    /**
+     * @return the order's change as Payable -> count, in descending order of worth.
+     */
+    public Map<Payable, Integer> getChange(int orderIndex) {
+        Map<Payable, Integer> change = new LinkedHashMap<>();
+
+        for (int denominationIndex = 0; denominationIndex < DenominationRegistry.size(); denominationIndex++) {
+            int count = this.getChangeCount(orderIndex, denominationIndex);
+
+            if (count > 0) {
+                change.put(DenominationRegistry.getDenomination(denominationIndex), count);
+            }
+        }
+
+        return change;
+    }
+
+    public int countOutcome(PurchaseOutcome outcome) {
+        int outcomeCount = 0;
+
+        for (byte outcomeOrdinal : outcomeOrdinals) {
+            outcomeCount += outcomeOrdinal == outcome.ordinal() ? 1 : 0;
+        }
+
+        return outcomeCount;
+    }
+
+    void setOutcome(int orderIndex, PurchaseOutcome outcome) {
+        this.outcomeOrdinals[orderIndex] = (byte) outcome.ordinal();
+    }
+
+    void setDispensedItem(int orderIndex, SnackItem item) {
+        this.dispensedItemOrdinals[orderIndex] = (byte) item.ordinal();
+    }
+
+    void setRefunded(int orderIndex) {
+        this.refundedFlags[orderIndex] = true;
+    }
+
+    void addChange(int orderIndex, Payable payable, int count) {
+        this.changeCounts[orderIndex * DenominationRegistry.size() + DenominationRegistry.indexOf(payable)] += count;
+        this.changeInCents[orderIndex] += payable.getWorthInCents() * count;
+    }
+}
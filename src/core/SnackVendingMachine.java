@@ -1,41 +1,106 @@
 package core;
 
 import components.*;
+import enumerations.Card;
 import enumerations.ExceptionMessage;
+import enumerations.MachineOperation;
 import enumerations.MachineState;
+import enumerations.OperationResult;
+import enumerations.PaymentType;
+import enumerations.PurchaseOutcome;
 import enumerations.SnackItem;
+import events.MachineEvent;
+import events.MachineEventBus;
 import exception.CustomerRequestNotConfirmedException;
+import exception.EmptySnackSlotException;
+import exception.IllegalStateTransitionException;
 import exception.InsufficientChangeException;
+import exception.InvalidSlotCodeException;
 import exception.ItemNotFullyPaidException;
 import exception.SnackSoldOutException;
+import interfaces.CardPaymentProcessor;
+import interfaces.MachineJournal;
 import interfaces.Payable;
 import interfaces.VendingMachine;
+import journal.JournalState;
+import journal.NoOpMachineJournal;
+import metrics.MachineMetrics;
+import metrics.MachineMetricsSnapshot;
+import payment.CardAuthorization;
+import payment.CardSettlementQueue;
+import payment.SimulatedCardPaymentProcessor;
+import utils.Money;
 import utils.Pair;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SnackVendingMachine implements VendingMachine<SnackItem, SnackSlot> {
+    public static final int DEFAULT_ROWS_COUNT = 5;
+    public static final int DEFAULT_COLUMNS_COUNT = 5;
+    public static final long DEFAULT_CARD_AUTHORIZATION_TIMEOUT_MILLIS = 5_000;
+
+    public static final int SNAPSHOT_MAGIC = 0x534E5353;
+    public static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_SIZE = 6 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int CARD_AUTHORIZATION_CHUNK_SIZE = 64;
+    private static final MachineState[] MACHINE_STATES = MachineState.values();
+    private static final boolean[] IS_ACCEPTED_DENOMINATION = new boolean[DenominationRegistry.size()];
+
+    static {
+        for (int denominationIndex : DenominationRegistry.getChangeIndexes()) {
+            IS_ACCEPTED_DENOMINATION[denominationIndex] = true;
+        }
+    }
+
     private int rowsCount;
     private int columnsCount;
-    private boolean isFunctional;
-    private boolean shouldStartProcessingRequest;
+    private volatile boolean isFunctional;
+    private volatile boolean isRedirectingSoldOutSelections;
+    private volatile long cardAuthorizationTimeoutMillis;
 
-    private BigDecimal salesTotal;
-    private BigDecimal accumulatedMoney;
+    private AtomicLong salesTotalInCents;
+    private VendingSession defaultSession;
 
+    private MachineEventBus eventBus;
+    private MachineJournal journal;
+    private MachineMetrics metrics;
+    private SlotCodeResolver slotCodeResolver;
     private Keypad keypad;
     private DisplayScreen displayScreen;
 
     private CoinSlot coinSlot;
     private NoteSlot noteSlot;
     private CardSlot cardSlot;
+    private CardPaymentProcessor cardPaymentProcessor;
+    private volatile PriceBook priceBook;
+    private volatile CardSettlementQueue cardSettlementQueue;
+    private SnackSlotGrid snackSlotGrid;
     private SnackSlot[][] snackSlots;
     private ChangeInventory changeInventory;
-    private MachineState currentlyOperatingState;
-    private SnackSlot currentlySelectedSnackSlot;
+    private StateTransitionTable stateTransitionTable;
+    private AtomicReference<MachineState> currentlyOperatingState;
 
     public SnackVendingMachine() {
-        this.initializeMachine();
+        this(DEFAULT_ROWS_COUNT, DEFAULT_COLUMNS_COUNT);
+    }
+
+    /**
+     * @param rowsCount count of rows of the snack slots grid, A to Z at most.
+     * @param columnsCount count of columns of the snack slots grid.
+     */
+    public SnackVendingMachine(int rowsCount, int columnsCount) {
+        this.initializeMachine(rowsCount, columnsCount);
     }
 
     /**
@@ -43,26 +108,35 @@ public class SnackVendingMachine implements VendingMachine<SnackItem, SnackSlot>
      * attributes/fields including it's rowsCount, colsCount,
      * boolean flags and components: Keypad, DisplayScreen, NoteSlot,
      * CoinSlot, CardSlot, ChangeInventory, SnackSlots and finally it's
-     * financial stats/indicators: accumulatedMoney, totalSales.
+     * financial stats/indicators: totalSales and the default customer session
+     * (accumulated money and selection) used by the session-less methods.
      */
-    private void initializeMachine() {
-        this.rowsCount = 5;
-        this.columnsCount = 5;
+    private void initializeMachine(int rowsCount, int columnsCount) {
+        this.metrics = new MachineMetrics();
+        this.eventBus = MachineEventBus.getDefault();
+        this.journal = NoOpMachineJournal.INSTANCE;
+        this.slotCodeResolver = new SlotCodeResolver(rowsCount, columnsCount);
+        this.rowsCount = rowsCount;
+        this.columnsCount = columnsCount;
         this.isFunctional = true;
+        this.isRedirectingSoldOutSelections = true;
         this.initializeSnackSlots();
-        this.shouldStartProcessingRequest = false;
+        this.stateTransitionTable = StateTransitionTable.createDefault();
+        this.currentlyOperatingState = new AtomicReference<>(MachineState.OUT_OF_SERVICE);
         this.setCurrentlyOperatingState(MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY);
 
         this.keypad = new Keypad(this);
-        this.displayScreen = new DisplayScreen();
+        this.displayScreen = new DisplayScreen(this.eventBus);
         this.changeInventory = new ChangeInventory();
+        this.priceBook = new PriceBook();
         this.cardSlot = new CardSlot(this);
+        this.cardPaymentProcessor = new SimulatedCardPaymentProcessor();
+        this.cardAuthorizationTimeoutMillis = DEFAULT_CARD_AUTHORIZATION_TIMEOUT_MILLIS;
         this.coinSlot = new CoinSlot(this);
         this.noteSlot = new NoteSlot(this);
 
-        this.currentlySelectedSnackSlot = null;
-        this.salesTotal = BigDecimal.valueOf(0);
-        this.accumulatedMoney = BigDecimal.valueOf(0);
+        this.defaultSession = new VendingSession();
+        this.salesTotalInCents = new AtomicLong(0);
     }
 
     public int getRowsCount() {
@@ -85,13 +159,111 @@ public class SnackVendingMachine implements VendingMachine<SnackItem, SnackSlot>
         return isFunctional;
     }
 
+    /**
+     * Puts the machine in or out of service. A dispense in progress is never
+     * cut short: the machine goes out of service as soon as it completes,
+     * and no new selection or dispense is accepted meanwhile.
+     */
     public void setFunctional(boolean functional) {
-        MachineState currentlyOperatingMachineState = functional ?
-                MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY :
-                MachineState.OUT_OF_SERVICE;
-
         isFunctional = functional;
-        this.setCurrentlyOperatingState(currentlyOperatingMachineState);
+
+        if (functional) {
+            this.transitionState(MachineState.OUT_OF_SERVICE, MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY);
+        } else {
+            this.tryTransitionTo(MachineState.OUT_OF_SERVICE);
+        }
+    }
+
+    public boolean isRedirectingSoldOutSelections() {
+        return isRedirectingSoldOutSelections;
+    }
+
+    /**
+     * @param redirectingSoldOutSelections whether selecting an empty slot should
+     * fall back to another slot holding the same item instead of failing.
+     */
+    public void setRedirectingSoldOutSelections(boolean redirectingSoldOutSelections) {
+        this.isRedirectingSoldOutSelections = redirectingSoldOutSelections;
+    }
+
+    public MachineEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Routes the machine's and its display screen's events to another bus,
+     * e.g one with a file or no-op sink. Machines share the JVM-wide console
+     * bus until given one.
+     */
+    public void setEventBus(MachineEventBus eventBus) {
+        this.eventBus = eventBus;
+        this.displayScreen.setEventBus(eventBus);
+    }
+
+    public MachineJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Makes the machine durable through the journal. A journal that already
+     * holds a checkpoint is replayed into the machine, i.e the machine takes
+     * over the sales total, change inventory and snack slots it recorded, and
+     * the money customers had inserted but not spent becomes the default
+     * session's balance, and its coins and notes the session's escrow, so it
+     * can be refunded. A new journal starts from the
+     * machine's current state instead.
+     * From then on every transaction of the machine is appended to the journal.
+     *
+     * @param journal journal opened for as many slots as the machine has, e.g a MappedMachineJournal.
+     */
+    public void attachJournal(MachineJournal journal) {
+        if (journal.hasCheckpoint()) {
+            this.restore(journal.getState());
+        } else {
+            journal.startFrom(
+                    this.salesTotalInCents.get(),
+                    this.defaultSession.getAccumulatedMoneyInCents(),
+                    this.defaultSession.getEscrow(),
+                    this.changeInventory,
+                    this.snackSlotGrid
+            );
+        }
+
+        this.journal = journal;
+        this.snackSlotGrid.setJournal(journal);
+        this.changeInventory.setJournal(journal);
+    }
+
+    private void restore(JournalState state) {
+        if (state.getSlotsCount() != this.snackSlotGrid.getSlotsCount()) {
+            throw new IllegalArgumentException("Journal is for " + state.getSlotsCount() + " slots");
+        }
+
+        for (int slotId = 0; slotId < state.getSlotsCount(); slotId++) {
+            this.snackSlotGrid.setItem(slotId, state.getSlotItem(slotId));
+            this.snackSlotGrid.setCapacity(slotId, state.getSlotCapacity(slotId));
+            this.snackSlotGrid.setQuantity(slotId, state.getSlotQuantity(slotId));
+        }
+
+        for (int index = 0; index < DenominationRegistry.size(); index++) {
+            this.changeInventory.putPayableWithCount(DenominationRegistry.getDenomination(index), state.getChangeCount(index));
+            this.defaultSession.getEscrow().setCount(index, state.getEscrowCount(index));
+        }
+
+        this.salesTotalInCents.set(state.getSalesTotalInCents());
+        this.defaultSession.setAccumulatedMoneyInCents(state.getCustomerCreditInCents());
+    }
+
+    public MachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the machine's latencies and counters, together with its change
+     * inventory's, read without pausing the machine.
+     */
+    public MachineMetricsSnapshot getMetricsSnapshot() {
+        return this.metrics.snapshot(this.changeInventory.getMetrics());
     }
 
     public Keypad getKeypad() {
@@ -134,24 +306,153 @@ public class SnackVendingMachine implements VendingMachine<SnackItem, SnackSlot>
         this.cardSlot = cardSlot;
     }
 
+    public PriceBook getPriceBook() {
+        return priceBook;
+    }
+
+    /**
+     * @param priceBook book the machine's prices are read from, e.g one
+     * shared by a segment of a fleet to reprice all of it at once. Each
+     * machine has a book of its own, holding the list prices, until set.
+     */
+    public void setPriceBook(PriceBook priceBook) {
+        this.priceBook = priceBook;
+    }
+
+    public CardPaymentProcessor getCardPaymentProcessor() {
+        return cardPaymentProcessor;
+    }
+
+    /**
+     * @param cardPaymentProcessor processor cards are authorized with, the
+     * simulated one until set. Meant to be set before customers insert cards.
+     */
+    public void setCardPaymentProcessor(CardPaymentProcessor cardPaymentProcessor) {
+        this.cardPaymentProcessor = cardPaymentProcessor;
+    }
+
+    public CardSettlementQueue getCardSettlementQueue() {
+        return cardSettlementQueue;
+    }
+
+    /**
+     * @param cardSettlementQueue queue every captured card payment is put in
+     * to be settled later, or null to settle nothing, the default.
+     */
+    public void setCardSettlementQueue(CardSettlementQueue cardSettlementQueue) {
+        this.cardSettlementQueue = cardSettlementQueue;
+    }
+
+    public long getCardAuthorizationTimeoutMillis() {
+        return cardAuthorizationTimeoutMillis;
+    }
+
+    /**
+     * @param cardAuthorizationTimeoutMillis how long a card's authorization may
+     * take from the card's insertion, after which the payment is declined.
+     */
+    public void setCardAuthorizationTimeoutMillis(long cardAuthorizationTimeoutMillis) {
+        this.cardAuthorizationTimeoutMillis = cardAuthorizationTimeoutMillis;
+    }
+
+    public SnackSlotGrid getSnackSlotGrid() {
+        return snackSlotGrid;
+    }
+
+    /**
+     * @return the machine's slots laid out by row and column. The slots are
+     * views over the machine's SnackSlotGrid, the arrays themselves are copies,
+     * so putting other SnackSlot objects in them does not change the machine.
+     */
     public SnackSlot[][] getSnackSlots() {
-        return snackSlots;
+        SnackSlot[][] snackSlotsCopy = new SnackSlot[this.rowsCount][];
+
+        for (int rowIndex = 0; rowIndex < this.rowsCount; rowIndex++) {
+            snackSlotsCopy[rowIndex] = this.snackSlots[rowIndex].clone();
+        }
+
+        return snackSlotsCopy;
     }
 
+    /**
+     * Loads the item, quantity and capacity of every given slot into the
+     * machine's slot at the same row and column.
+     */
     public void setSnackSlots(SnackSlot[][] snackSlots) {
-        this.snackSlots = snackSlots;
+        for (int rowIndex = 0; rowIndex < this.rowsCount; rowIndex++) {
+            for (int colIndex = 0; colIndex < this.columnsCount; colIndex++) {
+                SnackSlot source = snackSlots[rowIndex][colIndex];
+                SnackSlot target = this.snackSlots[rowIndex][colIndex];
+
+                target.setItem(source.getItem());
+                target.setCapacity(source.getCapacity());
+                target.setQuantity(source.getQuantity());
+            }
+        }
+    }
+
+    public SlotCodeResolver getSlotCodeResolver() {
+        return slotCodeResolver;
+    }
+
+    /**
+     * @param slotId flat slot id, i.e rowIndex * columnsCount + columnIndex.
+     */
+    public SnackSlot getSnackSlot(int slotId) {
+        return this.snackSlots[slotId / this.columnsCount][slotId % this.columnsCount];
     }
 
-    public BigDecimal getSalesTotal() { return salesTotal; }
+    /**
+     * @param slotCode row letter followed by the 1-based column number, e.g "H12".
+     * @throws InvalidSlotCodeException if the code does not name a slot of the machine's grid.
+     */
+    public SnackSlot getSnackSlotByCode(String slotCode) throws InvalidSlotCodeException {
+        int slotId = this.slotCodeResolver.resolve(slotCode);
+
+        if (slotId == SlotCodeResolver.INVALID_SLOT_ID) {
+            throw new InvalidSlotCodeException(ExceptionMessage.INVALID_SLOT_CODE.getMessage());
+        }
+
+        return this.getSnackSlot(slotId);
+    }
+
+    public boolean isSnackItemAvailable(SnackItem snackItem) {
+        return this.snackSlotGrid.isAvailable(snackItem);
+    }
 
-    public void setSalesTotal(BigDecimal salesTotal) { this.salesTotal = salesTotal; }
+    /**
+     * @return total quantity of the item left across all of the machine's slots.
+     */
+    public long getSnackItemStock(SnackItem snackItem) {
+        return this.snackSlotGrid.getTotalQuantity(snackItem);
+    }
+
+    public BigDecimal getSalesTotal() { return Money.toBigDecimal(salesTotalInCents.get()); }
+
+    public void setSalesTotal(BigDecimal salesTotal) { this.setSalesTotalInCents(Money.toCents(salesTotal)); }
+
+    public long getSalesTotalInCents() { return salesTotalInCents.get(); }
+
+    public void setSalesTotalInCents(long salesTotalInCents) {
+        this.salesTotalInCents.set(salesTotalInCents);
+        this.journal.recordSalesTotalSet(salesTotalInCents);
+    }
 
     public BigDecimal getAccumulatedMoney() {
-        return accumulatedMoney;
+        return Money.toBigDecimal(defaultSession.getAccumulatedMoneyInCents());
     }
 
     public void setAccumulatedMoney(BigDecimal accumulatedMoney) {
-        this.accumulatedMoney = accumulatedMoney;
+        this.setAccumulatedMoneyInCents(Money.toCents(accumulatedMoney));
+    }
+
+    public long getAccumulatedMoneyInCents() {
+        return defaultSession.getAccumulatedMoneyInCents();
+    }
+
+    public void setAccumulatedMoneyInCents(long accumulatedMoneyInCents) {
+        this.journal.recordCreditAdjusted(accumulatedMoneyInCents - this.defaultSession.getAccumulatedMoneyInCents());
+        this.defaultSession.setAccumulatedMoneyInCents(accumulatedMoneyInCents);
     }
 
     public ChangeInventory getChangeInventory() {
@@ -159,165 +460,1195 @@ public class SnackVendingMachine implements VendingMachine<SnackItem, SnackSlot>
     }
 
     public void setChangeInventory(ChangeInventory changeInventory) {
+        for (int index = 0; index < DenominationRegistry.size(); index++) {
+            Payable denomination = DenominationRegistry.getDenomination(index);
+            int delta = changeInventory.getCountOfPayable(denomination) - this.changeInventory.getCountOfPayable(denomination);
+
+            if (delta != 0) {
+                this.journal.recordChangeCountAdjusted(index, delta);
+            }
+        }
+
+        this.changeInventory.setJournal(NoOpMachineJournal.INSTANCE);
+        changeInventory.setJournal(this.journal);
         this.changeInventory = changeInventory;
     }
 
     public MachineState getCurrentlyOperatingState() {
-        return currentlyOperatingState;
+        return currentlyOperatingState.get();
     }
 
-    public void setCurrentlyOperatingState(MachineState currentlyOperatingState) {
-        this.currentlyOperatingState = currentlyOperatingState;
-        this.printCurrentlyOperatingState();
+    /**
+     * @throws IllegalStateTransitionException if the machine's transition table does not allow it from the current state.
+     */
+    public void setCurrentlyOperatingState(MachineState currentlyOperatingState) throws IllegalStateTransitionException {
+        if (! this.tryTransitionTo(currentlyOperatingState)) {
+            throw new IllegalStateTransitionException(ExceptionMessage.ILLEGAL_STATE_TRANSITION.getMessage());
+        }
+    }
+
+    public StateTransitionTable getStateTransitionTable() {
+        return stateTransitionTable;
+    }
+
+    /**
+     * Moves the machine from whatever state it is in to the given one, if the
+     * transition table allows it. Concurrent transitions (coin acceptor,
+     * keypad, remote disable...) are ordered by compare-and-set on the state:
+     * each is checked against the state it actually replaces.
+     *
+     * @return false if the transition is not allowed from the current state.
+     */
+    public boolean tryTransitionTo(MachineState toState) {
+        while (true) {
+            MachineState fromState = this.currentlyOperatingState.get();
+
+            if (! this.stateTransitionTable.isAllowed(fromState, toState)) {
+                return false;
+            } else if (this.currentlyOperatingState.compareAndSet(fromState, toState)) {
+                this.onStateTransition(fromState, toState);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The machine's state is shared by its sessions, so a customer may find
+     * it already in the state they are heading for, e.g selecting while
+     * another customer is choosing: it is then left as it is, the table has
+     * no self-loops.
+     *
+     * @return true if the machine is (now) in the state.
+     */
+    private boolean tryEnterState(MachineState toState) {
+        return this.currentlyOperatingState.get() == toState || this.tryTransitionTo(toState);
+    }
+
+    /**
+     * A session with a selection dispenses even if another one took the
+     * machine back to idle meanwhile, going through the selection state
+     * again, as the transition table only reaches dispensing from there.
+     *
+     * @return true if the machine is (now) dispensing.
+     */
+    private boolean tryEnterDispensingState() {
+        MachineState dispensingState = MachineState.DISPENSING_SELECTED_ITEM_AND_CUSTOMER_CHANGE;
+
+        return this.currentlyOperatingState.get() == dispensingState
+                || this.tryTransitionTo(dispensingState)
+                || (this.tryEnterState(MachineState.PROCESSING_CUSTOMER_SELECTION) && this.tryEnterState(dispensingState));
+    }
+
+    /**
+     * @return false if the machine is no longer in fromState or the transition is not allowed.
+     */
+    private boolean transitionState(MachineState fromState, MachineState toState) {
+        if (! this.stateTransitionTable.isAllowed(fromState, toState) || ! this.currentlyOperatingState.compareAndSet(fromState, toState)) {
+            return false;
+        }
+
+        this.onStateTransition(fromState, toState);
+        return true;
+    }
+
+    private void onStateTransition(MachineState fromState, MachineState toState) {
+        this.stateTransitionTable.runHooks(fromState, toState);
+        this.metrics.countStateTransition(toState);
+        this.eventBus.publish(MachineEvent.stateChanged(toState));
+
+        // Whoever moves the state last after the machine was disabled takes it out of service,
+        // so a disable racing with a customer's input is never lost.
+        if (! this.isFunctional && toState != MachineState.OUT_OF_SERVICE) {
+            this.tryTransitionTo(MachineState.OUT_OF_SERVICE);
+        }
     }
 
     public SnackSlot getCurrentlySelectedSnackSlot() {
-        return currentlySelectedSnackSlot;
+        return defaultSession.getSelectedSnackSlot();
     }
 
     public void setCurrentlySelectedSnackSlot(SnackSlot currentlySelectedSnackSlot) {
-        this.currentlySelectedSnackSlot = currentlySelectedSnackSlot;
+        this.defaultSession.setSelectedSnackSlot(currentlySelectedSnackSlot);
     }
 
     public boolean isShouldStartProcessingRequest() {
-        return shouldStartProcessingRequest;
+        return defaultSession.isShouldStartProcessingRequest();
     }
 
     public void setShouldStartProcessingRequest(boolean shouldStartProcessingRequest) {
-        this.shouldStartProcessingRequest = shouldStartProcessingRequest;
+        this.defaultSession.setShouldStartProcessingRequest(shouldStartProcessingRequest);
+    }
+
+    /**
+     * @return the session used by the methods that do not take one, i.e the
+     * customer standing in front of the machine's own keypad and slots.
+     */
+    public VendingSession getDefaultSession() {
+        return defaultSession;
+    }
+
+    /**
+     * Opens a new customer session sharing this machine's snack slots and
+     * change inventory, e.g for another door of a multi-door unit.
+     */
+    public VendingSession openSession() {
+        return new VendingSession();
+    }
+
+    public SnackItem processRequestAndReturnSelectedSnackItem(
+            SnackSlot selectedSnackSlot
+    ) throws CustomerRequestNotConfirmedException, SnackSoldOutException {
+        return this.processRequestAndReturnSelectedSnackItem(this.defaultSession, selectedSnackSlot);
     }
 
     /**
      * Processes customer's request/order where he selected a SnackSlot
-     * out of the Machine's 5x5 grid of Snack Slots and if the request is valid,
+     * out of the Machine's grid of Snack Slots and if the request is valid,
      * that is the request is confirmed and SnackSlot selected has items, then
      * it will return the SnackItem at the front of the selected snack slot.
+     * If the selected slot is empty but another slot of the machine still holds
+     * the same item, the selection is redirected to that slot.
      *
+     * @param session the customer's session.
      * @param selectedSnackSlot the customer's selected SnackSlot.
      * @return the Snack Item which is in the customer's selected SnackSlot
      * @throws   CustomerRequestNotConfirmedException if customer's request is not confirmed.
-     * @throws  SnackSoldOutException if selected snack slot is out-of-items.
+     * @throws  SnackSoldOutException if selected snack item is out-of-items.
+     * @throws IllegalStateTransitionException if the machine is out of service.
      */
     public SnackItem processRequestAndReturnSelectedSnackItem(
+            VendingSession session,
             SnackSlot selectedSnackSlot
     ) throws CustomerRequestNotConfirmedException, SnackSoldOutException {
-        this.currentlySelectedSnackSlot = selectedSnackSlot;
-        this.setCurrentlyOperatingState(MachineState.PROCESSING_CUSTOMER_SELECTION);
+        long startNanos = this.metrics.startTiming();
 
-        if (! this.shouldStartProcessingRequest) {
-            throw new CustomerRequestNotConfirmedException(ExceptionMessage.CUSTOMER_REQUEST_NOT_CONFIRMED.getMessage());
+        try {
+            OperationResult result = this.selectSnackSlot(session, selectedSnackSlot);
+
+            if (result == OperationResult.ILLEGAL_STATE_TRANSITION) {
+                throw new IllegalStateTransitionException(ExceptionMessage.ILLEGAL_STATE_TRANSITION.getMessage());
+            } else if (result == OperationResult.REQUEST_NOT_CONFIRMED) {
+                throw new CustomerRequestNotConfirmedException(ExceptionMessage.CUSTOMER_REQUEST_NOT_CONFIRMED.getMessage());
+            } else if (result == OperationResult.SOLD_OUT) {
+                throw new SnackSoldOutException(ExceptionMessage.EMPTY_SNACK_SLOT.getMessage());
+            }
+
+            return session.getSelectedSnackSlot().getItem();
+        } finally {
+            this.metrics.recordLatency(MachineOperation.PROCESS_REQUEST, startNanos);
+        }
+    }
+
+    /**
+     * Same as processRequestAndReturnSelectedSnackItem, but reports a
+     * rejected request as a result code instead of throwing. On success the
+     * selected item is the one of session.getSelectedSnackSlot().
+     *
+     * @return OK, ILLEGAL_STATE_TRANSITION if the machine is out of service,
+     * REQUEST_NOT_CONFIRMED or SOLD_OUT.
+     */
+    public OperationResult tryProcessRequest(VendingSession session, SnackSlot selectedSnackSlot) {
+        long startNanos = this.metrics.startTiming();
+
+        try {
+            return this.selectSnackSlot(session, selectedSnackSlot);
+        } finally {
+            this.metrics.recordLatency(MachineOperation.PROCESS_REQUEST, startNanos);
+        }
+    }
+
+    private OperationResult selectSnackSlot(VendingSession session, SnackSlot selectedSnackSlot) {
+        // Checked again once the state moved: a disable racing with the selection may have won.
+        if (! this.isFunctional || ! this.tryEnterState(MachineState.PROCESSING_CUSTOMER_SELECTION) || ! this.isFunctional) {
+            return OperationResult.ILLEGAL_STATE_TRANSITION;
+        }
+
+        session.setSelectedSnackSlot(selectedSnackSlot);
+
+        if (! session.isShouldStartProcessingRequest()) {
+            return OperationResult.REQUEST_NOT_CONFIRMED;
         } else if (selectedSnackSlot.getQuantity() == 0) {
-            throw new SnackSoldOutException(ExceptionMessage.EMPTY_SNACK_SLOT.getMessage());
+            SnackSlot alternateSnackSlot = this.findAlternateSnackSlot(selectedSnackSlot);
+
+            if (alternateSnackSlot == null) {
+                this.metrics.countOutcome(PurchaseOutcome.SOLD_OUT);
+                return OperationResult.SOLD_OUT;
+            }
+
+            session.setSelectedSnackSlot(alternateSnackSlot);
         }
 
-        this.shouldStartProcessingRequest = false;
-        this.printCurrentlySelectedSnackItemInformation();
+        SnackSlot chosenSnackSlot = session.getSelectedSnackSlot();
+
+        session.setShouldStartProcessingRequest(false);
+        session.setPriceTable(this.priceBook.getCurrent());
+        this.journal.recordItemSelected(chosenSnackSlot.getSlotId(), this.getSelectedItemPriceInCents(session));
+        this.printSelectedSnackItemInformation(session);
+
+        return OperationResult.OK;
+    }
 
-        return this.currentlySelectedSnackSlot.getItem();
+    public void insertMoney(MoneySlot moneySlot, Payable payable) {
+        this.insertMoney(this.defaultSession, moneySlot, payable);
     }
 
     /**
      * Inserts Payable [Coin, Note or Card] into it's corresponding/matching
      * MoneySlot on the Snack Vending Machine, validates the entry and then
-     * adds it's worth to the machine's balance (accumulated money) and also
-     * to the Change Inventory of the machine. Finally, it displays the accumulated
+     * adds it's worth to the session's balance (accumulated money). Coins and
+     * notes are held in the session's escrow, apart from the Change Inventory,
+     * until the sale commits. A card is not credited, its authorization is
+     * started instead and answered in the background. Finally, it displays the accumulated
      * money to the customer, to inform him about how much he entered so far.
      *
+     * @param session the customer's session.
      * @param moneySlot Slot to insert the money in.
      * @param payable Payable to insert into the corresponding MoneySlot.
      */
-    public void insertMoney(MoneySlot moneySlot, Payable payable) {
-        moneySlot.validate(payable);
-        this.accumulatedMoney = this.accumulatedMoney.add(payable.getWorth());
-        this.changeInventory.add(payable, 1);
-        this.printCurrentlyAccumulatedMoney();
+    public void insertMoney(VendingSession session, MoneySlot moneySlot, Payable payable) {
+        long startNanos = this.metrics.startTiming();
+
+        try {
+            moneySlot.validate(payable);
+            this.acceptMoney(session, payable, 1);
+        } finally {
+            this.metrics.recordLatency(MachineOperation.INSERT_MONEY, startNanos);
+        }
+    }
+
+    public void insertMoney(MoneySlot moneySlot, Payable payable, int count) {
+        this.insertMoney(this.defaultSession, moneySlot, payable, count);
+    }
+
+    /**
+     * Inserts a burst of the same payable at once, e.g coins reported together
+     * by a coin hopper: the entry is validated once, and the balance, the
+     * Change Inventory, the journal and the display are updated once for all
+     * of them.
+     *
+     * @param count count of the payable inserted, at least 1.
+     */
+    public void insertMoney(VendingSession session, MoneySlot moneySlot, Payable payable, int count) {
+        long startNanos = this.metrics.startTiming();
+
+        try {
+            checkInsertedCount(count);
+            moneySlot.validate(payable);
+            this.acceptMoney(session, payable, count);
+        } finally {
+            this.metrics.recordLatency(MachineOperation.INSERT_MONEY, startNanos);
+        }
+    }
+
+    /**
+     * Same as insertMoney, but reports a rejected entry (e.g a worn coin or a
+     * note put in the coin slot) as a result code instead of throwing.
+     *
+     * @return OK, INVALID_ENTRY or UNSUPPORTED_PAYABLE_TYPE.
+     */
+    public OperationResult tryInsertMoney(VendingSession session, MoneySlot moneySlot, Payable payable) {
+        return this.tryInsertMoney(session, moneySlot, payable, 1);
+    }
+
+    /**
+     * Same as the bulk insertMoney, reporting a rejected entry as a result code instead of throwing.
+     *
+     * @return OK, INVALID_ENTRY or UNSUPPORTED_PAYABLE_TYPE.
+     */
+    public OperationResult tryInsertMoney(VendingSession session, MoneySlot moneySlot, Payable payable, int count) {
+        long startNanos = this.metrics.startTiming();
+
+        try {
+            checkInsertedCount(count);
+            OperationResult result = moneySlot.checkEntry(payable);
+
+            if (result.isSuccessful()) {
+                this.acceptMoney(session, payable, count);
+            }
+
+            return result;
+        } finally {
+            this.metrics.recordLatency(MachineOperation.INSERT_MONEY, startNanos);
+        }
+    }
+
+    private void acceptMoney(VendingSession session, Payable payable, int count) {
+        if (payable instanceof Card) {
+            this.startCardAuthorization(session, (Card) payable);
+        } else {
+            session.setAccumulatedMoneyInCents(session.getAccumulatedMoneyInCents() + payable.getWorthInCents() * count);
+
+            if (DenominationRegistry.isDenomination(payable)) {
+                session.getEscrow().add(payable, count);
+            }
+
+            this.journal.recordMoneyInserted(payable, count);
+        }
+
+        this.eventBus.publish(MachineEvent.moneyInserted(payable, count, session.getAccumulatedMoneyInCents()));
+    }
+
+    /**
+     * Asks the card payment processor for a hold of the selected item's
+     * price, or of the highest price if nothing is selected yet, and returns
+     * straight away: the answer is only waited for when the item is
+     * dispensed, so the customer keeps using the keypad meanwhile. An answer
+     * that does not come within the timeout counts as a decline. A card
+     * inserted over another one replaces its authorization.
+     */
+    private void startCardAuthorization(VendingSession session, Card card) {
+        SnackSlot selectedSnackSlot = session.getSelectedSnackSlot();
+        long amountInCents = selectedSnackSlot == null || selectedSnackSlot.getItem() == null ?
+                this.priceBook.getCurrent().getHighestPriceInCents() :
+                this.getSelectedItemPriceInCents(session);
+
+        this.releaseCardAuthorization(session);
+        session.setCardAuthorization(this.authorizeCard(card, amountInCents));
+    }
+
+    /**
+     * @return the processor's answer to a hold of the amount on the card, a
+     * decline if the processor failed or a timeout if it did not answer in
+     * time. An approval that comes after the timeout is released.
+     */
+    private CompletableFuture<CardAuthorization> authorizeCard(Card card, long amountInCents) {
+        CardPaymentProcessor processor = this.cardPaymentProcessor;
+        CompletableFuture<CardAuthorization> cardAuthorization = new CompletableFuture<>();
+        long startNanos = this.metrics.startTiming();
+
+        processor.authorize(card, amountInCents).whenComplete((answer, failure) -> {
+            CardAuthorization outcome = failure == null ? answer : CardAuthorization.declined(card, amountInCents);
+
+            this.metrics.recordLatency(MachineOperation.CARD_AUTHORIZATION, startNanos);
+
+            if (! cardAuthorization.complete(outcome) && outcome.isApproved()) {
+                // Timed out meanwhile, nothing is ever going to capture this hold.
+                processor.release(outcome);
+            }
+        });
+
+        return cardAuthorization.completeOnTimeout(
+                CardAuthorization.timedOut(card, amountInCents),
+                this.cardAuthorizationTimeoutMillis,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Drops the session's card, releasing its hold once (if ever) approved.
+     */
+    private void releaseCardAuthorization(VendingSession session) {
+        CompletableFuture<CardAuthorization> cardAuthorization = session.getCardAuthorization();
+
+        if (cardAuthorization != null) {
+            this.releaseOnceApproved(cardAuthorization);
+            session.setCardAuthorization(null);
+        }
+    }
+
+    private void releaseOnceApproved(CompletableFuture<CardAuthorization> cardAuthorization) {
+        CardPaymentProcessor processor = this.cardPaymentProcessor;
+
+        cardAuthorization.thenAccept(answer -> {
+            if (answer.isApproved()) {
+                processor.release(answer);
+            }
+        });
+    }
+
+    /**
+     * @return the session's card authorization once answered, which is at the
+     * latest when it times out, or null if no card was inserted.
+     */
+    private static CardAuthorization awaitCardAuthorization(VendingSession session) {
+        CompletableFuture<CardAuthorization> cardAuthorization = session.getCardAuthorization();
+        return cardAuthorization == null ? null : cardAuthorization.join();
+    }
+
+    private static void checkInsertedCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count of inserted money must be positive: " + count);
+        }
     }
 
     public Map<Payable, Integer> cancelRequestAndRefundCustomer() {
         return this.refund();
     }
 
+    public Map<Payable, Integer> cancelRequestAndRefundCustomer(VendingSession session) {
+        return this.refund(session);
+    }
+
+    /**
+     * Dispense the SnackItem at the front of the customer's selected snack
+     * slot, and charge the customer's card with its price if paid by card.
+     * The item is taken before the card is captured and put back if the
+     * processor refuses the capture, so the customer is neither charged
+     * for an item someone else took nor handed one that was not paid.
+     *
+     * @param priceInCents the selected item's price in the session's pinned price table.
+     * @param cardAuthorization the card's approved authorization, or null if paid in cash.
+     * @return OK, SOLD_OUT if another customer took the slot's last item
+     * first, or CARD_DECLINED if the card's capture failed.
+     */
+    private OperationResult dispenseSelectedSnackItem(VendingSession session, long priceInCents, CardAuthorization cardAuthorization) {
+        SnackSlot selectedSnackSlot = session.getSelectedSnackSlot();
+        SnackItem selectedSnackItem = selectedSnackSlot.getItem();
+
+        if (! selectedSnackSlot.getGrid().tryDispenseItem(selectedSnackSlot.getSlotId())) {
+            return OperationResult.SOLD_OUT;
+        } else if (cardAuthorization != null && ! this.captureCardPayment(cardAuthorization, priceInCents)) {
+            selectedSnackSlot.getGrid().returnItem(selectedSnackSlot.getSlotId());
+            return OperationResult.CARD_DECLINED;
+        }
+
+        this.salesTotalInCents.addAndGet(priceInCents);
+        this.journal.recordItemDispensed(selectedSnackSlot.getSlotId(), priceInCents);
+        this.eventBus.publish(MachineEvent.itemDispensed(selectedSnackItem, priceInCents));
+
+        return OperationResult.OK;
+    }
+
     /**
-     * Dispense the SnackItem at the front of the customer's selected snack slot
-     * iff the selected item is FULLY PAID and the Machine's able to produce the change
-     * that has to be refunded to the customer on successful purchase (if any).
+     * Charges the card the item's price and queues the payment for
+     * settlement, if the machine settles any: on the sale's thread, before
+     * the sale returns, when the processor captured straight away. A capture
+     * the processor refuses outright releases the card's hold; one that
+     * fails later, once the item is out, can only be counted, as can a
+     * payment the settlement queue could not take.
      *
-     * @return the SnackItem at the front of the customer's selected snack slot.
-     * @throws ItemNotFullyPaidException if balance is less than the selected item's price.
-     * @throws InsufficientChangeException if the machine cannot produce the change that's to be refunded.
+     * @return false if the capture was refused, nothing was charged then.
      */
-    private SnackItem dispenseSelectedSnackItem() throws ItemNotFullyPaidException, InsufficientChangeException {
-        SnackItem selectedSnackItem = this.currentlySelectedSnackSlot.getItem();
+    private boolean captureCardPayment(CardAuthorization cardAuthorization, long priceInCents) {
+        CompletableFuture<Void> capture = this.startCapture(cardAuthorization, priceInCents);
 
-        if (! this.isSelectedItemFullyPaid()) {
-            throw new ItemNotFullyPaidException(ExceptionMessage.ITEM_NOT_FULLY_PAID.getMessage());
-        } else if (! this.changeInventory.canProduceChangeForAmount(this.accumulatedMoney.subtract(selectedSnackItem.getPrice()))) {
-            throw new InsufficientChangeException(ExceptionMessage.INSUFFICIENT_CHANGE_IN_INVENTORY.getMessage());
+        if (capture.isCompletedExceptionally()) {
+            this.metrics.countCardCaptureFailure();
+            this.cardPaymentProcessor.release(cardAuthorization);
+            return false;
         }
 
-        this.currentlySelectedSnackSlot.dispenseSnackItem();
-        this.salesTotal = this.salesTotal.add(selectedSnackItem.getPrice());
+        // The captured money is the customer's credit the sale is paid from.
+        this.journal.recordCreditAdjusted(priceInCents);
+        CardSettlementQueue settlementQueue = this.cardSettlementQueue;
 
-        return selectedSnackItem;
+        capture.whenComplete((captured, captureFailure) -> {
+            if (captureFailure != null) {
+                this.metrics.countCardCaptureFailure();
+            } else if (settlementQueue != null) {
+                this.queueSettlement(settlementQueue, cardAuthorization, priceInCents);
+            }
+        });
+
+        return true;
     }
 
     /**
-     * Calculates change that needs to be refunded/dispensed to
-     * customer upon successful purchase and reflects deductions on
-     * the Snack Vending Machine's internal Change Inventory component.
+     * @return the processor's capture, failed if the processor threw.
+     */
+    private CompletableFuture<Void> startCapture(CardAuthorization cardAuthorization, long priceInCents) {
+        try {
+            return this.cardPaymentProcessor.capture(cardAuthorization, priceInCents);
+        } catch (RuntimeException captureException) {
+            return CompletableFuture.failedFuture(captureException);
+        }
+    }
+
+    private void queueSettlement(CardSettlementQueue settlementQueue, CardAuthorization cardAuthorization, long priceInCents) {
+        try {
+            settlementQueue.enqueue(cardAuthorization, priceInCents);
+        } catch (RuntimeException queueingException) {
+            // The item is out and the card charged, the sale stands.
+            this.metrics.countSettlementFailure();
+        }
+    }
+
+    /**
+     * Commits the sale: the customer's escrowed coins and notes go into the
+     * Change Inventory and the change reserved for the customer is handed
+     * out, its deductions were already reflected on the Snack Vending
+     * Machine's internal Change Inventory component when it was reserved.
      *
      * @return a map of Payable -> Integer, where:
      * Payable could be Note, Coin, Slot and
      * Integer is the count of that certain type of Payable in the inventory.
      */
-    private Map<Payable, Integer> calculateAndDispenseChange() {
-        BigDecimal selectedSnackItemPrice = this.currentlySelectedSnackSlot.getItem().getPrice();
-        Map<Payable, Integer> change = this.changeInventory.getChange(this.accumulatedMoney.subtract(selectedSnackItemPrice));
-        this.getChangeInventory().reflectInventoryDeductionsForChange(change);
+    private Map<Payable, Integer> dispenseReservedChange(VendingSession session, ChangeReservation changeReservation) {
+        // Committed first, it takes the change it reserved out of the escrow.
+        Map<Payable, Integer> change = changeReservation.commit();
+        this.changeInventory.mergeEscrow(session.getEscrow());
 
-        this.currentlySelectedSnackSlot = null;
-        this.accumulatedMoney = BigDecimal.valueOf(0);
+        this.recordChangeIssued(change);
+        session.reset();
         return change;
     }
 
+    @Override
+    public Pair<SnackItem, Map<Payable, Integer>> dispenseSelectedItemAndCustomerChange() {
+        return this.dispenseSelectedItemAndCustomerChange(this.defaultSession);
+    }
+
     /**
      * Dispense the selected snack item and also
      * the calculated customer change upon successful purchase of snack item.
+     * The change is computed once and reserved before the item is dispensed,
+     * if dispensing fails the reservation is rolled back.
+     * If the customer's card is still being authorized, the calling thread
+     * waits for the answer, at most for the authorization timeout: callers
+     * that must not block, like FleetRuntime, wait for the session's card
+     * authorization to complete before calling.
      *
+     * @param session the customer's session.
      * @return a Pair of: SnackItem, Map<Payable, Integer> where the Map
      * represents the change refunded back to the customer upon purchase iff
      * the inserted money (i.e accumulated money) exceeds the price of selected item.
      */
-    @Override
-    public Pair<SnackItem, Map<Payable, Integer>> dispenseSelectedItemAndCustomerChange() {
+    public Pair<SnackItem, Map<Payable, Integer>> dispenseSelectedItemAndCustomerChange(VendingSession session) {
+        long startNanos = this.metrics.startTiming();
+
         try {
-            SnackItem dispensedSnackItem = this.dispenseSelectedSnackItem();
-            Map<Payable, Integer> customerChange = this.calculateAndDispenseChange();
-            this.printCalculatedCustomerChange(customerChange);
-            this.setCurrentlyOperatingState(MachineState.DISPENSING_SELECTED_ITEM_AND_CUSTOMER_CHANGE);
+            PurchaseReceipt receipt = new PurchaseReceipt();
+            OperationResult result = this.dispenseInto(session, receipt);
+
+            if (result == OperationResult.NOT_FULLY_PAID || result == OperationResult.CARD_DECLINED) {
+                throw new ItemNotFullyPaidException(ExceptionMessage.ITEM_NOT_FULLY_PAID.getMessage());
+            } else if (result == OperationResult.ILLEGAL_STATE_TRANSITION) {
+                throw new IllegalStateTransitionException(ExceptionMessage.ILLEGAL_STATE_TRANSITION.getMessage());
+            } else if (result == OperationResult.SOLD_OUT) {
+                throw new EmptySnackSlotException(ExceptionMessage.EMPTY_SNACK_SLOT.getMessage());
+            }
 
-            return new Pair<>(dispensedSnackItem, customerChange);
-        } catch (InsufficientChangeException insufficientChangeException) {
-            return new Pair<>(null, this.refund());
+            return new Pair<>(receipt.getDispensedItem(), receipt.getChange());
+        } finally {
+            this.metrics.recordLatency(MachineOperation.DISPENSE, startNanos);
         }
     }
 
     /**
-     * Calculates and returns amount to be refunded to customer
-     * upon cancellation of request OR the machine's not being able
-     * to produce customer's change upon successful purchase of item.
+     * Same as dispenseSelectedItemAndCustomerChange, but reports the outcome
+     * as a result code and puts the item and change in the given receipt
+     * instead of throwing and allocating a result.
      *
-     * @return Refunded Amount in form of Map<Payable, Integer>
+     * @return OK, NOT_FULLY_PAID, CARD_DECLINED if the card's authorization
+     * was declined or timed out or its capture failed (the card is dropped
+     * from the session), ILLEGAL_STATE_TRANSITION if the machine is out of
+     * service, SOLD_OUT if another customer took the last item first (the
+     * balance is kept), or INSUFFICIENT_CHANGE if the money was refunded.
+     */
+    public OperationResult tryDispenseSelectedItemAndCustomerChange(VendingSession session, PurchaseReceipt receipt) {
+        long startNanos = this.metrics.startTiming();
+
+        try {
+            return this.dispenseInto(session, receipt);
+        } finally {
+            this.metrics.recordLatency(MachineOperation.DISPENSE, startNanos);
+        }
+    }
+
+    /**
+     * Reserves the customer's change iff the selected item is FULLY PAID,
+     * dispenses the item while the reserved coins are held aside, then hands
+     * the change out. If dispensing fails the reservation is rolled back.
+     */
+    private OperationResult dispenseInto(VendingSession session, PurchaseReceipt receipt) {
+        CardAuthorization cardAuthorization = awaitCardAuthorization(session);
+
+        if (cardAuthorization != null && ! cardAuthorization.isApproved()) {
+            session.setCardAuthorization(null);
+            this.metrics.countOutcome(PurchaseOutcome.CARD_DECLINED);
+            receipt.set(OperationResult.CARD_DECLINED, null, Collections.emptyMap(), false);
+            return OperationResult.CARD_DECLINED;
+        }
+
+        long priceInCents = this.getSelectedItemPriceInCents(session);
+
+        if (! isFullyPaid(session, priceInCents, cardAuthorization)) {
+            this.metrics.countOutcome(PurchaseOutcome.NOT_FULLY_PAID);
+            receipt.set(OperationResult.NOT_FULLY_PAID, null, Collections.emptyMap(), false);
+            return OperationResult.NOT_FULLY_PAID;
+        } else if (! this.isFunctional || ! this.tryEnterDispensingState()) {
+            receipt.set(OperationResult.ILLEGAL_STATE_TRANSITION, null, Collections.emptyMap(), false);
+            return OperationResult.ILLEGAL_STATE_TRANSITION;
+        }
+
+        // A card pays the whole price, inserted cash is then all change.
+        long changeInCents = cardAuthorization != null ?
+                session.getAccumulatedMoneyInCents() :
+                session.getAccumulatedMoneyInCents() - priceInCents;
+        ChangeReservation changeReservation = this.changeInventory.tryReserveChange(changeInCents, session.getEscrow());
+
+        if (changeReservation == null) {
+            Map<Payable, Integer> refundAmount;
+
+            try {
+                refundAmount = this.refund(session);
+            } catch (RuntimeException refundingException) {
+                // Nothing was refunded, the customer keeps the session to try again or pay otherwise.
+                this.leaveDispensingState();
+                throw refundingException;
+            }
+
+            this.metrics.countOutcome(PurchaseOutcome.INSUFFICIENT_CHANGE);
+            receipt.set(OperationResult.INSUFFICIENT_CHANGE, null, refundAmount, true);
+            return OperationResult.INSUFFICIENT_CHANGE;
+        }
+
+        SnackItem dispensedSnackItem = session.getSelectedSnackSlot().getItem();
+        OperationResult dispensingResult;
+
+        try {
+            dispensingResult = this.dispenseSelectedSnackItem(session, priceInCents, cardAuthorization);
+        } catch (RuntimeException dispensingException) {
+            changeReservation.rollback();
+            this.leaveDispensingState();
+            throw dispensingException;
+        }
+
+        if (dispensingResult != OperationResult.OK) {
+            changeReservation.rollback();
+            this.leaveDispensingState();
+
+            if (dispensingResult == OperationResult.CARD_DECLINED) {
+                session.setCardAuthorization(null);
+                this.metrics.countOutcome(PurchaseOutcome.CARD_DECLINED);
+            } else {
+                this.metrics.countOutcome(PurchaseOutcome.SOLD_OUT);
+            }
+
+            receipt.set(dispensingResult, null, Collections.emptyMap(), false);
+            return dispensingResult;
+        }
+
+        Map<Payable, Integer> customerChange = this.dispenseReservedChange(session, changeReservation);
+        this.printCalculatedCustomerChange(customerChange);
+        this.leaveDispensingState();
+        this.metrics.countOutcome(PurchaseOutcome.DISPENSED);
+
+        receipt.set(OperationResult.OK, dispensedSnackItem, customerChange, false);
+        return OperationResult.OK;
+    }
+
+    /**
+     * Goes back to idle once a dispense is over, unless another session has
+     * already moved the machine on.
      */
+    private void leaveDispensingState() {
+        this.transitionState(
+                MachineState.DISPENSING_SELECTED_ITEM_AND_CUSTOMER_CHANGE,
+                MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY
+        );
+    }
+
     @Override
     public Map<Payable, Integer> refund() {
-        this.setCurrentlyOperatingState(MachineState.REFUNDING_CUSTOMER_MONEY);
-        Map<Payable, Integer> refundAmount = this.changeInventory.getChange(this.accumulatedMoney);
-        this.changeInventory.reflectInventoryDeductionsForChange(refundAmount);
+        return this.refund(this.defaultSession);
+    }
+
+    /**
+     * Returns the amount to be refunded to customer upon cancellation of
+     * request OR the machine's not being able to produce customer's change
+     * upon successful purchase of item: the coins and notes the customer
+     * inserted are given back from the session's escrow as they came in,
+     * only money that is not escrowed (e.g paid by card) is computed as
+     * change from the Change Inventory.
+     * Money is refunded in any state, e.g when the machine is out of service,
+     * where the state is simply left as it is. Otherwise the machine goes
+     * through REFUNDING_CUSTOMER_MONEY and back to idle once the money is out.
+     * The change is reserved before anything else is touched, so a refund
+     * that cannot be paid leaves the session, its card and the machine's
+     * state as they were.
+     *
+     * @param session the customer's session.
+     * @return Refunded Amount in form of Map<Payable, Integer>
+     * @throws InsufficientChangeException if the money that is not escrowed cannot be paid out as change.
+     */
+    public Map<Payable, Integer> refund(VendingSession session) {
+        long startNanos = this.metrics.startTiming();
+
+        try {
+            Escrow escrow = session.getEscrow();
+            // If the balance was lowered below what was inserted, it can only be paid out as change.
+            boolean isGivingBackEscrow = escrow.getWorthInCents() <= session.getAccumulatedMoneyInCents();
+            long changeInCents = isGivingBackEscrow ?
+                    session.getAccumulatedMoneyInCents() - escrow.getWorthInCents() :
+                    session.getAccumulatedMoneyInCents();
+            ChangeReservation changeReservation = null;
+
+            if (changeInCents > 0) {
+                changeReservation = isGivingBackEscrow ?
+                        this.changeInventory.tryReserveChange(changeInCents) :
+                        this.changeInventory.tryReserveChange(changeInCents, escrow);
+
+                if (changeReservation == null) {
+                    throw new InsufficientChangeException(ExceptionMessage.INSUFFICIENT_CHANGE_IN_INVENTORY.getMessage());
+                }
+            }
+
+            boolean isRefunding = this.tryTransitionTo(MachineState.REFUNDING_CUSTOMER_MONEY);
+            this.releaseCardAuthorization(session);
+            Map<Payable, Integer> refundAmount = new LinkedHashMap<>();
+
+            if (changeReservation != null) {
+                refundAmount.putAll(changeReservation.commit());
+            }
+
+            if (isGivingBackEscrow) {
+                for (Map.Entry<Payable, Integer> entry : escrow.toMap().entrySet()) {
+                    refundAmount.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+
+                this.releaseEscrow(escrow);
+            } else {
+                this.changeInventory.mergeEscrow(escrow);
+            }
+
+            this.recordChangeIssued(refundAmount);
+            this.journal.recordRefundIssued(session.getAccumulatedMoneyInCents());
+            this.metrics.countRefund(session.getAccumulatedMoneyInCents());
+            session.reset();
+
+            if (isRefunding) {
+                this.transitionState(MachineState.REFUNDING_CUSTOMER_MONEY, MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY);
+            }
+
+            return refundAmount;
+        } finally {
+            this.metrics.recordLatency(MachineOperation.REFUND, startNanos);
+        }
+    }
+
+    public PurchaseResultBatch processPurchaseOrders(Collection<PurchaseOrder> purchaseOrders) {
+        return this.processPurchaseOrders(purchaseOrders.toArray(new PurchaseOrder[0]));
+    }
+
+    /**
+     * Applies whole purchases in one pass, e.g to replay transactions recorded
+     * in the field: for every order the inserted money is checked and
+     * credited, the item is dispensed and the change paid out, exactly as the
+     * keypad and money slots would, but without the intermediate states,
+     * display updates and events, and without touching any session.
+     * An order that cannot be served gives the inserted money back: as it was
+     * inserted if the purchase failed before the money was taken, or as
+     * change computed from the inventory if the change could not be produced.
+     * The whole batch is charged at the prices current when it starts.
+     * Card orders are authorized CARD_AUTHORIZATION_CHUNK_SIZE orders at a
+     * time, all at once before the chunk is applied, so a batch waits for
+     * the processor about once per chunk rather than once per card order.
+     *
+     * @param purchaseOrders orders in the order they have to be applied.
+     * @return result of every order, at the same index as the order.
+     */
+    public PurchaseResultBatch processPurchaseOrders(PurchaseOrder[] purchaseOrders) {
+        long startNanos = this.metrics.startTiming();
+
+        try {
+            PurchaseResultBatch resultBatch = new PurchaseResultBatch(purchaseOrders.length);
+            int[] insertedCounts = new int[DenominationRegistry.size()];
+            PriceTable priceTable = this.priceBook.getCurrent();
+
+            for (int chunkStart = 0; chunkStart < purchaseOrders.length; chunkStart += CARD_AUTHORIZATION_CHUNK_SIZE) {
+                int chunkEnd = Math.min(chunkStart + CARD_AUTHORIZATION_CHUNK_SIZE, purchaseOrders.length);
+                List<CompletableFuture<CardAuthorization>> cardAuthorizations = this.startCardAuthorizations(
+                        purchaseOrders, chunkStart, chunkEnd, priceTable
+                );
+
+                for (int orderIndex = chunkStart; orderIndex < chunkEnd; orderIndex++) {
+                    PurchaseOutcome outcome = this.processPurchaseOrder(
+                            purchaseOrders[orderIndex],
+                            cardAuthorizations == null ? null : cardAuthorizations.get(orderIndex - chunkStart),
+                            priceTable,
+                            resultBatch,
+                            orderIndex,
+                            insertedCounts
+                    );
+
+                    resultBatch.setOutcome(orderIndex, outcome);
+                    this.metrics.countOutcome(outcome);
+                }
+            }
+
+            return resultBatch;
+        } finally {
+            this.metrics.recordLatency(MachineOperation.PURCHASE_BATCH, startNanos);
+        }
+    }
+
+    /**
+     * Asks for a hold of the price of every card order of the chunk that
+     * looks payable, and waits until the processor answered them all.
+     *
+     * @return the authorizations, at the order's index within the chunk and
+     * null for the other orders, or null if the chunk has no card order.
+     */
+    private List<CompletableFuture<CardAuthorization>> startCardAuthorizations(
+            PurchaseOrder[] purchaseOrders,
+            int chunkStart,
+            int chunkEnd,
+            PriceTable priceTable
+    ) {
+        List<CompletableFuture<CardAuthorization>> cardAuthorizations = null;
+
+        for (int orderIndex = chunkStart; orderIndex < chunkEnd; orderIndex++) {
+            CompletableFuture<CardAuthorization> cardAuthorization = this.startCardAuthorization(purchaseOrders[orderIndex], priceTable);
+
+            if (cardAuthorization != null && cardAuthorizations == null) {
+                cardAuthorizations = new ArrayList<>(Collections.nCopies(chunkEnd - chunkStart, null));
+            }
+
+            if (cardAuthorization != null) {
+                cardAuthorizations.set(orderIndex - chunkStart, cardAuthorization);
+            }
+        }
+
+        if (cardAuthorizations != null) {
+            CompletableFuture.allOf(
+                    cardAuthorizations.stream().filter(Objects::nonNull).toArray(CompletableFuture<?>[]::new)
+            ).join();
+        }
+
+        return cardAuthorizations;
+    }
+
+    /**
+     * @return the authorization of the price of the order's item on its
+     * card, or null if the order is not paid by card or cannot be served.
+     */
+    private CompletableFuture<CardAuthorization> startCardAuthorization(PurchaseOrder purchaseOrder, PriceTable priceTable) {
+        int slotId = purchaseOrder.getSlotId();
+
+        if (purchaseOrder.getPaymentType() != PaymentType.CARD || ! this.isFunctional
+                || slotId < 0 || slotId >= this.snackSlotGrid.getSlotsCount() || this.snackSlotGrid.getItem(slotId) == null) {
+            return null;
+        }
+
+        Payable[] insertedMoney = purchaseOrder.getInsertedMoney();
+        long paidInCents = 0;
+
+        for (Payable payable : insertedMoney) {
+            if (! (payable instanceof Card)) {
+                return null;
+            }
+
+            paidInCents += payable.getWorthInCents();
+        }
 
-        this.currentlySelectedSnackSlot = null;
-        this.accumulatedMoney = BigDecimal.valueOf(0);
-        return refundAmount;
+        long priceInCents = priceTable.getPriceInCents(this.snackSlotGrid.getItem(slotId));
+        return paidInCents < priceInCents ? null : this.authorizeCard((Card) insertedMoney[0], priceInCents);
+    }
+
+    /**
+     * @param cardAuthorization the order's card authorization if one was started, released if the order is not served.
+     */
+    private PurchaseOutcome processPurchaseOrder(
+            PurchaseOrder purchaseOrder,
+            CompletableFuture<CardAuthorization> cardAuthorization,
+            PriceTable priceTable,
+            PurchaseResultBatch resultBatch,
+            int orderIndex,
+            int[] insertedCounts
+    ) {
+        if (! this.isFunctional) {
+            this.giveBackInsertedMoney(purchaseOrder, cardAuthorization, resultBatch, orderIndex);
+            return PurchaseOutcome.OUT_OF_SERVICE;
+        }
+
+        Payable[] insertedMoney = purchaseOrder.getInsertedMoney();
+        long paidInCents = 0;
+
+        for (Payable payable : insertedMoney) {
+            if (! isAcceptedPayment(purchaseOrder.getPaymentType(), payable)) {
+                this.giveBackInsertedMoney(purchaseOrder, cardAuthorization, resultBatch, orderIndex);
+                return PurchaseOutcome.UNSUPPORTED_PAYMENT;
+            }
+
+            paidInCents += payable.getWorthInCents();
+        }
+
+        int slotId = purchaseOrder.getSlotId();
+
+        if (slotId < 0 || slotId >= this.snackSlotGrid.getSlotsCount()) {
+            this.giveBackInsertedMoney(purchaseOrder, cardAuthorization, resultBatch, orderIndex);
+            return PurchaseOutcome.INVALID_SLOT;
+        }
+
+        SnackItem snackItem = this.snackSlotGrid.getItem(slotId);
+
+        if (snackItem != null && this.snackSlotGrid.getQuantity(slotId) == 0 && this.isRedirectingSoldOutSelections) {
+            int alternateSlotId = this.snackSlotGrid.findSlotHolding(snackItem);
+            slotId = alternateSlotId < 0 ? slotId : alternateSlotId;
+        }
+
+        if (snackItem == null || this.snackSlotGrid.getQuantity(slotId) == 0) {
+            this.giveBackInsertedMoney(purchaseOrder, cardAuthorization, resultBatch, orderIndex);
+            return PurchaseOutcome.SOLD_OUT;
+        }
+
+        long priceInCents = priceTable.getPriceInCents(snackItem);
+
+        if (paidInCents < priceInCents) {
+            this.giveBackInsertedMoney(purchaseOrder, cardAuthorization, resultBatch, orderIndex);
+            return PurchaseOutcome.NOT_FULLY_PAID;
+        } else if (purchaseOrder.getPaymentType() == PaymentType.CARD) {
+            return this.processCardPurchaseOrder(
+                    cardAuthorization == null ? this.authorizeCard((Card) insertedMoney[0], priceInCents) : cardAuthorization,
+                    slotId,
+                    snackItem,
+                    priceInCents,
+                    resultBatch,
+                    orderIndex
+            );
+        }
+
+        for (Payable payable : insertedMoney) {
+            if (DenominationRegistry.isDenomination(payable)) {
+                insertedCounts[DenominationRegistry.indexOf(payable)]++;
+            }
+
+            this.journal.recordMoneyInserted(payable, 1);
+        }
+
+        for (int denominationIndex = 0; denominationIndex < insertedCounts.length; denominationIndex++) {
+            if (insertedCounts[denominationIndex] > 0) {
+                Payable denomination = DenominationRegistry.getDenomination(denominationIndex);
+
+                this.changeInventory.add(denomination, insertedCounts[denominationIndex]);
+                this.journal.recordEscrowReleased(denomination, insertedCounts[denominationIndex]);
+                insertedCounts[denominationIndex] = 0;
+            }
+        }
+
+        ChangeReservation changeReservation = this.changeInventory.tryReserveChange(paidInCents - priceInCents);
+
+        if (changeReservation == null) {
+            this.refundPurchaseOrder(paidInCents, resultBatch, orderIndex);
+            return PurchaseOutcome.INSUFFICIENT_CHANGE;
+        }
+
+        if (! this.snackSlotGrid.tryDispenseItem(slotId)) {
+            // Another customer took the last item since it was checked.
+            changeReservation.rollback();
+            this.refundPurchaseOrder(paidInCents, resultBatch, orderIndex);
+            return PurchaseOutcome.SOLD_OUT;
+        }
+
+        this.salesTotalInCents.addAndGet(priceInCents);
+        this.journal.recordItemDispensed(slotId, priceInCents);
+
+        Map<Payable, Integer> change = changeReservation.commit();
+        this.recordChangeIssued(change);
+
+        for (Map.Entry<Payable, Integer> entry : change.entrySet()) {
+            resultBatch.addChange(orderIndex, entry.getKey(), entry.getValue());
+        }
+
+        resultBatch.setDispensedItem(orderIndex, snackItem);
+        return PurchaseOutcome.DISPENSED;
+    }
+
+    /**
+     * Charges a card order exactly the item's price, the way a session paid
+     * by card is charged: the order waits for the processor's answer to a
+     * hold of the price, then the item is dispensed and the hold captured.
+     * No cash goes in, so no change comes out.
+     *
+     * @param pendingCardAuthorization the hold of the price, usually answered already.
+     */
+    private PurchaseOutcome processCardPurchaseOrder(
+            CompletableFuture<CardAuthorization> pendingCardAuthorization,
+            int slotId,
+            SnackItem snackItem,
+            long priceInCents,
+            PurchaseResultBatch resultBatch,
+            int orderIndex
+    ) {
+        CardAuthorization cardAuthorization = pendingCardAuthorization.join();
+
+        if (! cardAuthorization.isApproved()) {
+            resultBatch.setRefunded(orderIndex);
+            return PurchaseOutcome.CARD_DECLINED;
+        }
+
+        if (! this.snackSlotGrid.tryDispenseItem(slotId)) {
+            // Another customer took the last item since it was checked.
+            this.cardPaymentProcessor.release(cardAuthorization);
+            resultBatch.setRefunded(orderIndex);
+            return PurchaseOutcome.SOLD_OUT;
+        } else if (! this.captureCardPayment(cardAuthorization, priceInCents)) {
+            this.snackSlotGrid.returnItem(slotId);
+            resultBatch.setRefunded(orderIndex);
+            return PurchaseOutcome.CARD_DECLINED;
+        }
+
+        this.salesTotalInCents.addAndGet(priceInCents);
+        this.journal.recordItemDispensed(slotId, priceInCents);
+
+        resultBatch.setDispensedItem(orderIndex, snackItem);
+        return PurchaseOutcome.DISPENSED;
+    }
+
+    /**
+     * Hands the order's money back as it was inserted, for orders that failed
+     * before it was taken. Cards are simply not charged, their hold is
+     * released if one was asked for.
+     */
+    private void giveBackInsertedMoney(
+            PurchaseOrder purchaseOrder,
+            CompletableFuture<CardAuthorization> cardAuthorization,
+            PurchaseResultBatch resultBatch,
+            int orderIndex
+    ) {
+        if (cardAuthorization != null) {
+            this.releaseOnceApproved(cardAuthorization);
+        }
+
+        for (Payable payable : purchaseOrder.getInsertedMoney()) {
+            if (DenominationRegistry.isDenomination(payable)) {
+                resultBatch.addChange(orderIndex, payable, 1);
+            }
+        }
+
+        resultBatch.setRefunded(orderIndex);
+    }
+
+    /**
+     * Refunds a cash order whose money was already taken, the way refund
+     * does for a session: it is paid back as change computed from the
+     * inventory, which holds at least the inserted coins and notes.
+     */
+    private void refundPurchaseOrder(long paidInCents, PurchaseResultBatch resultBatch, int orderIndex) {
+        Map<Payable, Integer> refundAmount = this.changeInventory.reserveChange(paidInCents).commit();
+        this.recordChangeIssued(refundAmount);
+
+        for (Map.Entry<Payable, Integer> entry : refundAmount.entrySet()) {
+            resultBatch.addChange(orderIndex, entry.getKey(), entry.getValue());
+        }
+
+        this.journal.recordRefundIssued(paidInCents);
+        resultBatch.setRefunded(orderIndex);
+    }
+
+    private static boolean isAcceptedPayment(PaymentType paymentType, Payable payable) {
+        if (paymentType == PaymentType.CARD) {
+            return payable instanceof Card;
+        }
+
+        int denominationIndex = DenominationRegistry.indexOf(payable);
+        return denominationIndex >= 0 && IS_ACCEPTED_DENOMINATION[denominationIndex];
+    }
+
+    /**
+     * @return count of bytes snapshot puts for this machine.
+     */
+    public int getSnapshotSize() {
+        return SNAPSHOT_HEADER_SIZE
+                + this.defaultSession.getEscrow().getSerializedSize()
+                + this.changeInventory.getSerializedSize()
+                + this.snackSlotGrid.getSerializedSize();
+    }
+
+    /**
+     * Puts the machine's full state into the buffer in the versioned binary
+     * snapshot format: magic, version, rows and columns counts, operating
+     * state, flags, sales total, the default session's balance, then the
+     * default session's escrow counts, the change inventory counts and the
+     * snack slots grid as flat arrays.
+     * Selections in progress are not part of a snapshot.
+     *
+     * @param buffer buffer with at least getSnapshotSize() bytes remaining.
+     */
+    public void snapshot(ByteBuffer buffer) {
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putInt(SNAPSHOT_VERSION);
+        buffer.putInt(this.rowsCount);
+        buffer.putInt(this.columnsCount);
+        buffer.putInt(this.currentlyOperatingState.get().ordinal());
+        buffer.putInt((this.isFunctional ? 1 : 0) | (this.isRedirectingSoldOutSelections ? 2 : 0));
+        buffer.putLong(this.salesTotalInCents.get());
+        buffer.putLong(this.defaultSession.getAccumulatedMoneyInCents());
+
+        this.defaultSession.getEscrow().writeCountsTo(buffer);
+        this.changeInventory.writeCountsTo(buffer);
+        this.snackSlotGrid.writeTo(buffer);
+    }
+
+    /**
+     * Replaces the machine's state with a snapshot read from the buffer's
+     * position, filling the grid's and the change inventory's arrays in bulk
+     * rather than slot by slot. The buffer is left positioned after the
+     * snapshot, so snapshots of many machines can be restored back to back.
+     * The whole snapshot is decoded and checked before any of it is applied,
+     * so a rejected snapshot leaves the machine as it was.
+     *
+     * @throws IllegalArgumentException if the buffer does not hold a valid snapshot of a machine of the same size.
+     */
+    public void restore(ByteBuffer buffer) {
+        if (buffer.remaining() < this.getSnapshotSize()) {
+            throw new IllegalArgumentException("Snapshot is cut short: " + buffer.remaining() + " bytes left");
+        } else if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Not a snack vending machine snapshot of version " + SNAPSHOT_VERSION);
+        }
+
+        int snapshotRowsCount = buffer.getInt();
+        int snapshotColumnsCount = buffer.getInt();
+
+        if (snapshotRowsCount != this.rowsCount || snapshotColumnsCount != this.columnsCount) {
+            throw new IllegalArgumentException("Snapshot is of a " + snapshotRowsCount + "x" + snapshotColumnsCount + " machine");
+        }
+
+        int snapshotStateOrdinal = buffer.getInt();
+
+        if (snapshotStateOrdinal < 0 || snapshotStateOrdinal >= MACHINE_STATES.length) {
+            throw new IllegalArgumentException("Unknown machine state ordinal in snapshot: " + snapshotStateOrdinal);
+        }
+
+        MachineState snapshotState = MACHINE_STATES[snapshotStateOrdinal];
+        int flags = buffer.getInt();
+        long snapshotSalesTotalInCents = buffer.getLong();
+        long snapshotAccumulatedMoneyInCents = buffer.getLong();
+        Escrow snapshotEscrow = new Escrow();
+        snapshotEscrow.readCountsFrom(buffer);
+
+        // Decoded into throwaway copies first, which reject anything invalid, then read again for real.
+        int countsPosition = buffer.position();
+        new ChangeInventory().readCountsFrom(buffer);
+        new SnackSlotGrid(this.snackSlotGrid.getSlotsCount()).readFrom(buffer);
+        buffer.position(countsPosition);
+
+        this.changeInventory.readCountsFrom(buffer);
+        this.snackSlotGrid.readFrom(buffer);
+
+        this.isFunctional = (flags & 1) != 0;
+        this.isRedirectingSoldOutSelections = (flags & 2) != 0;
+        this.currentlyOperatingState.set(snapshotState);
+        this.setSalesTotalInCents(snapshotSalesTotalInCents);
+        this.defaultSession.setSelectedSnackSlot(null);
+        this.defaultSession.setShouldStartProcessingRequest(false);
+        this.restoreEscrow(snapshotEscrow);
+        this.setAccumulatedMoneyInCents(snapshotAccumulatedMoneyInCents);
+    }
+
+    /**
+     * Replaces the default session's escrow with the snapshot's, journaled
+     * as the old payables given back and the snapshot's inserted, so that the
+     * journal's credit and escrow follow. The balance is set right after.
+     */
+    private void restoreEscrow(Escrow snapshotEscrow) {
+        Escrow escrow = this.defaultSession.getEscrow();
+
+        this.journal.recordCreditAdjusted(-escrow.getWorthInCents());
+        this.defaultSession.setAccumulatedMoneyInCents(this.defaultSession.getAccumulatedMoneyInCents() - escrow.getWorthInCents());
+        this.releaseEscrow(escrow);
+
+        for (int index = 0; index < DenominationRegistry.size(); index++) {
+            int count = snapshotEscrow.getCount(index);
+
+            if (count > 0) {
+                escrow.setCount(index, count);
+                this.journal.recordMoneyInserted(DenominationRegistry.getDenomination(index), count);
+            }
+        }
+
+        this.defaultSession.setAccumulatedMoneyInCents(this.defaultSession.getAccumulatedMoneyInCents() + escrow.getWorthInCents());
     }
 
     @Override
@@ -326,56 +1657,107 @@ public class SnackVendingMachine implements VendingMachine<SnackItem, SnackSlot>
         this.displayScreen.clear();
         this.changeInventory.clear();
 
-        this.currentlySelectedSnackSlot = null;
-        this.salesTotal = BigDecimal.valueOf(0);
-        this.accumulatedMoney = BigDecimal.valueOf(0);
+        this.journal.recordCreditAdjusted(-this.defaultSession.getAccumulatedMoneyInCents());
+        this.releaseEscrow(this.defaultSession.getEscrow());
+        this.releaseCardAuthorization(this.defaultSession);
+        this.defaultSession.reset();
+        this.setSalesTotalInCents(0);
     }
 
     public void clearAllSnackSlots() {
-        for (SnackSlot[] snackSlot : this.snackSlots) {
-            for (SnackSlot slot : snackSlot) {
-                slot.setItem(null);
-                slot.setQuantity(0);
+        this.snackSlotGrid.clear();
+    }
+
+    /**
+     * @return another of the machine's slots holding the sold-out slot's item,
+     * or null if there is none or redirecting sold-out selections is turned off.
+     */
+    private SnackSlot findAlternateSnackSlot(SnackSlot soldOutSnackSlot) {
+        SnackItem snackItem = soldOutSnackSlot.getItem();
+
+        if (! this.isRedirectingSoldOutSelections || snackItem == null || soldOutSnackSlot.getGrid() != this.snackSlotGrid) {
+            return null;
+        }
+
+        int alternateSlotId = this.snackSlotGrid.findSlotHolding(snackItem);
+        return alternateSlotId < 0 ? null : this.getSnackSlot(alternateSlotId);
+    }
+
+    /**
+     * Empties the escrow for its payables to leave the machine, e.g as a refund.
+     */
+    private void releaseEscrow(Escrow escrow) {
+        for (int index = 0; index < DenominationRegistry.size(); index++) {
+            int count = escrow.getCount(index);
+
+            if (count > 0) {
+                this.journal.recordEscrowReleased(DenominationRegistry.getDenomination(index), count);
             }
         }
+
+        escrow.clear();
     }
 
-    private boolean isSelectedItemFullyPaid() {
-        BigDecimal selectedItemPrice = this.currentlySelectedSnackSlot
-                .getItem()
-                .getPrice();
+    private void recordChangeIssued(Map<Payable, Integer> change) {
+        for (Map.Entry<Payable, Integer> entry : change.entrySet()) {
+            this.journal.recordChangeIssued(entry.getKey(), entry.getValue());
+        }
+    }
 
-        return this.accumulatedMoney.compareTo(selectedItemPrice) >= 0;
+    /**
+     * @return price of the session's selected item in the price table pinned
+     * when it was selected, or in the current one if none was pinned, e.g
+     * for a selection restored from the journal.
+     */
+    private long getSelectedItemPriceInCents(VendingSession session) {
+        PriceTable priceTable = session.getPriceTable();
+
+        if (priceTable == null) {
+            priceTable = this.priceBook.getCurrent();
+        }
+
+        return priceTable.getPriceInCents(session.getSelectedSnackSlot().getItem());
+    }
+
+    /**
+     * @param cardAuthorization the card's approved authorization, or null if paid in cash.
+     */
+    private static boolean isFullyPaid(VendingSession session, long priceInCents, CardAuthorization cardAuthorization) {
+        return cardAuthorization != null ?
+                cardAuthorization.covers(priceInCents) :
+                session.getAccumulatedMoneyInCents() >= priceInCents;
     }
 
     public void printCurrentlyOperatingState() {
-        System.out.println(this.currentlyOperatingState.getDescription());
+        this.eventBus.publish(MachineEvent.stateChanged(this.currentlyOperatingState.get()));
     }
 
     public void printCurrentlyAccumulatedMoney() {
-        System.out.println("Balance - " + this.getAccumulatedMoney().toString() + "$");
+        this.eventBus.publish(MachineEvent.displayUpdated(
+                "Balance - " + Money.format(this.defaultSession.getAccumulatedMoneyInCents()) + "$"
+        ));
     }
 
-    private void printCurrentlySelectedSnackItemInformation() {
-        SnackItem selectedSnackItem = this.currentlySelectedSnackSlot.getItem();
-        System.out.println("- " + selectedSnackItem.getName());
-        System.out.println("$ " + selectedSnackItem.getPrice());
+    private void printSelectedSnackItemInformation(VendingSession session) {
+        SnackItem selectedSnackItem = session.getSelectedSnackSlot().getItem();
+        this.eventBus.publish(MachineEvent.itemSelected(selectedSnackItem, this.getSelectedItemPriceInCents(session)));
     }
 
     private void printCalculatedCustomerChange(Map<Payable, Integer> change) {
         if (change.isEmpty()) {
-            System.out.println("No Change! Thanks for Buying from Us.");
+            this.eventBus.publish(MachineEvent.changeIssued(null, 0));
             return;
         }
 
-        for (Payable payable: change.keySet()) {
-            System.out.println(payable.getWorth() + " X " + change.get(payable));
+        for (Map.Entry<Payable, Integer> entry : change.entrySet()) {
+            this.eventBus.publish(MachineEvent.changeIssued(entry.getKey(), entry.getValue()));
         }
     }
 
     public void printMachineStats() {
-        System.out.println("<<Accumulated Money>> $" + this.accumulatedMoney.toString());
-        System.out.println("<<Sales Total>> $" + this.salesTotal.toString());
+        this.eventBus.flush();
+        System.out.println("<<Accumulated Money>> $" + Money.format(this.defaultSession.getAccumulatedMoneyInCents()));
+        System.out.println("<<Sales Total>> $" + Money.format(this.salesTotalInCents.get()));
         System.out.println("<<Change Inventory>>");
 
         for (Payable payable: this.changeInventory.getInventory().keySet()) {
@@ -384,11 +1766,12 @@ public class SnackVendingMachine implements VendingMachine<SnackItem, SnackSlot>
     }
 
     private void initializeSnackSlots() {
+        this.snackSlotGrid = new SnackSlotGrid(this.rowsCount * this.columnsCount);
         this.snackSlots = new SnackSlot[this.rowsCount][this.columnsCount];
 
         for (int rowIndex = 0; rowIndex < this.rowsCount; rowIndex++) {
             for (int colIndex = 0; colIndex < this.columnsCount; colIndex++) {
-                this.snackSlots[rowIndex][colIndex] = new SnackSlot();
+                this.snackSlots[rowIndex][colIndex] = new SnackSlot(this.snackSlotGrid, rowIndex * this.columnsCount + colIndex);
             }
         }
     }
@@ -0,0 +1,136 @@
+package core;
+
+import enumerations.MachineState;
+import interfaces.StateTransitionHook;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Allowed MachineState transitions of a machine, plus the hooks run when a
+ * state is left or entered. Edges are kept as one bitmask of target states
+ * per source state, so checking a transition is a single array read.
+ *
+ * The default edges follow a purchase: idle, processing the selection,
+ * dispensing, then idle again, with a refund possible before or instead of
+ * the dispense, and out of service reachable from any state but the
+ * dispense, which is never cut short. There are no self-loops: the state is
+ * shared by all of a machine's sessions (e.g both doors of a multi-door
+ * unit), and a session that finds the machine already in the state it needs
+ * checks for it rather than transitioning.
+ */
+public class StateTransitionTable {
+    private static final MachineState[] STATES = MachineState.values();
+    private static final StateTransitionHook[] NO_HOOKS = new StateTransitionHook[0];
+
+    private final AtomicIntegerArray allowedTargetsMasks;
+    private final AtomicReferenceArray<StateTransitionHook[]> exitHooks;
+    private final AtomicReferenceArray<StateTransitionHook[]> entryHooks;
+
+    /**
+     * Creates a table with no allowed transitions and no hooks.
+     */
+    public StateTransitionTable() {
+        this.allowedTargetsMasks = new AtomicIntegerArray(STATES.length);
+        this.exitHooks = new AtomicReferenceArray<>(STATES.length);
+        this.entryHooks = new AtomicReferenceArray<>(STATES.length);
+
+        for (int index = 0; index < STATES.length; index++) {
+            this.exitHooks.set(index, NO_HOOKS);
+            this.entryHooks.set(index, NO_HOOKS);
+        }
+    }
+
+    /**
+     * @return the table every machine starts with.
+     */
+    public static StateTransitionTable createDefault() {
+        return new StateTransitionTable()
+                .allow(
+                        MachineState.OUT_OF_SERVICE,
+                        MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY
+                )
+                .allow(
+                        MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY,
+                        MachineState.PROCESSING_CUSTOMER_SELECTION,
+                        MachineState.REFUNDING_CUSTOMER_MONEY,
+                        MachineState.OUT_OF_SERVICE
+                )
+                .allow(
+                        MachineState.PROCESSING_CUSTOMER_SELECTION,
+                        MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY,
+                        MachineState.DISPENSING_SELECTED_ITEM_AND_CUSTOMER_CHANGE,
+                        MachineState.REFUNDING_CUSTOMER_MONEY,
+                        MachineState.OUT_OF_SERVICE
+                )
+                .allow(
+                        MachineState.DISPENSING_SELECTED_ITEM_AND_CUSTOMER_CHANGE,
+                        MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY,
+                        MachineState.REFUNDING_CUSTOMER_MONEY
+                )
+                .allow(
+                        MachineState.REFUNDING_CUSTOMER_MONEY,
+                        MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY,
+                        MachineState.OUT_OF_SERVICE
+                );
+    }
+
+    public boolean isAllowed(MachineState fromState, MachineState toState) {
+        return (this.allowedTargetsMasks.get(fromState.ordinal()) & (1 << toState.ordinal())) != 0;
+    }
+
+    public StateTransitionTable allow(MachineState fromState, MachineState... toStates) {
+        int targetsMask = 0;
+
+        for (MachineState toState : toStates) {
+            targetsMask |= 1 << toState.ordinal();
+        }
+
+        final int addedTargetsMask = targetsMask;
+        this.allowedTargetsMasks.getAndUpdate(fromState.ordinal(), mask -> mask | addedTargetsMask);
+        return this;
+    }
+
+    public StateTransitionTable forbid(MachineState fromState, MachineState toState) {
+        this.allowedTargetsMasks.getAndUpdate(fromState.ordinal(), mask -> mask & ~(1 << toState.ordinal()));
+        return this;
+    }
+
+    /**
+     * @param hook called whenever the machine leaves the state, before the entry hooks of the next one.
+     */
+    public StateTransitionTable onExit(MachineState state, StateTransitionHook hook) {
+        addHook(this.exitHooks, state, hook);
+        return this;
+    }
+
+    /**
+     * @param hook called whenever the machine enters the state, after the exit hooks of the previous one.
+     */
+    public StateTransitionTable onEntry(MachineState state, StateTransitionHook hook) {
+        addHook(this.entryHooks, state, hook);
+        return this;
+    }
+
+    void runHooks(MachineState fromState, MachineState toState) {
+        for (StateTransitionHook hook : this.exitHooks.get(fromState.ordinal())) {
+            hook.onTransition(fromState, toState);
+        }
+
+        for (StateTransitionHook hook : this.entryHooks.get(toState.ordinal())) {
+            hook.onTransition(fromState, toState);
+        }
+    }
+
+    /**
+     * Hooks are kept in copy-on-write arrays, transitions read them without locking.
+     */
+    private static void addHook(AtomicReferenceArray<StateTransitionHook[]> hooks, MachineState state, StateTransitionHook hook) {
+        hooks.getAndUpdate(state.ordinal(), stateHooks -> {
+            StateTransitionHook[] updatedHooks = Arrays.copyOf(stateHooks, stateHooks.length + 1);
+            updatedHooks[stateHooks.length] = hook;
+            return updatedHooks;
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package core;
+
+import components.Escrow;
+import components.PriceTable;
+import components.SnackSlot;
+import payment.CardAuthorization;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * State of a single customer interaction with a SnackVendingMachine: the money
+ * inserted so far, the coins and notes of it held in escrow, the
+ * authorization of the inserted card if any, the selected snack slot, the
+ * price table pinned when it was selected and whether the selection was
+ * confirmed. The snack slots and the change inventory stay on the machine and
+ * are shared by all of its sessions; a session itself is meant to be driven by
+ * one customer (thread) at a time.
+ */
+public class VendingSession {
+    private final Escrow escrow;
+    private long accumulatedMoneyInCents;
+    private CompletableFuture<CardAuthorization> cardAuthorization;
+    private SnackSlot selectedSnackSlot;
+    private PriceTable priceTable;
+    private boolean shouldStartProcessingRequest;
+
+    public VendingSession() {
+        this.escrow = new Escrow();
+        this.reset();
+    }
+
+    public long getAccumulatedMoneyInCents() {
+        return accumulatedMoneyInCents;
+    }
+
+    public void setAccumulatedMoneyInCents(long accumulatedMoneyInCents) {
+        this.accumulatedMoneyInCents = accumulatedMoneyInCents;
+    }
+
+    /**
+     * @return the coins and notes inserted in this session, until the sale commits or they are refunded.
+     */
+    public Escrow getEscrow() {
+        return escrow;
+    }
+
+    /**
+     * @return the authorization started when the card was inserted, possibly
+     * still in flight, or null if no card was inserted.
+     */
+    public CompletableFuture<CardAuthorization> getCardAuthorization() {
+        return cardAuthorization;
+    }
+
+    public void setCardAuthorization(CompletableFuture<CardAuthorization> cardAuthorization) {
+        this.cardAuthorization = cardAuthorization;
+    }
+
+    public SnackSlot getSelectedSnackSlot() {
+        return selectedSnackSlot;
+    }
+
+    public void setSelectedSnackSlot(SnackSlot selectedSnackSlot) {
+        this.selectedSnackSlot = selectedSnackSlot;
+    }
+
+    /**
+     * @return the machine's price table as of the item's selection, the
+     * purchase is charged at its prices, or null if none was pinned.
+     */
+    public PriceTable getPriceTable() {
+        return priceTable;
+    }
+
+    public void setPriceTable(PriceTable priceTable) {
+        this.priceTable = priceTable;
+    }
+
+    public boolean isShouldStartProcessingRequest() {
+        return shouldStartProcessingRequest;
+    }
+
+    public void setShouldStartProcessingRequest(boolean shouldStartProcessingRequest) {
+        this.shouldStartProcessingRequest = shouldStartProcessingRequest;
+    }
+
+    /**
+     * Clears the selection and the inserted money once the customer
+     * was served or refunded.
+     */
+    public void reset() {
+        this.accumulatedMoneyInCents = 0;
+        this.escrow.clear();
+        this.cardAuthorization = null;
+        this.selectedSnackSlot = null;
+        this.priceTable = null;
+        this.shouldStartProcessingRequest = false;
+    }
+}
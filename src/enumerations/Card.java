@@ -1,8 +1,7 @@
 package enumerations;
 
 import interfaces.Payable;
-
-import java.math.BigDecimal;
+import utils.Money;
 
 public class Card implements Payable {
     private String number;
@@ -40,8 +39,8 @@ public class Card implements Payable {
     }
 
     @Override
-    public BigDecimal getWorth() {
-        return BigDecimal.valueOf(balance);
+    public long getWorthInCents() {
+        return Money.toCents(balance);
     }
 
     @Override
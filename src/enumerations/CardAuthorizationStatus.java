@@ -0,0 +1,13 @@
+package enumerations;
+
+/**
+ * How the authorization of a card payment ended.
+ */
+public enum CardAuthorizationStatus {
+    APPROVED,
+    DECLINED,
+    /**
+     * The processor did not answer in time, any late approval is released.
+     */
+    TIMED_OUT
+}
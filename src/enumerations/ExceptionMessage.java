@@ -5,7 +5,9 @@ public enum ExceptionMessage {
     EMPTY_SNACK_SLOT("SNACK SLOT IS OUT OF ITEMS!"),
     ITEM_NOT_FULLY_PAID("SELECTED ITEM IS NOT FULLY PAID!"),
     CUSTOMER_REQUEST_NOT_CONFIRMED("REQUEST NOT CONFIRMED!"),
-    INSUFFICIENT_CHANGE_IN_INVENTORY("INSUFFICIENT CHANGE IN INVENTORY");
+    INSUFFICIENT_CHANGE_IN_INVENTORY("INSUFFICIENT CHANGE IN INVENTORY"),
+    INVALID_SLOT_CODE("INVALID SLOT CODE!"),
+    ILLEGAL_STATE_TRANSITION("NOT ALLOWED IN THE MACHINE'S CURRENT STATE!");
 
     private final String message;
 
@@ -0,0 +1,47 @@
+package enumerations;
+
+/**
+ * Kinds of records of a machine's transaction journal. The code is what gets
+ * written to the journal file, so existing codes must never be changed.
+ */
+public enum JournalRecordType {
+    MONEY_INSERTED(1),
+    ITEM_SELECTED(2),
+    ITEM_DISPENSED(3),
+    CHANGE_ISSUED(4),
+    REFUND_ISSUED(5),
+    CREDIT_ADJUSTED(6),
+    SALES_TOTAL_SET(7),
+    SLOT_UPDATED(8),
+    CHANGE_COUNT_ADJUSTED(9),
+    CHECKPOINT_BEGIN(10),
+    CHECKPOINT_CHANGE_COUNT(11),
+    CHECKPOINT_END(12),
+    ESCROW_RELEASED(13),
+    CHECKPOINT_ESCROW_COUNT(14);
+
+    private static final JournalRecordType[] TYPES_BY_CODE = new JournalRecordType[15];
+
+    static {
+        for (JournalRecordType type : values()) {
+            TYPES_BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
+
+    JournalRecordType(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * @return the type written as the code, or null if no type has that code.
+     */
+    public static JournalRecordType fromCode(int code) {
+        return code < 0 || code >= TYPES_BY_CODE.length ? null : TYPES_BY_CODE[code];
+    }
+}
@@ -0,0 +1,25 @@
+package enumerations;
+
+/**
+ * When the records appended to a memory-mapped journal are forced to disk.
+ */
+public enum JournalSyncPolicy {
+    /**
+     * Never forced by the journal except on checkpoints and close, the OS
+     * writes the dirty pages back whenever it sees fit. Survives a crash of
+     * the process but not of the host.
+     */
+    OS_MANAGED,
+
+    /**
+     * Forced by a background thread at a fixed interval whenever records were
+     * appended since the last force, so one disk sync covers every record of
+     * the interval and appends never wait for the disk.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Forced after every record, by the appending thread.
+     */
+    EVERY_RECORD
+}
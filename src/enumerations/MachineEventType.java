@@ -0,0 +1,10 @@
+package enumerations;
+
+public enum MachineEventType {
+    STATE_CHANGED,
+    MONEY_INSERTED,
+    ITEM_SELECTED,
+    ITEM_DISPENSED,
+    CHANGE_ISSUED,
+    DISPLAY_UPDATED
+}
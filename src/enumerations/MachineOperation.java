@@ -0,0 +1,17 @@
+package enumerations;
+
+/**
+ * Operations whose latency is tracked by a machine's metrics.
+ */
+public enum MachineOperation {
+    INSERT_MONEY,
+    PROCESS_REQUEST,
+    DISPENSE,
+    REFUND,
+    GET_CHANGE,
+    PURCHASE_BATCH,
+    /**
+     * From inserting a card to the processor's answer, timed off the machine's threads.
+     */
+    CARD_AUTHORIZATION
+}
@@ -2,22 +2,20 @@ package enumerations;
 
 import interfaces.Payable;
 
-import java.math.BigDecimal;
-
 public enum Note implements Payable {
-    TWO_DOLLARS_BILL("TWO_DOLLARS", BigDecimal.valueOf(2)),
-    FIVE_DOLLARS_BILL("FIVE_DOLLARS", BigDecimal.valueOf(5)),
-    TEN_DOLLARS_BILL("TEN_DOLLARS", BigDecimal.valueOf(10)),
-    TWENTY_DOLLARS_BILL("TWENTY_DOLLARS", BigDecimal.valueOf(20)),
-    FIFTY_DOLLARS_BILL("FIFTY_DOLLARS", BigDecimal.valueOf(50)),
-    HUNDRED_DOLLARS_BILL("HUNDRED_DOLLARS", BigDecimal.valueOf(100));
+    TWO_DOLLARS_BILL("TWO_DOLLARS", 200),
+    FIVE_DOLLARS_BILL("FIVE_DOLLARS", 500),
+    TEN_DOLLARS_BILL("TEN_DOLLARS", 1000),
+    TWENTY_DOLLARS_BILL("TWENTY_DOLLARS", 2000),
+    FIFTY_DOLLARS_BILL("FIFTY_DOLLARS", 5000),
+    HUNDRED_DOLLARS_BILL("HUNDRED_DOLLARS", 10000);
 
     private String name;
-    private BigDecimal worth;
+    private final long worthInCents;
 
-    Note(String name, BigDecimal worth) {
+    Note(String name, long worthInCents) {
         this.name = name;
-        this.worth = worth;
+        this.worthInCents = worthInCents;
     }
 
     public String getName() {
@@ -28,19 +26,16 @@ public enum Note implements Payable {
         this.name = name;
     }
 
-    public BigDecimal getWorth() {
-        return worth;
-    }
-
-    public void setWorth(BigDecimal worth) {
-        this.worth = worth;
+    @Override
+    public long getWorthInCents() {
+        return worthInCents;
     }
 
     @Override
     public String toString() {
         return "enumerations.Note{" +
                 "name='" + name + '\'' +
-                ", worth=" + worth +
+                ", worth=" + getWorth() +
                 '}';
     }
 }
@@ -0,0 +1,33 @@
+package enumerations;
+
+/**
+ * Result of one of the machine's non-throwing operations (tryInsertMoney,
+ * tryProcessRequest, tryDispenseSelectedItemAndCustomerChange). Results are
+ * constants, so a rejected coin or a sold out selection is reported without
+ * building an exception or a message.
+ */
+public enum OperationResult {
+    OK("OK"),
+    INVALID_ENTRY("PAYABLE INSERTED IN THE WRONG SLOT!"),
+    UNSUPPORTED_PAYABLE_TYPE("PAYABLE IS NOT SUPPORTED!"),
+    REQUEST_NOT_CONFIRMED(ExceptionMessage.CUSTOMER_REQUEST_NOT_CONFIRMED.getMessage()),
+    SOLD_OUT(ExceptionMessage.EMPTY_SNACK_SLOT.getMessage()),
+    NOT_FULLY_PAID(ExceptionMessage.ITEM_NOT_FULLY_PAID.getMessage()),
+    INSUFFICIENT_CHANGE(ExceptionMessage.INSUFFICIENT_CHANGE_IN_INVENTORY.getMessage()),
+    CARD_DECLINED("CARD PAYMENT WAS NOT AUTHORIZED!"),
+    ILLEGAL_STATE_TRANSITION(ExceptionMessage.ILLEGAL_STATE_TRANSITION.getMessage());
+
+    private final String description;
+
+    OperationResult(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isSuccessful() {
+        return this == OK;
+    }
+}
@@ -0,0 +1,6 @@
+package enumerations;
+
+public enum PaymentType {
+    CASH,
+    CARD
+}
@@ -0,0 +1,26 @@
+package enumerations;
+
+/**
+ * How a purchase ended. Every outcome but DISPENSED leaves the machine's
+ * stock untouched and gives the customer's money back.
+ */
+public enum PurchaseOutcome {
+    DISPENSED("ITEM DISPENSED"),
+    OUT_OF_SERVICE("MACHINE IS NOT FUNCTIONAL!"),
+    UNSUPPORTED_PAYMENT("PAYMENT IS NOT ACCEPTED!"),
+    INVALID_SLOT(ExceptionMessage.INVALID_SLOT_CODE.getMessage()),
+    SOLD_OUT(ExceptionMessage.EMPTY_SNACK_SLOT.getMessage()),
+    NOT_FULLY_PAID(ExceptionMessage.ITEM_NOT_FULLY_PAID.getMessage()),
+    INSUFFICIENT_CHANGE(ExceptionMessage.INSUFFICIENT_CHANGE_IN_INVENTORY.getMessage()),
+    CARD_DECLINED("CARD PAYMENT WAS NOT AUTHORIZED!");
+
+    private final String description;
+
+    PurchaseOutcome(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -1,20 +1,22 @@
 package enumerations;
 
+import utils.Money;
+
 import java.math.BigDecimal;
 
 public enum SnackItem {
-    BAGEL("BAGEL", BigDecimal.valueOf(1.5)),
-    DONUT("DONUT", BigDecimal.valueOf(2.5)),
-    OATS_BAR("OATS_BAR", BigDecimal.valueOf(2.0)),
-    PEANUTS("PEANUTS", BigDecimal.valueOf(3)),
-    TURKEY_SANDWICH("TURKEY_SANDWICH" , BigDecimal.valueOf(3.5));
+    BAGEL("BAGEL", 150),
+    DONUT("DONUT", 250),
+    OATS_BAR("OATS_BAR", 200),
+    PEANUTS("PEANUTS", 300),
+    TURKEY_SANDWICH("TURKEY_SANDWICH" , 350);
 
     private String name;
-    private BigDecimal price;
+    private long priceInCents;
 
-    SnackItem(String name, BigDecimal price) {
+    SnackItem(String name, long priceInCents) {
         this.name = name;
-        this.price = price;
+        this.priceInCents = priceInCents;
     }
 
     public String getName() {
@@ -25,19 +27,35 @@ public enum SnackItem {
         this.name = name;
     }
 
+    /**
+     * @return the item's list price, the one new price tables start from.
+     * Machines charge the prices of their PriceBook's current table.
+     */
     public BigDecimal getPrice() {
-        return price;
+        return Money.toBigDecimal(priceInCents);
     }
 
+    /**
+     * Changes the list price for price tables built afterwards only, to
+     * reprice machines publish a new table in their PriceBook instead.
+     */
     public void setPrice(BigDecimal price) {
-        this.price = price;
+        this.priceInCents = Money.toCents(price);
+    }
+
+    public long getPriceInCents() {
+        return priceInCents;
+    }
+
+    public void setPriceInCents(long priceInCents) {
+        this.priceInCents = priceInCents;
     }
 
     @Override
     public String toString() {
         return "enumerations.SnackItem{" +
                 "name='" + name + '\'' +
-                ", price=" + price +
+                ", price=" + getPrice() +
                 '}';
     }
 }
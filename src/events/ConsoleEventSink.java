@@ -0,0 +1,31 @@
+package events;
+
+import interfaces.MachineEventSink;
+
+import java.io.PrintStream;
+
+/**
+ * Prints each event's description to the console, as the machine used to do
+ * synchronously on every transition.
+ */
+public class ConsoleEventSink implements MachineEventSink {
+    private final PrintStream printStream;
+
+    public ConsoleEventSink() {
+        this(System.out);
+    }
+
+    public ConsoleEventSink(PrintStream printStream) {
+        this.printStream = printStream;
+    }
+
+    @Override
+    public void accept(MachineEvent event) {
+        this.printStream.println(event.describe());
+    }
+
+    @Override
+    public void flush() {
+        this.printStream.flush();
+    }
+}
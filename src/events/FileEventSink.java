@@ -0,0 +1,55 @@
+package events;
+
+import interfaces.MachineEventSink;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends one line per event to a file: the event's timestamp, type and description.
+ */
+public class FileEventSink implements MachineEventSink {
+    private final BufferedWriter writer;
+
+    public FileEventSink(Path path) throws IOException {
+        this.writer = Files.newBufferedWriter(
+                path,
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND
+        );
+    }
+
+    @Override
+    public void accept(MachineEvent event) {
+        try {
+            this.writer.write(event.getTimestampNanos() + " " + event.getType() + " " + event.describe());
+            this.writer.newLine();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            this.writer.flush();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.writer.close();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+}
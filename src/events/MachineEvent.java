@@ -0,0 +1,122 @@
+package events;
+
+import enumerations.MachineEventType;
+import enumerations.MachineState;
+import enumerations.SnackItem;
+import interfaces.Payable;
+import utils.Money;
+
+/**
+ * Immutable record of something that happened on a machine. Each type only
+ * fills the fields relevant to it, describe() renders the line the machine
+ * used to print for it.
+ */
+public class MachineEvent {
+    private final MachineEventType type;
+    private final long timestampNanos;
+    private final MachineState state;
+    private final SnackItem item;
+    private final Payable payable;
+    private final int count;
+    private final long amountInCents;
+    private final String text;
+
+    private MachineEvent(MachineEventType type, MachineState state, SnackItem item, Payable payable, int count, long amountInCents, String text) {
+        this.type = type;
+        this.timestampNanos = System.nanoTime();
+        this.state = state;
+        this.item = item;
+        this.payable = payable;
+        this.count = count;
+        this.amountInCents = amountInCents;
+        this.text = text;
+    }
+
+    public static MachineEvent stateChanged(MachineState state) {
+        return new MachineEvent(MachineEventType.STATE_CHANGED, state, null, null, 0, 0, null);
+    }
+
+    public static MachineEvent moneyInserted(Payable payable, long balanceInCents) {
+        return moneyInserted(payable, 1, balanceInCents);
+    }
+
+    public static MachineEvent moneyInserted(Payable payable, int count, long balanceInCents) {
+        return new MachineEvent(MachineEventType.MONEY_INSERTED, null, null, payable, count, balanceInCents, null);
+    }
+
+    public static MachineEvent itemSelected(SnackItem item, long priceInCents) {
+        return new MachineEvent(MachineEventType.ITEM_SELECTED, null, item, null, 0, priceInCents, null);
+    }
+
+    public static MachineEvent itemDispensed(SnackItem item, long priceInCents) {
+        return new MachineEvent(MachineEventType.ITEM_DISPENSED, null, item, null, 1, priceInCents, null);
+    }
+
+    /**
+     * @param payable the denomination handed out, null when no change was due.
+     */
+    public static MachineEvent changeIssued(Payable payable, int count) {
+        return new MachineEvent(MachineEventType.CHANGE_ISSUED, null, null, payable, count, 0, null);
+    }
+
+    public static MachineEvent displayUpdated(String text) {
+        return new MachineEvent(MachineEventType.DISPLAY_UPDATED, null, null, null, 0, 0, text);
+    }
+
+    public MachineEventType getType() {
+        return type;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public MachineState getState() {
+        return state;
+    }
+
+    public SnackItem getItem() {
+        return item;
+    }
+
+    public Payable getPayable() {
+        return payable;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getAmountInCents() {
+        return amountInCents;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String describe() {
+        switch (type) {
+            case STATE_CHANGED:
+                return state.getDescription();
+            case MONEY_INSERTED:
+                return "Balance - " + Money.format(amountInCents) + "$";
+            case ITEM_SELECTED:
+                return "- " + item.getName() + System.lineSeparator() + "$ " + Money.format(amountInCents);
+            case ITEM_DISPENSED:
+                return "Dispensed " + item.getName();
+            case CHANGE_ISSUED:
+                return payable == null ? "No Change! Thanks for Buying from Us." : payable.getWorth() + " X " + count;
+            default:
+                return text;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "events.MachineEvent{" +
+                "type=" + type +
+                ", description='" + describe() + '\'' +
+                '}';
+    }
+}
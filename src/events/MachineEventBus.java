@@ -0,0 +1,163 @@
+package events;
+
+import interfaces.MachineEventSink;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands machine events over to a sink without ever blocking the publisher:
+ * events go into a bounded lock-free ring buffer drained by a background
+ * daemon thread, and are dropped (and counted) if the buffer is full.
+ */
+public class MachineEventBus implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final MachineEventRingBuffer ringBuffer;
+    private final MachineEventSink sink;
+    private final Thread consumerThread;
+    private final LongAdder publishedCount;
+    private final LongAdder droppedCount;
+    private final LongAdder failedCount;
+    private volatile long consumedCount;
+    private volatile boolean isConsumerParked;
+    private volatile boolean isClosed;
+
+    public MachineEventBus(MachineEventSink sink) {
+        this(sink, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param sink destination of the events, called from the bus' own thread only.
+     * @param capacity count of events the bus can hold before dropping, a power of two.
+     */
+    public MachineEventBus(MachineEventSink sink, int capacity) {
+        this.ringBuffer = new MachineEventRingBuffer(capacity);
+        this.sink = sink;
+        this.publishedCount = new LongAdder();
+        this.droppedCount = new LongAdder();
+        this.failedCount = new LongAdder();
+
+        this.consumerThread = new Thread(this::consume, "machine-event-bus");
+        this.consumerThread.setDaemon(true);
+        this.consumerThread.start();
+    }
+
+    /**
+     * @return JVM-wide bus printing to the console, used by machines that were not given one.
+     */
+    public static MachineEventBus getDefault() {
+        return DefaultBusHolder.DEFAULT_BUS;
+    }
+
+    /**
+     * @return false if the event was dropped because the bus is full or closed.
+     */
+    public boolean publish(MachineEvent event) {
+        if (this.isClosed || ! this.ringBuffer.offer(event)) {
+            this.droppedCount.increment();
+            return false;
+        }
+
+        this.publishedCount.increment();
+
+        if (this.isConsumerParked) {
+            LockSupport.unpark(this.consumerThread);
+        }
+
+        return true;
+    }
+
+    /**
+     * Waits until every event published so far was handed to the sink and the sink was flushed.
+     */
+    public void flush() {
+        long targetCount = this.publishedCount.sum();
+
+        while (this.consumedCount < targetCount && this.consumerThread.isAlive()) {
+            LockSupport.unpark(this.consumerThread);
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    public long getConsumedCount() {
+        return consumedCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return count of events the sink threw on.
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public int getCapacity() {
+        return ringBuffer.getCapacity();
+    }
+
+    /**
+     * Stops accepting events, drains the ones already published and closes the sink.
+     */
+    @Override
+    public void close() {
+        this.isClosed = true;
+        LockSupport.unpark(this.consumerThread);
+
+        try {
+            this.consumerThread.join();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.sink.close();
+    }
+
+    private void consume() {
+        while (true) {
+            MachineEvent event = this.ringBuffer.poll();
+
+            if (event != null) {
+                try {
+                    this.sink.accept(event);
+                } catch (RuntimeException sinkException) {
+                    this.failedCount.increment();
+                }
+
+                this.consumedCount++;
+                continue;
+            }
+
+            try {
+                this.sink.flush();
+            } catch (RuntimeException sinkException) {
+                this.failedCount.increment();
+            }
+
+            if (this.isClosed) {
+                return;
+            }
+
+            this.isConsumerParked = true;
+
+            if (this.ringBuffer.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+
+            this.isConsumerParked = false;
+        }
+    }
+
+    private static final class DefaultBusHolder {
+        private static final MachineEventBus DEFAULT_BUS = new MachineEventBus(new ConsoleEventSink());
+    }
+}
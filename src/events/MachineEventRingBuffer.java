@@ -0,0 +1,85 @@
+package events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer with many producers and a single consumer.
+ * Every cell carries a sequence number telling whether it is free for the
+ * producer claiming that position or filled for the consumer, so producers
+ * only contend on a compare-and-set of the claim counter and never block:
+ * offer fails straight away when the buffer is full.
+ */
+class MachineEventRingBuffer {
+    private final int mask;
+    private final AtomicReferenceArray<MachineEvent> events;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerPosition;
+    private long consumerPosition;
+
+    MachineEventRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two: " + capacity);
+        }
+
+        this.mask = capacity - 1;
+        this.events = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.producerPosition = new AtomicLong();
+
+        for (int index = 0; index < capacity; index++) {
+            this.sequences.set(index, index);
+        }
+    }
+
+    int getCapacity() {
+        return mask + 1;
+    }
+
+    boolean offer(MachineEvent event) {
+        while (true) {
+            long position = this.producerPosition.get();
+            int index = (int) (position & this.mask);
+            long difference = this.sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (this.producerPosition.compareAndSet(position, position + 1)) {
+                    this.events.lazySet(index, event);
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Must only be called from the consumer thread.
+     */
+    boolean isEmpty() {
+        return this.sequences.get((int) (this.consumerPosition & this.mask)) != this.consumerPosition + 1;
+    }
+
+    /**
+     * Must only be called from the consumer thread.
+     *
+     * @return the oldest event, or null if there is none ready.
+     */
+    MachineEvent poll() {
+        long position = this.consumerPosition;
+        int index = (int) (position & this.mask);
+
+        if (this.sequences.get(index) != position + 1) {
+            return null;
+        }
+
+        MachineEvent event = this.events.get(index);
+        this.events.lazySet(index, null);
+        this.consumerPosition = position + 1;
+        this.sequences.set(index, position + this.mask + 1);
+
+        return event;
+    }
+}
@@ -0,0 +1,13 @@
+package events;
+
+import interfaces.MachineEventSink;
+
+/**
+ * Discards every event, for simulations and benchmarks that do not need any output.
+ */
+public class NoOpEventSink implements MachineEventSink {
+    public static final NoOpEventSink INSTANCE = new NoOpEventSink();
+
+    @Override
+    public void accept(MachineEvent event) { }
+}
@@ -4,6 +4,7 @@ public class CustomerRequestNotConfirmedException extends RuntimeException {
     private String message;
 
     public CustomerRequestNotConfirmedException (String message) {
+        super(message, null, false, false);
         this.message = message;
     }
 
@@ -4,6 +4,7 @@ public class EmptySnackSlotException extends RuntimeException {
     private String message;
 
     public EmptySnackSlotException(String message) {
+        super(message, null, false, false);
         this.message = message;
     }
 
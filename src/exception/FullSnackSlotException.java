@@ -4,6 +4,7 @@ public class FullSnackSlotException extends RuntimeException {
     private String message;
 
     public FullSnackSlotException(String message) {
+        super(message, null, false, false);
         this.message = message;
     }
 
@@ -0,0 +1,15 @@
+package exception;
+
+public class IllegalStateTransitionException extends RuntimeException {
+    private String message;
+
+    public IllegalStateTransitionException(String message) {
+        super(message, null, false, false);
+        this.message = message;
+    }
+
+    @Override
+    public String getMessage() {
+        return this.message;
+    }
+}
@@ -4,6 +4,7 @@ public class InsufficientChangeException extends RuntimeException {
     private String message;
 
     public InsufficientChangeException (String message) {
+        super(message, null, false, false);
         this.message = message;
     }
 
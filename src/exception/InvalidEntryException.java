@@ -4,6 +4,7 @@ public class InvalidEntryException extends RuntimeException {
     private String message;
 
     public InvalidEntryException(String message) {
+        super(message, null, false, false);
         this.message = message;
     }
 
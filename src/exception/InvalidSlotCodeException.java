@@ -0,0 +1,15 @@
+package exception;
+
+public class InvalidSlotCodeException extends RuntimeException {
+    private String message;
+
+    public InvalidSlotCodeException(String message) {
+        super(message, null, false, false);
+        this.message = message;
+    }
+
+    @Override
+    public String getMessage() {
+        return this.message;
+    }
+}
@@ -4,6 +4,7 @@ public class ItemNotFullyPaidException extends RuntimeException {
     private String message;
 
     public ItemNotFullyPaidException (String message) {
+        super(message, null, false, false);
         this.message = message;
     }
 
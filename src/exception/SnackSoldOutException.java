@@ -4,6 +4,7 @@ public class SnackSoldOutException extends RuntimeException {
     private String message;
 
     public SnackSoldOutException (String message) {
+        super(message, null, false, false);
         this.message = message;
     }
 
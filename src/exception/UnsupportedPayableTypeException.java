@@ -4,6 +4,7 @@ public class UnsupportedPayableTypeException extends RuntimeException {
     private String message;
 
     public UnsupportedPayableTypeException(String message) {
+        super(message, null, false, false);
         this.message = message;
     }
 
@@ -0,0 +1,173 @@
+package fleet;
+
+import components.Button;
+import components.MoneySlot;
+import core.SnackVendingMachine;
+import enumerations.Coin;
+import enumerations.Note;
+import enumerations.SnackItem;
+import interfaces.Payable;
+import utils.Pair;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Hosts many SnackVendingMachines in one JVM, each behind a MachineActor with
+ * its own mailbox, and routes commands to them by machine id. All actors share
+ * one executor, sized to the cores by default, so the machines count is not
+ * bounded by the platform threads count.
+ */
+public class FleetRuntime implements AutoCloseable {
+    private final ExecutorService executor;
+    private final boolean isExecutorOwned;
+    private final Map<String, MachineActor> actors;
+    private final LongAdder completedCommandsCount;
+    private final long startedAtNanos;
+
+    public FleetRuntime() {
+        this(new ForkJoinPool(Runtime.getRuntime().availableProcessors(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true), true);
+    }
+
+    /**
+     * @param executor executor draining the machines' mailboxes, e.g a
+     * virtual-thread-per-task executor where the JDK provides one.
+     */
+    public FleetRuntime(ExecutorService executor) {
+        this(executor, false);
+    }
+
+    private FleetRuntime(ExecutorService executor, boolean isExecutorOwned) {
+        this.executor = executor;
+        this.isExecutorOwned = isExecutorOwned;
+        this.actors = new ConcurrentHashMap<>();
+        this.completedCommandsCount = new LongAdder();
+        this.startedAtNanos = System.nanoTime();
+    }
+
+    public MachineActor register(String machineId, SnackVendingMachine snackVendingMachine) {
+        MachineActor actor = new MachineActor(machineId, snackVendingMachine, this.executor, this.completedCommandsCount);
+
+        if (this.actors.putIfAbsent(machineId, actor) != null) {
+            throw new IllegalArgumentException("Machine " + machineId + " is already registered");
+        }
+
+        return actor;
+    }
+
+    public MachineActor getMachine(String machineId) {
+        MachineActor actor = this.actors.get(machineId);
+
+        if (actor == null) {
+            throw new IllegalArgumentException("Machine " + machineId + " is not registered");
+        }
+
+        return actor;
+    }
+
+    public int getMachinesCount() {
+        return this.actors.size();
+    }
+
+    public <T> CompletableFuture<T> send(String machineId, Function<SnackVendingMachine, T> command) {
+        return this.getMachine(machineId).send(command);
+    }
+
+    /**
+     * Inserts the payable through the machine's slot matching its type:
+     * coins into the CoinSlot, notes into the NoteSlot and anything else into the CardSlot.
+     */
+    public CompletableFuture<Void> insertMoney(String machineId, Payable payable) {
+        return this.send(machineId, machine -> {
+            machine.insertMoney(moneySlotFor(machine, payable), payable);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Integer> pressButton(String machineId, Button button) {
+        return this.send(machineId, machine -> machine.getKeypad().pressButton(button));
+    }
+
+    /**
+     * Dispenses once the authorization of the card inserted in the machine,
+     * if any, was answered: the machine's later commands wait behind it,
+     * the executor's threads serve the other machines meanwhile.
+     */
+    public CompletableFuture<Pair<SnackItem, Map<Payable, Integer>>> dispense(String machineId) {
+        return this.getMachine(machineId).sendWhenReady(
+                machine -> machine.getDefaultSession().getCardAuthorization(),
+                SnackVendingMachine::dispenseSelectedItemAndCustomerChange
+        );
+    }
+
+    public CompletableFuture<Map<Payable, Integer>> refund(String machineId) {
+        return this.send(machineId, SnackVendingMachine::refund);
+    }
+
+    public int getBacklog(String machineId) {
+        return this.getMachine(machineId).getBacklog();
+    }
+
+    /**
+     * @return machine id -> count of commands waiting in its mailbox, for the machines that have any.
+     */
+    public Map<String, Integer> getBacklogs() {
+        Map<String, Integer> backlogs = new HashMap<>();
+
+        for (MachineActor actor : this.actors.values()) {
+            int backlog = actor.getBacklog();
+
+            if (backlog > 0) {
+                backlogs.put(actor.getMachineId(), backlog);
+            }
+        }
+
+        return backlogs;
+    }
+
+    public long getTotalBacklog() {
+        long totalBacklog = 0;
+
+        for (MachineActor actor : this.actors.values()) {
+            totalBacklog += actor.getBacklog();
+        }
+
+        return totalBacklog;
+    }
+
+    public long getCompletedCommandsCount() {
+        return this.completedCommandsCount.sum();
+    }
+
+    /**
+     * @return commands completed per second across the fleet since the runtime started.
+     */
+    public double getThroughputPerSecond() {
+        double elapsedSeconds = (System.nanoTime() - this.startedAtNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        return elapsedSeconds == 0 ? 0 : this.getCompletedCommandsCount() / elapsedSeconds;
+    }
+
+    @Override
+    public void close() {
+        if (this.isExecutorOwned) {
+            this.executor.shutdown();
+        }
+    }
+
+    private static MoneySlot moneySlotFor(SnackVendingMachine machine, Payable payable) {
+        if (payable instanceof Coin) {
+            return machine.getCoinSlot();
+        } else if (payable instanceof Note) {
+            return machine.getNoteSlot();
+        }
+
+        return machine.getCardSlot();
+    }
+}
@@ -0,0 +1,183 @@
+package fleet;
+
+import core.SnackVendingMachine;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs the commands sent to a single SnackVendingMachine one at a time, in
+ * arrival order, without owning a thread: the mailbox is drained by whatever
+ * executor thread picks it up, and is handed back to the executor once it is
+ * empty (or after a batch, so busy machines do not starve the others).
+ *
+ * A command sent with sendWhenReady may have to wait for a future first,
+ * e.g a card's authorization: the actor then parks it and hands its thread
+ * back to the executor, and resumes with it once the future completes. The
+ * machine's later commands wait behind it, so arrival order is kept.
+ */
+public class MachineActor {
+    private static final int MAX_COMMANDS_PER_TURN = 64;
+
+    private final String machineId;
+    private final SnackVendingMachine snackVendingMachine;
+    private final Executor executor;
+    private final Queue<Command> mailbox;
+    private final AtomicInteger backlog;
+    private final AtomicBoolean isScheduled;
+    private final LongAdder completedCommandsCount;
+    private volatile Command parkedCommand;
+
+    MachineActor(String machineId, SnackVendingMachine snackVendingMachine, Executor executor, LongAdder completedCommandsCount) {
+        this.machineId = machineId;
+        this.snackVendingMachine = snackVendingMachine;
+        this.executor = executor;
+        this.mailbox = new ConcurrentLinkedQueue<>();
+        this.backlog = new AtomicInteger();
+        this.isScheduled = new AtomicBoolean(false);
+        this.completedCommandsCount = completedCommandsCount;
+    }
+
+    public String getMachineId() {
+        return machineId;
+    }
+
+    public SnackVendingMachine getSnackVendingMachine() {
+        return snackVendingMachine;
+    }
+
+    /**
+     * @return count of commands sent to the machine and not processed yet.
+     */
+    public int getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * Queues the command for the machine, the returned future completes with
+     * the command's result (or exception) once the machine has processed it.
+     */
+    public <T> CompletableFuture<T> send(Function<SnackVendingMachine, T> command) {
+        return this.sendWhenReady(machine -> null, command);
+    }
+
+    /**
+     * Same as send, for a command that must not run before a future of the
+     * machine's completed, waited for without holding any executor thread.
+     *
+     * @param awaitedFuture gives the future to wait for, or null if the
+     * command can run straight away, asked when the command's turn comes.
+     */
+    public <T> CompletableFuture<T> sendWhenReady(
+            Function<SnackVendingMachine, ? extends CompletableFuture<?>> awaitedFuture,
+            Function<SnackVendingMachine, T> command
+    ) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        this.mailbox.add(new Command(awaitedFuture, () -> {
+            T value;
+
+            try {
+                value = command.apply(this.snackVendingMachine);
+            } catch (Throwable commandException) {
+                this.markCompleted();
+                result.completeExceptionally(commandException);
+                return;
+            }
+
+            this.markCompleted();
+            result.complete(value);
+        }));
+
+        this.backlog.incrementAndGet();
+        this.scheduleIfIdle();
+
+        return result;
+    }
+
+    /**
+     * Accounts for a processed command before its future is completed, so
+     * whoever waits on the future sees the counters already updated.
+     */
+    private void markCompleted() {
+        this.backlog.decrementAndGet();
+        this.completedCommandsCount.increment();
+    }
+
+    private void scheduleIfIdle() {
+        if (this.isScheduled.compareAndSet(false, true)) {
+            this.executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        Command command;
+        int processedCount = 0;
+        boolean isParked = false;
+
+        try {
+            while (processedCount < MAX_COMMANDS_PER_TURN && (command = this.nextCommand()) != null) {
+                CompletableFuture<?> awaitedFuture = command.getAwaitedFuture(this.snackVendingMachine);
+
+                if (awaitedFuture != null && ! awaitedFuture.isDone()) {
+                    // Stays scheduled while parked, the future's completion resumes the draining.
+                    this.parkedCommand = command;
+                    isParked = true;
+                    awaitedFuture.whenComplete((value, failure) -> this.executor.execute(this::drain));
+                    return;
+                }
+
+                command.body.run();
+                processedCount++;
+            }
+        } finally {
+            if (! isParked) {
+                this.isScheduled.set(false);
+            }
+        }
+
+        // A command may have arrived after the last poll but before the flag was cleared.
+        if (! this.mailbox.isEmpty()) {
+            this.scheduleIfIdle();
+        }
+    }
+
+    private Command nextCommand() {
+        Command command = this.parkedCommand;
+
+        if (command == null) {
+            return this.mailbox.poll();
+        }
+
+        this.parkedCommand = null;
+        return command;
+    }
+
+    private static final class Command {
+        private final Function<SnackVendingMachine, ? extends CompletableFuture<?>> awaitedFuture;
+        private final Runnable body;
+
+        Command(Function<SnackVendingMachine, ? extends CompletableFuture<?>> awaitedFuture, Runnable body) {
+            this.awaitedFuture = awaitedFuture;
+            this.body = body;
+        }
+
+        /**
+         * @return the future to wait for, or null if there is none or it could
+         * not be told, the command then runs and reports its own failures.
+         */
+        CompletableFuture<?> getAwaitedFuture(SnackVendingMachine snackVendingMachine) {
+            try {
+                return this.awaitedFuture.apply(snackVendingMachine);
+            } catch (Throwable awaitingException) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package interfaces;
+
+import enumerations.Card;
+import payment.CardAuthorization;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Payment network a machine authorizes card payments with. Authorizing puts
+ * a hold of the amount on the card, which is then either captured, once the
+ * item was dispensed, or released, e.g when the customer cancels.
+ */
+public interface CardPaymentProcessor {
+    /**
+     * Asks for a hold of the amount on the card, without blocking the caller.
+     *
+     * @return future completed with the processor's answer, approved or declined.
+     */
+    CompletableFuture<CardAuthorization> authorize(Card card, long amountInCents);
+
+    /**
+     * Charges the card with the amount, at most the authorized one, and drops the hold.
+     */
+    CompletableFuture<Void> capture(CardAuthorization authorization, long amountInCents);
+
+    /**
+     * Drops the hold of an approved authorization without charging the card.
+     */
+    void release(CardAuthorization authorization);
+}
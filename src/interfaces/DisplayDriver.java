@@ -0,0 +1,14 @@
+package interfaces;
+
+/**
+ * Device a DisplayScreen's frames are drawn on, e.g an LCD on a serial bus.
+ * Called from the screen's renderer thread only, one frame at a time.
+ */
+@FunctionalInterface
+public interface DisplayDriver {
+    /**
+     * @param frame buffer holding the frame's text, only valid for the duration of the call.
+     * @param length count of characters of the frame.
+     */
+    void draw(char[] frame, int length);
+}
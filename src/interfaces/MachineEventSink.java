@@ -0,0 +1,19 @@
+package interfaces;
+
+import events.MachineEvent;
+
+/**
+ * Destination of the events published on a MachineEventBus. Sinks are called
+ * from the bus' consumer thread only, one event at a time.
+ */
+@FunctionalInterface
+public interface MachineEventSink {
+    void accept(MachineEvent event);
+
+    /**
+     * Called whenever the bus has drained everything published so far.
+     */
+    default void flush() { }
+
+    default void close() { }
+}
@@ -0,0 +1,81 @@
+package interfaces;
+
+import components.ChangeInventory;
+import components.Escrow;
+import components.SnackSlotGrid;
+import enumerations.SnackItem;
+import journal.JournalState;
+
+/**
+ * Write-ahead journal of everything that changes a machine's durable state:
+ * customer money, sales, change inventory counts and snack slots. The money
+ * records come from the machine, slot and count records from the SnackSlotGrid
+ * and the ChangeInventory themselves, so changes made through any of their
+ * methods are journaled.
+ */
+public interface MachineJournal {
+    /**
+     * @param count count of the payable inserted at once, e.g a burst of coins reported by a hopper.
+     */
+    void recordMoneyInserted(Payable payable, int count);
+
+    /**
+     * @param count count of the payable taken out of a session's escrow, either
+     * merged into the change inventory or given back to the customer.
+     */
+    void recordEscrowReleased(Payable payable, int count);
+
+    void recordItemSelected(int slotId, long priceInCents);
+
+    void recordItemDispensed(int slotId, long priceInCents);
+
+    void recordChangeIssued(Payable payable, int count);
+
+    void recordRefundIssued(long amountInCents);
+
+    /**
+     * @param deltaInCents change of the money held for customers that did not come from inserting it.
+     */
+    void recordCreditAdjusted(long deltaInCents);
+
+    void recordSalesTotalSet(long salesTotalInCents);
+
+    /**
+     * @param item the slot's item, or null if the slot has none.
+     */
+    void recordSlotUpdated(int slotId, SnackItem item, int quantity, int capacity);
+
+    /**
+     * @param denominationIndex the payable's index in the DenominationRegistry.
+     * @param delta count added to (or, if negative, taken from) the change inventory.
+     */
+    void recordChangeCountAdjusted(int denominationIndex, int delta);
+
+    /**
+     * @return true if the journal holds a checkpoint to restore a machine from,
+     * false if it has to be started from a machine's state, as a journal that
+     * keeps nothing always does.
+     */
+    default boolean hasCheckpoint() {
+        return false;
+    }
+
+    /**
+     * @return the state the journal's records add up to, only asked for if it has a checkpoint.
+     */
+    default JournalState getState() {
+        throw new UnsupportedOperationException("Journal holds no state to restore from");
+    }
+
+    /**
+     * Takes the given machine state as the journal's starting point, before
+     * the machine records anything to it.
+     */
+    default void startFrom(
+            long salesTotalInCents,
+            long customerCreditInCents,
+            Escrow escrow,
+            ChangeInventory changeInventory,
+            SnackSlotGrid snackSlotGrid
+    ) { }
+}
@@ -1,7 +1,13 @@
 package interfaces;
 
+import utils.Money;
+
 import java.math.BigDecimal;
 
 public interface Payable {
-    BigDecimal getWorth();
+    long getWorthInCents();
+
+    default BigDecimal getWorth() {
+        return Money.toBigDecimal(this.getWorthInCents());
+    }
 }
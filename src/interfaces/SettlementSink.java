@@ -0,0 +1,21 @@
+package interfaces;
+
+import payment.CardSettlement;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Acquirer a terminal's captured card payments are settled with, a batch at
+ * a time. Called from the settlement queue's thread only.
+ */
+public interface SettlementSink {
+    /**
+     * Settles the whole batch or none of it. The same settlements may be sent
+     * again, e.g after a timeout, so a settlement whose idempotency key was
+     * already settled must be acknowledged without settling it twice.
+     *
+     * @throws IOException if the acquirer could not be reached, the batch is then retried.
+     */
+    void settle(List<CardSettlement> batch) throws IOException;
+}
@@ -0,0 +1,12 @@
+package interfaces;
+
+import enumerations.MachineState;
+
+/**
+ * Called when the machine leaves or enters a state, on the thread that won
+ * the transition and right after the new state became visible.
+ */
+@FunctionalInterface
+public interface StateTransitionHook {
+    void onTransition(MachineState fromState, MachineState toState);
+}
@@ -0,0 +1,202 @@
+package journal;
+
+import components.DenominationRegistry;
+import enumerations.JournalRecordType;
+import enumerations.SnackItem;
+
+import java.util.Arrays;
+
+/**
+ * Machine state as rebuilt from a journal's records: sales total, money held
+ * for customers and the payables of it still in escrow, change inventory
+ * counts and snack slots. A journal keeps one
+ * up to date with every append, which is what its checkpoints are written from.
+ */
+public class JournalState {
+    private static final SnackItem[] SNACK_ITEMS = SnackItem.values();
+    private static final int NO_ITEM = -1;
+
+    private long salesTotalInCents;
+    private long customerCreditInCents;
+    private final int[] changeCounts;
+    private final int[] escrowCounts;
+    private final int[] itemOrdinals;
+    private final int[] quantities;
+    private final int[] capacities;
+
+    JournalState(int slotsCount) {
+        this.changeCounts = new int[DenominationRegistry.size()];
+        this.escrowCounts = new int[DenominationRegistry.size()];
+        this.itemOrdinals = new int[slotsCount];
+        this.quantities = new int[slotsCount];
+        this.capacities = new int[slotsCount];
+        this.clear();
+    }
+
+    private JournalState(JournalState state) {
+        this.salesTotalInCents = state.salesTotalInCents;
+        this.customerCreditInCents = state.customerCreditInCents;
+        this.changeCounts = state.changeCounts.clone();
+        this.escrowCounts = state.escrowCounts.clone();
+        this.itemOrdinals = state.itemOrdinals.clone();
+        this.quantities = state.quantities.clone();
+        this.capacities = state.capacities.clone();
+    }
+
+    public long getSalesTotalInCents() {
+        return salesTotalInCents;
+    }
+
+    /**
+     * @return money inserted by customers and neither spent nor refunded yet, over all sessions.
+     */
+    public long getCustomerCreditInCents() {
+        return customerCreditInCents;
+    }
+
+    /**
+     * @param denominationIndex the payable's index in the DenominationRegistry.
+     */
+    public int getChangeCount(int denominationIndex) {
+        return changeCounts[denominationIndex];
+    }
+
+    /**
+     * @param denominationIndex the payable's index in the DenominationRegistry.
+     * @return count of the payable inserted by customers and still held in escrow, over all sessions.
+     */
+    public int getEscrowCount(int denominationIndex) {
+        return escrowCounts[denominationIndex];
+    }
+
+    public int getSlotsCount() {
+        return quantities.length;
+    }
+
+    public SnackItem getSlotItem(int slotId) {
+        return itemOrdinals[slotId] == NO_ITEM ? null : SNACK_ITEMS[itemOrdinals[slotId]];
+    }
+
+    public int getSlotQuantity(int slotId) {
+        return quantities[slotId];
+    }
+
+    public int getSlotCapacity(int slotId) {
+        return capacities[slotId];
+    }
+
+    JournalState copy() {
+        return new JournalState(this);
+    }
+
+    void copyFrom(JournalState state) {
+        this.salesTotalInCents = state.salesTotalInCents;
+        this.customerCreditInCents = state.customerCreditInCents;
+        System.arraycopy(state.changeCounts, 0, this.changeCounts, 0, this.changeCounts.length);
+        System.arraycopy(state.escrowCounts, 0, this.escrowCounts, 0, this.escrowCounts.length);
+        System.arraycopy(state.itemOrdinals, 0, this.itemOrdinals, 0, this.itemOrdinals.length);
+        System.arraycopy(state.quantities, 0, this.quantities, 0, this.quantities.length);
+        System.arraycopy(state.capacities, 0, this.capacities, 0, this.capacities.length);
+    }
+
+    void setSalesTotalInCents(long salesTotalInCents) {
+        this.salesTotalInCents = salesTotalInCents;
+    }
+
+    void setCustomerCreditInCents(long customerCreditInCents) {
+        this.customerCreditInCents = customerCreditInCents;
+    }
+
+    void setChangeCount(int denominationIndex, int count) {
+        this.changeCounts[denominationIndex] = count;
+    }
+
+    void setEscrowCount(int denominationIndex, int count) {
+        this.escrowCounts[denominationIndex] = count;
+    }
+
+    void setSlot(int slotId, int itemOrdinal, int quantity, int capacity) {
+        this.itemOrdinals[slotId] = itemOrdinal;
+        this.quantities[slotId] = quantity;
+        this.capacities[slotId] = capacity;
+    }
+
+    /**
+     * Applies one record, with the fields as laid out in the journal file.
+     *
+     * @return false if the record does not fit this state, e.g an unknown slot.
+     */
+    boolean apply(JournalRecordType type, int index, long amount, int count, int extra) {
+        switch (type) {
+            case MONEY_INSERTED:
+                if (index >= this.escrowCounts.length) {
+                    return false;
+                } else if (index >= 0) {
+                    this.escrowCounts[index] += count;
+                }
+
+                this.customerCreditInCents += amount;
+                return true;
+            case CREDIT_ADJUSTED:
+                this.customerCreditInCents += amount;
+                return true;
+            case ITEM_DISPENSED:
+                this.salesTotalInCents += amount;
+                this.customerCreditInCents -= amount;
+                return true;
+            case CHANGE_ISSUED:
+                this.customerCreditInCents -= amount;
+                return true;
+            case SALES_TOTAL_SET:
+                this.salesTotalInCents = amount;
+                return true;
+            case SLOT_UPDATED:
+                if (index < 0 || index >= this.quantities.length || extra < NO_ITEM || extra >= SNACK_ITEMS.length) {
+                    return false;
+                }
+
+                this.setSlot(index, extra, count, (int) amount);
+                return true;
+            case CHANGE_COUNT_ADJUSTED:
+            case CHECKPOINT_CHANGE_COUNT:
+                if (index < 0 || index >= this.changeCounts.length) {
+                    return false;
+                }
+
+                this.changeCounts[index] = type == JournalRecordType.CHANGE_COUNT_ADJUSTED ?
+                        this.changeCounts[index] + count :
+                        count;
+                return true;
+            case ESCROW_RELEASED:
+            case CHECKPOINT_ESCROW_COUNT:
+                if (index < 0 || index >= this.escrowCounts.length) {
+                    return false;
+                }
+
+                this.escrowCounts[index] = type == JournalRecordType.ESCROW_RELEASED ?
+                        this.escrowCounts[index] - count :
+                        count;
+                return true;
+            case CHECKPOINT_BEGIN:
+                this.clear();
+                this.salesTotalInCents = amount;
+                return true;
+            case CHECKPOINT_END:
+                this.customerCreditInCents = amount;
+                return true;
+            default:
+                // Selections and refund markers do not change the state.
+                return true;
+        }
+    }
+
+    private void clear() {
+        this.salesTotalInCents = 0;
+        this.customerCreditInCents = 0;
+        Arrays.fill(this.changeCounts, 0);
+        Arrays.fill(this.escrowCounts, 0);
+        Arrays.fill(this.itemOrdinals, NO_ITEM);
+        Arrays.fill(this.quantities, 0);
+        Arrays.fill(this.capacities, 0);
+    }
+}
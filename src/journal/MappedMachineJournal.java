@@ -0,0 +1,573 @@
+package journal;
+
+import components.ChangeInventory;
+import components.DenominationRegistry;
+import components.Escrow;
+import components.SnackSlotGrid;
+import enumerations.JournalRecordType;
+import enumerations.JournalSyncPolicy;
+import enumerations.SnackItem;
+import interfaces.MachineJournal;
+import interfaces.Payable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of a machine's transactions in a memory-mapped file.
+ * Every record has the same binary layout, so an append is a handful of
+ * stores into the mapping and never a system call; when the records reach
+ * the disk is up to the JournalSyncPolicy.
+ *
+ * The journal keeps the JournalState its records add up to. Checkpoints are
+ * written from that state, so they are always consistent with the records
+ * before them even while the machine keeps selling, and the file header
+ * points at the last complete checkpoint: opening the journal replays from
+ * there. When the file is full it is compacted, i.e replaced by a file
+ * holding a single checkpoint.
+ *
+ * File layout, all numbers big-endian:
+ * header (64 bytes): magic, format version, record size, slots count,
+ * denominations count (ints at 0, 4, 8, 12, 16), position of the last
+ * checkpoint (long at 24), then records of 40 bytes each: sequence (long),
+ * type code, index (ints), amount (long), count, extra and checksum (ints).
+ */
+public class MappedMachineJournal implements MachineJournal, AutoCloseable {
+    public static final int DEFAULT_CAPACITY_IN_BYTES = 16 << 20;
+    public static final long DEFAULT_GROUP_COMMIT_INTERVAL_MILLIS = 10;
+
+    private static final int MAGIC = 0x534E4A4C;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 40;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int FORMAT_VERSION_OFFSET = 4;
+    private static final int RECORD_SIZE_OFFSET = 8;
+    private static final int SLOTS_COUNT_OFFSET = 12;
+    private static final int DENOMINATIONS_COUNT_OFFSET = 16;
+    private static final int CHECKPOINT_POSITION_OFFSET = 24;
+
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int TYPE_OFFSET = 8;
+    private static final int INDEX_OFFSET = 12;
+    private static final int AMOUNT_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+    private static final int EXTRA_OFFSET = 28;
+    private static final int CHECKSUM_OFFSET = 32;
+
+    private final Path path;
+    private final int slotsCount;
+    private final JournalSyncPolicy syncPolicy;
+    private final JournalState state;
+    private final ScheduledExecutorService syncExecutor;
+
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private int position;
+    private long lastSequence;
+    private volatile long appendedSequence;
+    private volatile long durableSequence;
+    private boolean isClosed;
+
+    public MappedMachineJournal(Path path, int slotsCount) throws IOException {
+        this(path, slotsCount, JournalSyncPolicy.GROUP_COMMIT);
+    }
+
+    public MappedMachineJournal(Path path, int slotsCount, JournalSyncPolicy syncPolicy) throws IOException {
+        this(path, slotsCount, syncPolicy, DEFAULT_CAPACITY_IN_BYTES, DEFAULT_GROUP_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens the journal file, creating it if needed, and replays it from its
+     * last checkpoint.
+     *
+     * @param slotsCount count of snack slots of the journaled machine.
+     * @param capacityInBytes size the file is mapped with, it is compacted once full.
+     * @param groupCommitIntervalMillis how often records are forced under GROUP_COMMIT.
+     * @throws IllegalStateException if the file is not a journal of a machine with as many slots.
+     */
+    public MappedMachineJournal(
+            Path path,
+            int slotsCount,
+            JournalSyncPolicy syncPolicy,
+            int capacityInBytes,
+            long groupCommitIntervalMillis
+    ) throws IOException {
+        if (capacityInBytes < HEADER_SIZE + (getCheckpointRecordsCount(slotsCount) + 1) * RECORD_SIZE) {
+            throw new IllegalArgumentException("Journal capacity is too small for a checkpoint: " + capacityInBytes);
+        }
+
+        this.path = path;
+        this.slotsCount = slotsCount;
+        this.syncPolicy = syncPolicy;
+        this.state = new JournalState(slotsCount);
+        this.channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(this.channel.size(), capacityInBytes));
+
+        if (this.buffer.getInt(MAGIC_OFFSET) == 0) {
+            this.writeHeader(this.buffer);
+            this.position = HEADER_SIZE;
+        } else {
+            this.validateHeader();
+            this.replay();
+        }
+
+        this.appendedSequence = this.lastSequence;
+        this.durableSequence = this.lastSequence;
+
+        if (syncPolicy == JournalSyncPolicy.GROUP_COMMIT) {
+            this.syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "machine-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.syncExecutor.scheduleWithFixedDelay(
+                    this::syncIfBehind,
+                    groupCommitIntervalMillis,
+                    groupCommitIntervalMillis,
+                    TimeUnit.MILLISECONDS
+            );
+        } else {
+            this.syncExecutor = null;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public JournalSyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public int getCapacityInBytes() {
+        return buffer.capacity();
+    }
+
+    public synchronized int getUsedBytes() {
+        return position;
+    }
+
+    /**
+     * @return sequence number of the last record appended.
+     */
+    public long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    /**
+     * @return sequence number of the last record known to be on disk.
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * @return true if the journal holds a checkpoint to restore a machine from,
+     * false for a new journal that still has to be started from a machine's state.
+     */
+    @Override
+    public synchronized boolean hasCheckpoint() {
+        return this.buffer.getLong(CHECKPOINT_POSITION_OFFSET) != 0;
+    }
+
+    /**
+     * @return copy of the state the journal's records add up to.
+     */
+    @Override
+    public synchronized JournalState getState() {
+        return this.state.copy();
+    }
+
+    /**
+     * Takes the given machine state as the journal's starting point and writes
+     * it as a checkpoint. Meant for a new journal, before the machine records
+     * anything to it.
+     */
+    @Override
+    public synchronized void startFrom(
+            long salesTotalInCents,
+            long customerCreditInCents,
+            Escrow escrow,
+            ChangeInventory changeInventory,
+            SnackSlotGrid snackSlotGrid
+    ) {
+        if (snackSlotGrid.getSlotsCount() != this.slotsCount) {
+            throw new IllegalArgumentException("Journal is for " + this.slotsCount + " slots, not " + snackSlotGrid.getSlotsCount());
+        }
+
+        this.state.setSalesTotalInCents(salesTotalInCents);
+        this.state.setCustomerCreditInCents(customerCreditInCents);
+
+        for (int index = 0; index < DenominationRegistry.size(); index++) {
+            this.state.setChangeCount(index, changeInventory.getCountOfPayable(DenominationRegistry.getDenomination(index)));
+            this.state.setEscrowCount(index, escrow.getCount(index));
+        }
+
+        for (int slotId = 0; slotId < this.slotsCount; slotId++) {
+            SnackItem item = snackSlotGrid.getItem(slotId);
+
+            this.state.setSlot(
+                    slotId,
+                    item == null ? -1 : item.ordinal(),
+                    snackSlotGrid.getQuantity(slotId),
+                    snackSlotGrid.getCapacity(slotId)
+            );
+        }
+
+        this.checkpoint();
+    }
+
+    /**
+     * Writes the current state as a checkpoint and makes it the one the
+     * journal is replayed from, compacting the file if it does not fit.
+     */
+    public synchronized void checkpoint() {
+        this.ensureOpen();
+
+        if (this.position + getCheckpointRecordsCount(this.slotsCount) * RECORD_SIZE > this.buffer.capacity()) {
+            this.compact();
+        } else {
+            this.writeCheckpoint(this.buffer);
+        }
+    }
+
+    /**
+     * Forces every record appended so far to disk.
+     */
+    public void sync() {
+        long sequence = this.appendedSequence;
+
+        this.buffer.force();
+        this.durableSequence = Math.max(this.durableSequence, sequence);
+    }
+
+    @Override
+    public void recordMoneyInserted(Payable payable, int count) {
+        this.append(JournalRecordType.MONEY_INSERTED, DenominationRegistry.indexOf(payable), payable.getWorthInCents() * count, count, 0);
+    }
+
+    @Override
+    public void recordEscrowReleased(Payable payable, int count) {
+        this.append(JournalRecordType.ESCROW_RELEASED, DenominationRegistry.indexOf(payable), 0, count, 0);
+    }
+
+    @Override
+    public void recordItemSelected(int slotId, long priceInCents) {
+        this.append(JournalRecordType.ITEM_SELECTED, slotId, priceInCents, 0, 0);
+    }
+
+    @Override
+    public void recordItemDispensed(int slotId, long priceInCents) {
+        this.append(JournalRecordType.ITEM_DISPENSED, slotId, priceInCents, 1, 0);
+    }
+
+    @Override
+    public void recordChangeIssued(Payable payable, int count) {
+        this.append(
+                JournalRecordType.CHANGE_ISSUED,
+                DenominationRegistry.indexOf(payable),
+                payable.getWorthInCents() * count,
+                count,
+                0
+        );
+    }
+
+    @Override
+    public void recordRefundIssued(long amountInCents) {
+        this.append(JournalRecordType.REFUND_ISSUED, -1, amountInCents, 0, 0);
+    }
+
+    @Override
+    public void recordCreditAdjusted(long deltaInCents) {
+        this.append(JournalRecordType.CREDIT_ADJUSTED, -1, deltaInCents, 0, 0);
+    }
+
+    @Override
+    public void recordSalesTotalSet(long salesTotalInCents) {
+        this.append(JournalRecordType.SALES_TOTAL_SET, -1, salesTotalInCents, 0, 0);
+    }
+
+    @Override
+    public void recordSlotUpdated(int slotId, SnackItem item, int quantity, int capacity) {
+        this.append(JournalRecordType.SLOT_UPDATED, slotId, capacity, quantity, item == null ? -1 : item.ordinal());
+    }
+
+    @Override
+    public void recordChangeCountAdjusted(int denominationIndex, int delta) {
+        this.append(JournalRecordType.CHANGE_COUNT_ADJUSTED, denominationIndex, 0, delta, 0);
+    }
+
+    /**
+     * Stops the background syncing, forces what is left to disk and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.isClosed) {
+            return;
+        }
+
+        this.isClosed = true;
+
+        if (this.syncExecutor != null) {
+            this.syncExecutor.shutdownNow();
+        }
+
+        this.sync();
+        this.channel.close();
+    }
+
+    private synchronized void append(JournalRecordType type, int index, long amount, int count, int extra) {
+        this.ensureOpen();
+
+        if (this.position + RECORD_SIZE > this.buffer.capacity()) {
+            this.compact();
+        }
+
+        if (! this.state.apply(type, index, amount, count, extra)) {
+            throw new IllegalArgumentException("Record does not fit the journaled machine: " + type + " " + index);
+        }
+
+        this.write(this.buffer, type, index, amount, count, extra);
+
+        if (this.syncPolicy == JournalSyncPolicy.EVERY_RECORD) {
+            this.sync();
+        }
+    }
+
+    private void write(MappedByteBuffer target, JournalRecordType type, int index, long amount, int count, int extra) {
+        long sequence = ++this.lastSequence;
+        int recordPosition = this.position;
+
+        target.putInt(recordPosition + TYPE_OFFSET, type.getCode());
+        target.putInt(recordPosition + INDEX_OFFSET, index);
+        target.putLong(recordPosition + AMOUNT_OFFSET, amount);
+        target.putInt(recordPosition + COUNT_OFFSET, count);
+        target.putInt(recordPosition + EXTRA_OFFSET, extra);
+        target.putInt(recordPosition + CHECKSUM_OFFSET, checksum(sequence, type.getCode(), index, amount, count, extra));
+        target.putLong(recordPosition + SEQUENCE_OFFSET, sequence);
+
+        this.position += RECORD_SIZE;
+        this.appendedSequence = sequence;
+    }
+
+    /**
+     * Writes the state as a checkpoint at the current position, then, once
+     * it is on disk, points the header at it.
+     */
+    private void writeCheckpoint(MappedByteBuffer target) {
+        int checkpointPosition = this.position;
+
+        this.write(target, JournalRecordType.CHECKPOINT_BEGIN, this.slotsCount, this.state.getSalesTotalInCents(), 0, 0);
+
+        for (int slotId = 0; slotId < this.slotsCount; slotId++) {
+            SnackItem item = this.state.getSlotItem(slotId);
+
+            this.write(
+                    target,
+                    JournalRecordType.SLOT_UPDATED,
+                    slotId,
+                    this.state.getSlotCapacity(slotId),
+                    this.state.getSlotQuantity(slotId),
+                    item == null ? -1 : item.ordinal()
+            );
+        }
+
+        for (int index = 0; index < DenominationRegistry.size(); index++) {
+            this.write(target, JournalRecordType.CHECKPOINT_CHANGE_COUNT, index, 0, this.state.getChangeCount(index), 0);
+        }
+
+        for (int index = 0; index < DenominationRegistry.size(); index++) {
+            this.write(target, JournalRecordType.CHECKPOINT_ESCROW_COUNT, index, 0, this.state.getEscrowCount(index), 0);
+        }
+
+        this.write(target, JournalRecordType.CHECKPOINT_END, -1, this.state.getCustomerCreditInCents(), 0, 0);
+        target.force();
+
+        target.putLong(CHECKPOINT_POSITION_OFFSET, checkpointPosition);
+        target.force();
+        this.durableSequence = this.lastSequence;
+    }
+
+    /**
+     * Writes a checkpoint of the state into a new file and moves it over the
+     * journal file, which then continues from that checkpoint.
+     */
+    private void compact() {
+        Path compactingPath = this.path.resolveSibling(this.path.getFileName() + ".compacting");
+
+        try {
+            FileChannel compactingChannel = FileChannel.open(
+                    compactingPath,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+            );
+            MappedByteBuffer compactingBuffer = compactingChannel.map(FileChannel.MapMode.READ_WRITE, 0, this.buffer.capacity());
+
+            this.writeHeader(compactingBuffer);
+            this.position = HEADER_SIZE;
+            this.writeCheckpoint(compactingBuffer);
+
+            Files.move(compactingPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.channel.close();
+            this.channel = compactingChannel;
+            this.buffer = compactingBuffer;
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    /**
+     * Rebuilds the state from the checkpoint the header points at and every
+     * valid record after it. The first torn or out-of-sequence record ends
+     * the journal, as does a trailing checkpoint that was never completed.
+     */
+    private void replay() {
+        int checkpointPosition = (int) this.buffer.getLong(CHECKPOINT_POSITION_OFFSET);
+
+        if (checkpointPosition == 0) {
+            this.position = HEADER_SIZE;
+            return;
+        }
+
+        this.position = checkpointPosition;
+        this.lastSequence = this.buffer.getLong(checkpointPosition + SEQUENCE_OFFSET) - 1;
+
+        if (this.readRecordType(checkpointPosition) != JournalRecordType.CHECKPOINT_BEGIN) {
+            throw new IllegalStateException("Journal checkpoint is corrupt: " + this.path);
+        }
+
+        JournalState stateBeforeOpenCheckpoint = null;
+        int openCheckpointPosition = 0;
+        long sequenceBeforeOpenCheckpoint = 0;
+
+        while (this.position + RECORD_SIZE <= this.buffer.capacity()) {
+            JournalRecordType type = this.readRecordType(this.position);
+
+            if (type == null) {
+                break;
+            } else if (type == JournalRecordType.CHECKPOINT_BEGIN) {
+                stateBeforeOpenCheckpoint = this.state.copy();
+                openCheckpointPosition = this.position;
+                sequenceBeforeOpenCheckpoint = this.lastSequence;
+            }
+
+            boolean isApplied = this.state.apply(
+                    type,
+                    this.buffer.getInt(this.position + INDEX_OFFSET),
+                    this.buffer.getLong(this.position + AMOUNT_OFFSET),
+                    this.buffer.getInt(this.position + COUNT_OFFSET),
+                    this.buffer.getInt(this.position + EXTRA_OFFSET)
+            );
+
+            if (! isApplied) {
+                break;
+            } else if (type == JournalRecordType.CHECKPOINT_END) {
+                stateBeforeOpenCheckpoint = null;
+            }
+
+            this.lastSequence++;
+            this.position += RECORD_SIZE;
+        }
+
+        if (stateBeforeOpenCheckpoint != null) {
+            if (openCheckpointPosition == checkpointPosition) {
+                throw new IllegalStateException("Journal checkpoint is incomplete: " + this.path);
+            }
+
+            // Crashed while writing a later checkpoint: continue from before it, it will be overwritten.
+            this.state.copyFrom(stateBeforeOpenCheckpoint);
+            this.position = openCheckpointPosition;
+            this.lastSequence = sequenceBeforeOpenCheckpoint;
+        }
+    }
+
+    /**
+     * @return the type of the record at the position, or null if there is no
+     * valid record following the last sequence there.
+     */
+    private JournalRecordType readRecordType(int recordPosition) {
+        long sequence = this.buffer.getLong(recordPosition + SEQUENCE_OFFSET);
+        int typeCode = this.buffer.getInt(recordPosition + TYPE_OFFSET);
+        int checksum = checksum(
+                sequence,
+                typeCode,
+                this.buffer.getInt(recordPosition + INDEX_OFFSET),
+                this.buffer.getLong(recordPosition + AMOUNT_OFFSET),
+                this.buffer.getInt(recordPosition + COUNT_OFFSET),
+                this.buffer.getInt(recordPosition + EXTRA_OFFSET)
+        );
+
+        if (sequence != this.lastSequence + 1 || checksum != this.buffer.getInt(recordPosition + CHECKSUM_OFFSET)) {
+            return null;
+        }
+
+        return JournalRecordType.fromCode(typeCode);
+    }
+
+    private void writeHeader(MappedByteBuffer target) {
+        target.putInt(MAGIC_OFFSET, MAGIC);
+        target.putInt(FORMAT_VERSION_OFFSET, FORMAT_VERSION);
+        target.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        target.putInt(SLOTS_COUNT_OFFSET, this.slotsCount);
+        target.putInt(DENOMINATIONS_COUNT_OFFSET, DenominationRegistry.size());
+        target.putLong(CHECKPOINT_POSITION_OFFSET, 0);
+    }
+
+    private void validateHeader() {
+        if (this.buffer.getInt(MAGIC_OFFSET) != MAGIC
+                || this.buffer.getInt(FORMAT_VERSION_OFFSET) != FORMAT_VERSION
+                || this.buffer.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+            throw new IllegalStateException("Not a machine journal: " + this.path);
+        } else if (this.buffer.getInt(SLOTS_COUNT_OFFSET) != this.slotsCount
+                || this.buffer.getInt(DENOMINATIONS_COUNT_OFFSET) != DenominationRegistry.size()) {
+            throw new IllegalStateException(
+                    "Journal was written for " + this.buffer.getInt(SLOTS_COUNT_OFFSET) + " slots: " + this.path
+            );
+        }
+    }
+
+    private void syncIfBehind() {
+        if (this.durableSequence < this.appendedSequence) {
+            this.sync();
+        }
+    }
+
+    private void ensureOpen() {
+        if (this.isClosed) {
+            throw new IllegalStateException("Journal is closed: " + this.path);
+        }
+    }
+
+    private static int getCheckpointRecordsCount(int slotsCount) {
+        return slotsCount + 2 * DenominationRegistry.size() + 2;
+    }
+
+    private static int checksum(long sequence, int typeCode, int index, long amount, int count, int extra) {
+        long hash = sequence * 0x9E3779B97F4A7C15L;
+
+        hash = (hash ^ typeCode) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ index) * 0x94D049BB133111EBL;
+        hash = (hash ^ amount) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ ((long) count << 32 | (extra & 0xFFFFFFFFL))) * 0xBF58476D1CE4E5B9L;
+
+        return (int) (hash ^ (hash >>> 31));
+    }
+}
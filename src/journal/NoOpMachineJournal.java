@@ -0,0 +1,42 @@
+package journal;
+
+import enumerations.SnackItem;
+import interfaces.MachineJournal;
+import interfaces.Payable;
+
+/**
+ * Journal of machines that keep their state on the heap only.
+ */
+public class NoOpMachineJournal implements MachineJournal {
+    public static final NoOpMachineJournal INSTANCE = new NoOpMachineJournal();
+
+    @Override
+    public void recordMoneyInserted(Payable payable, int count) { }
+
+    @Override
+    public void recordEscrowReleased(Payable payable, int count) { }
+
+    @Override
+    public void recordItemSelected(int slotId, long priceInCents) { }
+
+    @Override
+    public void recordItemDispensed(int slotId, long priceInCents) { }
+
+    @Override
+    public void recordChangeIssued(Payable payable, int count) { }
+
+    @Override
+    public void recordRefundIssued(long amountInCents) { }
+
+    @Override
+    public void recordCreditAdjusted(long deltaInCents) { }
+
+    @Override
+    public void recordSalesTotalSet(long salesTotalInCents) { }
+
+    @Override
+    public void recordSlotUpdated(int slotId, SnackItem item, int quantity, int capacity) { }
+
+    @Override
+    public void recordChangeCountAdjusted(int denominationIndex, int delta) { }
+}
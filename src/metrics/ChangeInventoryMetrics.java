@@ -0,0 +1,62 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * getChange latency and counters of a ChangeInventory: how often its change
+ * table had to be rebuilt and how often change could not be produced.
+ */
+public class ChangeInventoryMetrics {
+    private final LatencyHistogram getChangeLatency;
+    private final LongAdder changeTableBuildsCount;
+    private final LongAdder insufficientChangeCount;
+    private volatile boolean isTimingEnabled;
+
+    public ChangeInventoryMetrics() {
+        this.getChangeLatency = new LatencyHistogram();
+        this.changeTableBuildsCount = new LongAdder();
+        this.insufficientChangeCount = new LongAdder();
+        this.isTimingEnabled = true;
+    }
+
+    public boolean isTimingEnabled() {
+        return isTimingEnabled;
+    }
+
+    public void setTimingEnabled(boolean timingEnabled) {
+        this.isTimingEnabled = timingEnabled;
+    }
+
+    /**
+     * @return start of a getChange call to hand to recordGetChangeLatency, or 0 if timing is off.
+     */
+    public long startTiming() {
+        return this.isTimingEnabled ? System.nanoTime() : 0;
+    }
+
+    public void recordGetChangeLatency(long startNanos) {
+        if (startNanos != 0) {
+            this.getChangeLatency.recordSince(startNanos);
+        }
+    }
+
+    public LatencyHistogram getGetChangeLatency() {
+        return getChangeLatency;
+    }
+
+    public void countChangeTableBuild() {
+        this.changeTableBuildsCount.increment();
+    }
+
+    public void countInsufficientChange() {
+        this.insufficientChangeCount.increment();
+    }
+
+    public long getChangeTableBuildsCount() {
+        return changeTableBuildsCount.sum();
+    }
+
+    public long getInsufficientChangeCount() {
+        return insufficientChangeCount.sum();
+    }
+}
@@ -0,0 +1,66 @@
+package metrics;
+
+/**
+ * Point-in-time copy of a LatencyHistogram, values are in nanoseconds.
+ */
+public class HistogramSnapshot {
+    private final long[] counts;
+    private final long totalCount;
+    private final long totalValue;
+    private final long maxValue;
+
+    HistogramSnapshot(long[] counts, long totalValue, long maxValue) {
+        long totalCount = 0;
+
+        for (long count : counts) {
+            totalCount += count;
+        }
+
+        this.counts = counts;
+        this.totalCount = totalCount;
+        this.totalValue = totalValue;
+        this.maxValue = maxValue;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return maxValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) totalValue / totalCount;
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g 99.9.
+     * @return the highest value of the bucket holding the percentile, i.e a
+     * value at most about 6% above the recorded one, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * totalCount);
+        long cumulativeCount = 0;
+
+        for (int index = 0; index < counts.length; index++) {
+            cumulativeCount += counts[index];
+
+            if (cumulativeCount >= Math.max(rank, 1)) {
+                return Math.min(LatencyHistogram.highestValueOf(index), maxValue);
+            }
+        }
+
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + totalCount +
+                ", mean=" + Math.round(this.getMean()) +
+                ", p50=" + this.getValueAtPercentile(50) +
+                ", p99=" + this.getValueAtPercentile(99) +
+                ", p99.9=" + this.getValueAtPercentile(99.9) +
+                ", max=" + maxValue;
+    }
+}
@@ -0,0 +1,87 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent latency histogram with HDR-style log-linear buckets: values
+ * below 32 get a bucket each, above that every power of two is split into
+ * 16 equal buckets, so any recorded value is known within about 6% while
+ * the whole range up to HIGHEST_TRACKABLE_VALUE nanoseconds (about 18
+ * minutes) takes 592 buckets. Recording is a bucket index computation and
+ * one atomic increment, no locks and no allocation.
+ */
+public class LatencyHistogram {
+    public static final long HIGHEST_TRACKABLE_VALUE = (1L << 40) - 1;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKETS_HALF_COUNT = SUB_BUCKETS_COUNT >> 1;
+    static final int BUCKETS_COUNT = bucketIndexOf(HIGHEST_TRACKABLE_VALUE) + 1;
+
+    private final AtomicLongArray counts;
+    private final LongAdder totalValue;
+    private final AtomicLong maxValue;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS_COUNT);
+        this.totalValue = new LongAdder();
+        this.maxValue = new AtomicLong();
+    }
+
+    /**
+     * @param value latency in nanoseconds, negative values count as 0 and
+     * values above HIGHEST_TRACKABLE_VALUE as HIGHEST_TRACKABLE_VALUE.
+     */
+    public void record(long value) {
+        long clampedValue = Math.min(Math.max(value, 0), HIGHEST_TRACKABLE_VALUE);
+
+        this.counts.incrementAndGet(bucketIndexOf(clampedValue));
+        this.totalValue.add(clampedValue);
+
+        long maxValue = this.maxValue.get();
+
+        while (clampedValue > maxValue && ! this.maxValue.compareAndSet(maxValue, clampedValue)) {
+            maxValue = this.maxValue.get();
+        }
+    }
+
+    public void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Copies the buckets while values keep being recorded, so a snapshot
+     * may miss or half-include records made during the copy.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] countsCopy = new long[BUCKETS_COUNT];
+
+        for (int index = 0; index < BUCKETS_COUNT; index++) {
+            countsCopy[index] = this.counts.get(index);
+        }
+
+        return new HistogramSnapshot(countsCopy, this.totalValue.sum(), this.maxValue.get());
+    }
+
+    static int bucketIndexOf(long value) {
+        if (value < SUB_BUCKETS_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return exponent * SUB_BUCKETS_HALF_COUNT + (int) (value >>> exponent);
+    }
+
+    static long highestValueOf(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKETS_COUNT) {
+            return bucketIndex;
+        }
+
+        int exponent = bucketIndex / SUB_BUCKETS_HALF_COUNT - 1;
+        long subBucket = bucketIndex - exponent * SUB_BUCKETS_HALF_COUNT;
+
+        return ((subBucket + 1) << exponent) - 1;
+    }
+}
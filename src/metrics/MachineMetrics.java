@@ -0,0 +1,135 @@
+package metrics;
+
+import enumerations.MachineOperation;
+import enumerations.MachineState;
+import enumerations.PurchaseOutcome;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms per MachineOperation and striped counters of purchase
+ * outcomes, refunds and state transitions of one machine. Everything can be
+ * read through snapshot while the machine keeps running.
+ *
+ * Timing can be turned off, which leaves only the counters: callers take
+ * the start with startTiming and hand it back to recordLatency.
+ */
+public class MachineMetrics {
+    private static final MachineOperation[] OPERATIONS = MachineOperation.values();
+    private static final PurchaseOutcome[] OUTCOMES = PurchaseOutcome.values();
+    private static final MachineState[] STATES = MachineState.values();
+
+    private final LatencyHistogram[] latencies;
+    private final LongAdder[] outcomeCounts;
+    private final LongAdder[] stateTransitionCounts;
+    private final LongAdder refundsCount;
+    private final LongAdder refundedInCents;
+    private final LongAdder cardCaptureFailuresCount;
+    private final LongAdder settlementFailuresCount;
+    private volatile boolean isTimingEnabled;
+
+    public MachineMetrics() {
+        this.latencies = new LatencyHistogram[OPERATIONS.length];
+        this.outcomeCounts = new LongAdder[OUTCOMES.length];
+        this.stateTransitionCounts = new LongAdder[STATES.length];
+        this.refundsCount = new LongAdder();
+        this.refundedInCents = new LongAdder();
+        this.cardCaptureFailuresCount = new LongAdder();
+        this.settlementFailuresCount = new LongAdder();
+        this.isTimingEnabled = true;
+
+        for (int index = 0; index < OPERATIONS.length; index++) {
+            this.latencies[index] = new LatencyHistogram();
+        }
+
+        for (int index = 0; index < OUTCOMES.length; index++) {
+            this.outcomeCounts[index] = new LongAdder();
+        }
+
+        for (int index = 0; index < STATES.length; index++) {
+            this.stateTransitionCounts[index] = new LongAdder();
+        }
+    }
+
+    public boolean isTimingEnabled() {
+        return isTimingEnabled;
+    }
+
+    public void setTimingEnabled(boolean timingEnabled) {
+        this.isTimingEnabled = timingEnabled;
+    }
+
+    /**
+     * @return start of an operation to hand to recordLatency, or 0 if timing is off.
+     */
+    public long startTiming() {
+        return this.isTimingEnabled ? System.nanoTime() : 0;
+    }
+
+    public void recordLatency(MachineOperation operation, long startNanos) {
+        if (startNanos != 0) {
+            this.latencies[operation.ordinal()].recordSince(startNanos);
+        }
+    }
+
+    public LatencyHistogram getLatency(MachineOperation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public void countOutcome(PurchaseOutcome outcome) {
+        this.outcomeCounts[outcome.ordinal()].increment();
+    }
+
+    public void countStateTransition(MachineState state) {
+        this.stateTransitionCounts[state.ordinal()].increment();
+    }
+
+    public void countRefund(long amountInCents) {
+        this.refundsCount.increment();
+        this.refundedInCents.add(amountInCents);
+    }
+
+    public void countCardCaptureFailure() {
+        this.cardCaptureFailuresCount.increment();
+    }
+
+    public void countSettlementFailure() {
+        this.settlementFailuresCount.increment();
+    }
+
+    /**
+     * @param changeInventoryMetrics the change inventory's own metrics, exported along.
+     */
+    public MachineMetricsSnapshot snapshot(ChangeInventoryMetrics changeInventoryMetrics) {
+        HistogramSnapshot[] latencySnapshots = new HistogramSnapshot[OPERATIONS.length];
+        long[] outcomeCountsCopy = new long[OUTCOMES.length];
+        long[] stateTransitionCountsCopy = new long[STATES.length];
+
+        for (int index = 0; index < OPERATIONS.length; index++) {
+            // getChange is timed by the change inventory itself, which machines may swap.
+            latencySnapshots[index] = OPERATIONS[index] == MachineOperation.GET_CHANGE ?
+                    changeInventoryMetrics.getGetChangeLatency().snapshot() :
+                    this.latencies[index].snapshot();
+        }
+
+        for (int index = 0; index < OUTCOMES.length; index++) {
+            outcomeCountsCopy[index] = this.outcomeCounts[index].sum();
+        }
+
+        for (int index = 0; index < STATES.length; index++) {
+            stateTransitionCountsCopy[index] = this.stateTransitionCounts[index].sum();
+        }
+
+        return new MachineMetricsSnapshot(
+                latencySnapshots,
+                outcomeCountsCopy,
+                stateTransitionCountsCopy,
+                this.refundsCount.sum(),
+                this.refundedInCents.sum(),
+                this.cardCaptureFailuresCount.sum(),
+                this.settlementFailuresCount.sum(),
+                changeInventoryMetrics.getChangeTableBuildsCount(),
+                changeInventoryMetrics.getInsufficientChangeCount()
+        );
+    }
+}
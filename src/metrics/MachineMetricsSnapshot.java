@@ -0,0 +1,90 @@
+package metrics;
+
+import enumerations.MachineOperation;
+import enumerations.MachineState;
+import enumerations.PurchaseOutcome;
+
+/**
+ * Values of a machine's metrics at the time the snapshot was taken.
+ */
+public class MachineMetricsSnapshot {
+    private final HistogramSnapshot[] latencies;
+    private final long[] outcomeCounts;
+    private final long[] stateTransitionCounts;
+    private final long refundsCount;
+    private final long refundedInCents;
+    private final long cardCaptureFailuresCount;
+    private final long settlementFailuresCount;
+    private final long changeTableBuildsCount;
+    private final long insufficientChangeCount;
+
+    MachineMetricsSnapshot(
+            HistogramSnapshot[] latencies,
+            long[] outcomeCounts,
+            long[] stateTransitionCounts,
+            long refundsCount,
+            long refundedInCents,
+            long cardCaptureFailuresCount,
+            long settlementFailuresCount,
+            long changeTableBuildsCount,
+            long insufficientChangeCount
+    ) {
+        this.latencies = latencies;
+        this.outcomeCounts = outcomeCounts;
+        this.stateTransitionCounts = stateTransitionCounts;
+        this.refundsCount = refundsCount;
+        this.refundedInCents = refundedInCents;
+        this.cardCaptureFailuresCount = cardCaptureFailuresCount;
+        this.settlementFailuresCount = settlementFailuresCount;
+        this.changeTableBuildsCount = changeTableBuildsCount;
+        this.insufficientChangeCount = insufficientChangeCount;
+    }
+
+    public HistogramSnapshot getLatency(MachineOperation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getOutcomeCount(PurchaseOutcome outcome) {
+        return outcomeCounts[outcome.ordinal()];
+    }
+
+    /**
+     * @return count of times the machine entered the state.
+     */
+    public long getStateTransitionCount(MachineState state) {
+        return stateTransitionCounts[state.ordinal()];
+    }
+
+    public long getRefundsCount() {
+        return refundsCount;
+    }
+
+    public long getRefundedInCents() {
+        return refundedInCents;
+    }
+
+    /**
+     * @return count of card captures the processor failed, the item was put back if it had not been handed out yet.
+     */
+    public long getCardCaptureFailuresCount() {
+        return cardCaptureFailuresCount;
+    }
+
+    /**
+     * @return count of captured card payments the settlement queue could not take, e.g its file could not be written.
+     */
+    public long getSettlementFailuresCount() {
+        return settlementFailuresCount;
+    }
+
+    public long getChangeTableBuildsCount() {
+        return changeTableBuildsCount;
+    }
+
+    /**
+     * @return count of change computations that failed, including the ones a purchase recovered from by refunding.
+     */
+    public long getInsufficientChangeCount() {
+        return insufficientChangeCount;
+    }
+}
@@ -0,0 +1,71 @@
+package payment;
+
+import enumerations.Card;
+import enumerations.CardAuthorizationStatus;
+
+/**
+ * A processor's answer to a request for a hold of an amount on a card.
+ */
+public final class CardAuthorization {
+    private final long id;
+    private final Card card;
+    private final long amountInCents;
+    private final CardAuthorizationStatus status;
+
+    public CardAuthorization(long id, Card card, long amountInCents, CardAuthorizationStatus status) {
+        this.id = id;
+        this.card = card;
+        this.amountInCents = amountInCents;
+        this.status = status;
+    }
+
+    public static CardAuthorization declined(Card card, long amountInCents) {
+        return new CardAuthorization(0, card, amountInCents, CardAuthorizationStatus.DECLINED);
+    }
+
+    public static CardAuthorization timedOut(Card card, long amountInCents) {
+        return new CardAuthorization(0, card, amountInCents, CardAuthorizationStatus.TIMED_OUT);
+    }
+
+    /**
+     * @return the processor's id of the hold, 0 if it was not approved.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public Card getCard() {
+        return card;
+    }
+
+    /**
+     * @return the amount held on the card, i.e the most that can be captured.
+     */
+    public long getAmountInCents() {
+        return amountInCents;
+    }
+
+    public CardAuthorizationStatus getStatus() {
+        return status;
+    }
+
+    public boolean isApproved() {
+        return status == CardAuthorizationStatus.APPROVED;
+    }
+
+    /**
+     * @return true if the authorization was approved for at least the amount.
+     */
+    public boolean covers(long amountInCents) {
+        return this.isApproved() && this.amountInCents >= amountInCents;
+    }
+
+    @Override
+    public String toString() {
+        return "CardAuthorization{" +
+                "id=" + id +
+                ", amountInCents=" + amountInCents +
+                ", status=" + status +
+                '}';
+    }
+}
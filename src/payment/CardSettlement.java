@@ -0,0 +1,62 @@
+package payment;
+
+/**
+ * A captured card payment waiting to be settled with the acquirer. Its
+ * idempotency key is unique per terminal and stays the same however many
+ * times the settlement is sent, so a resend after a lost answer is never
+ * settled twice.
+ */
+public final class CardSettlement {
+    private final String terminalId;
+    private final long sequence;
+    private final long authorizationId;
+    private final long amountInCents;
+    private final long capturedAtMillis;
+
+    public CardSettlement(String terminalId, long sequence, long authorizationId, long amountInCents, long capturedAtMillis) {
+        this.terminalId = terminalId;
+        this.sequence = sequence;
+        this.authorizationId = authorizationId;
+        this.amountInCents = amountInCents;
+        this.capturedAtMillis = capturedAtMillis;
+    }
+
+    /**
+     * @return the terminal's id and the settlement's sequence number, e.g "VM-042:1187".
+     */
+    public String getIdempotencyKey() {
+        return terminalId + ':' + sequence;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    /**
+     * @return position of the settlement among the terminal's captures, from 1.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getAuthorizationId() {
+        return authorizationId;
+    }
+
+    public long getAmountInCents() {
+        return amountInCents;
+    }
+
+    public long getCapturedAtMillis() {
+        return capturedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CardSettlement{" +
+                "idempotencyKey='" + this.getIdempotencyKey() + '\'' +
+                ", authorizationId=" + authorizationId +
+                ", amountInCents=" + amountInCents +
+                '}';
+    }
+}
@@ -0,0 +1,551 @@
+package payment;
+
+import interfaces.SettlementSink;
+import metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durable local queue of a terminal's captured card payments, settled with
+ * a SettlementSink in batches off the selling threads: a batch is sent once
+ * batchSize settlements are waiting or the oldest one has waited for
+ * maxBatchDelayMillis. A failed batch is retried after an exponential
+ * backoff until the sink takes it, batches are sent one at a time and in
+ * capture order.
+ *
+ * Every settlement is appended to the queue file and forced to disk before
+ * enqueue returns. The header holds the position up to which settlements
+ * were acknowledged, moved once a batch is settled, so a terminal restarted
+ * in between sends that batch again under the same idempotency keys. Only
+ * the next maxInFlightCount settlements are held in memory, the others are
+ * read back from the file as batches are acknowledged, so a long outage
+ * costs disk, not heap. The file is cut back to its header whenever
+ * everything was settled and it has grown past a megabyte.
+ *
+ * File layout, all numbers big-endian:
+ * header (32 bytes): magic, format version (ints at 0, 4), settled position
+ * and last sequence (longs at 8, 16), then records of 40 bytes each:
+ * sequence, authorization id, amount, capture time (longs) and checksum (int).
+ */
+public class CardSettlementQueue implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 30_000;
+    public static final int DEFAULT_MAX_IN_FLIGHT_COUNT = 1_000;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 300_000;
+
+    private static final int MAGIC = 0x534E5351;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 40;
+    private static final long COMPACTION_THRESHOLD_IN_BYTES = 1 << 20;
+    private static final long MAX_TICK_MILLIS = 1_000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int FORMAT_VERSION_OFFSET = 4;
+    private static final int SETTLED_POSITION_OFFSET = 8;
+    private static final int LAST_SEQUENCE_OFFSET = 16;
+
+    private final Path path;
+    private final String terminalId;
+    private final SettlementSink sink;
+    private final int batchSize;
+    private final long maxBatchDelayMillis;
+    private final int maxInFlightCount;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final FileChannel channel;
+    private final ScheduledExecutorService executor;
+    private final ArrayDeque<CardSettlement> window;
+    private final ByteBuffer recordBuffer;
+    private final ByteBuffer headerBuffer;
+
+    private final LatencyHistogram batchLatency;
+    private final LongAdder settledBatchesCount;
+    private final LongAdder settledCount;
+    private final LongAdder failedAttemptsCount;
+    private final long startedAtNanos;
+
+    private long settledPosition;
+    private long loadedPosition;
+    private long writePosition;
+    private long lastSequence;
+    private boolean isClosed;
+
+    // Only used by the executor's thread.
+    private int failedAttemptsInARow;
+    private long nextAttemptAtMillis;
+
+    public CardSettlementQueue(Path path, String terminalId, SettlementSink sink) throws IOException {
+        this(
+                path,
+                terminalId,
+                sink,
+                DEFAULT_BATCH_SIZE,
+                DEFAULT_MAX_BATCH_DELAY_MILLIS,
+                DEFAULT_MAX_IN_FLIGHT_COUNT,
+                DEFAULT_INITIAL_BACKOFF_MILLIS,
+                DEFAULT_MAX_BACKOFF_MILLIS
+        );
+    }
+
+    /**
+     * Opens the queue file, creating it if needed, and resumes settling what
+     * it holds past the acknowledged position. A torn record at the end, e.g
+     * from a power cut during an append, is dropped.
+     *
+     * @param terminalId id of the terminal, the prefix of every idempotency key.
+     * @param batchSize most settlements sent in one batch, at most maxInFlightCount.
+     * @param maxBatchDelayMillis longest a settlement waits for its batch to fill up.
+     * @param maxInFlightCount most settlements held in memory.
+     * @param initialBackoffMillis wait before retrying a failed batch, doubled on every failure in a row.
+     * @param maxBackoffMillis longest wait between two attempts.
+     * @throws IllegalStateException if the file is not a settlement queue.
+     */
+    public CardSettlementQueue(
+            Path path,
+            String terminalId,
+            SettlementSink sink,
+            int batchSize,
+            long maxBatchDelayMillis,
+            int maxInFlightCount,
+            long initialBackoffMillis,
+            long maxBackoffMillis
+    ) throws IOException {
+        if (batchSize < 1 || batchSize > maxInFlightCount) {
+            throw new IllegalArgumentException("Batch size must be within 1 and " + maxInFlightCount + ": " + batchSize);
+        }
+
+        this.path = path;
+        this.terminalId = terminalId;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+        this.maxInFlightCount = maxInFlightCount;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.window = new ArrayDeque<>();
+        this.recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+        this.headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+        this.batchLatency = new LatencyHistogram();
+        this.settledBatchesCount = new LongAdder();
+        this.settledCount = new LongAdder();
+        this.failedAttemptsCount = new LongAdder();
+        this.startedAtNanos = System.nanoTime();
+        this.channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+
+        if (this.channel.size() == 0) {
+            this.settledPosition = HEADER_SIZE;
+            this.writeHeader();
+            this.writePosition = HEADER_SIZE;
+        } else {
+            this.recover();
+        }
+
+        this.loadedPosition = this.settledPosition;
+        this.refillWindow();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-settlement");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long tickMillis = Math.max(1, Math.min(maxBatchDelayMillis, MAX_TICK_MILLIS));
+        this.executor.scheduleWithFixedDelay(this::settleDueBatches, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    /**
+     * Appends the captured payment to the queue and forces it to disk.
+     *
+     * @return the settlement, with its idempotency key.
+     * @throws UncheckedIOException if the settlement could not be written.
+     */
+    public synchronized CardSettlement enqueue(CardAuthorization authorization, long amountInCents) {
+        this.ensureOpen();
+
+        CardSettlement settlement = new CardSettlement(
+                this.terminalId,
+                this.lastSequence + 1,
+                authorization.getId(),
+                amountInCents,
+                System.currentTimeMillis()
+        );
+
+        try {
+            this.writeRecord(settlement, this.writePosition);
+            this.channel.force(false);
+        } catch (IOException writingException) {
+            throw new UncheckedIOException("Could not queue " + settlement, writingException);
+        }
+
+        this.lastSequence++;
+        this.writePosition += RECORD_SIZE;
+
+        if (this.loadedPosition + RECORD_SIZE == this.writePosition && this.window.size() < this.maxInFlightCount) {
+            this.window.add(settlement);
+            this.loadedPosition = this.writePosition;
+        }
+
+        if (this.getQueueDepth() >= this.batchSize) {
+            this.executor.execute(this::settleDueBatches);
+        }
+
+        return settlement;
+    }
+
+    /**
+     * Sends every queued settlement now, batch after batch, regardless of
+     * the batch triggers and of any backoff, and waits until it is done.
+     *
+     * @return true if the queue was emptied, false if a batch failed.
+     */
+    public boolean flush() {
+        Future<Boolean> flushed = this.executor.submit(() -> {
+            List<CardSettlement> batch;
+
+            while ((batch = this.takeBatch(true)) != null) {
+                if (! this.settle(batch)) {
+                    return false;
+                }
+            }
+
+            return true;
+        });
+
+        try {
+            return flushed.get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException executionException) {
+            throw new IllegalStateException("Settlement failed", executionException.getCause());
+        }
+    }
+
+    /**
+     * @return count of settlements queued and not acknowledged by the sink yet, in memory or on disk.
+     */
+    public synchronized long getQueueDepth() {
+        return (this.writePosition - this.settledPosition) / RECORD_SIZE;
+    }
+
+    /**
+     * @return count of settlements held in memory, at most maxInFlightCount.
+     */
+    public synchronized int getInFlightCount() {
+        return this.window.size();
+    }
+
+    /**
+     * @return latency of the sink's settle calls that succeeded.
+     */
+    public LatencyHistogram getBatchLatency() {
+        return batchLatency;
+    }
+
+    public long getSettledBatchesCount() {
+        return this.settledBatchesCount.sum();
+    }
+
+    public long getSettledCount() {
+        return this.settledCount.sum();
+    }
+
+    public long getFailedAttemptsCount() {
+        return this.failedAttemptsCount.sum();
+    }
+
+    /**
+     * @return settlements acknowledged per second since the queue was opened.
+     */
+    public double getThroughputPerSecond() {
+        double elapsedSeconds = (System.nanoTime() - this.startedAtNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        return elapsedSeconds == 0 ? 0 : this.getSettledCount() / elapsedSeconds;
+    }
+
+    /**
+     * Stops settling, waiting for a batch being sent, and closes the file.
+     * Whatever is left is settled once the queue is opened again.
+     */
+    @Override
+    public void close() throws IOException {
+        this.executor.shutdown();
+
+        try {
+            this.executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            this.isClosed = true;
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Runs periodically, so it never throws: an exception would cancel the
+     * task and the queue would stop settling until the terminal restarts.
+     * A batch that could not be acknowledged is retried after a backoff.
+     */
+    private void settleDueBatches() {
+        List<CardSettlement> batch;
+
+        try {
+            while ((batch = this.takeBatch(false)) != null) {
+                if (! this.settle(batch)) {
+                    return;
+                }
+            }
+        } catch (UncheckedIOException acknowledgingException) {
+            this.backOff();
+        }
+    }
+
+    /**
+     * @param isForced whether to take a batch even if it is not due or a retry is backing off.
+     * @return the next settlements to send, or null if there are none or they are not due.
+     */
+    private synchronized List<CardSettlement> takeBatch(boolean isForced) {
+        if (this.isClosed || this.window.isEmpty()) {
+            return null;
+        }
+
+        long nowMillis = System.currentTimeMillis();
+        boolean isDue = this.getQueueDepth() >= this.batchSize
+                || nowMillis - this.window.peekFirst().getCapturedAtMillis() >= this.maxBatchDelayMillis;
+
+        if (! isForced && (! isDue || nowMillis < this.nextAttemptAtMillis)) {
+            return null;
+        }
+
+        List<CardSettlement> batch = new ArrayList<>(Math.min(this.batchSize, this.window.size()));
+        Iterator<CardSettlement> settlements = this.window.iterator();
+
+        while (batch.size() < this.batchSize && settlements.hasNext()) {
+            batch.add(settlements.next());
+        }
+
+        return batch;
+    }
+
+    /**
+     * Sends the batch outside of the queue's lock, so capturing never waits on the network.
+     *
+     * @return true if the sink took the batch.
+     */
+    private boolean settle(List<CardSettlement> batch) {
+        long startNanos = System.nanoTime();
+
+        try {
+            this.sink.settle(Collections.unmodifiableList(batch));
+        } catch (IOException | RuntimeException settlementException) {
+            this.backOff();
+            return false;
+        }
+
+        this.batchLatency.recordSince(startNanos);
+        this.failedAttemptsInARow = 0;
+        this.nextAttemptAtMillis = 0;
+        return this.acknowledge(batch.size());
+    }
+
+    private void backOff() {
+        long backoffMillis = this.initialBackoffMillis << Math.min(this.failedAttemptsInARow, 20);
+
+        this.failedAttemptsInARow++;
+        this.nextAttemptAtMillis = System.currentTimeMillis() + Math.min(backoffMillis, this.maxBackoffMillis);
+        this.failedAttemptsCount.increment();
+    }
+
+    /**
+     * Moves the settled position past the batch, on disk first, then lets
+     * the next settlements into the window.
+     *
+     * @return false if the queue was closed meanwhile, the batch is then sent again on reopening.
+     * @throws UncheckedIOException if the header could not be written, the batch is then sent again.
+     */
+    private synchronized boolean acknowledge(int settledCount) {
+        if (this.isClosed) {
+            return false;
+        }
+
+        long previousSettledPosition = this.settledPosition;
+
+        try {
+            this.settledPosition += (long) settledCount * RECORD_SIZE;
+            this.writeHeader();
+        } catch (IOException acknowledgingException) {
+            this.settledPosition = previousSettledPosition;
+            throw new UncheckedIOException("Could not acknowledge settlements in " + this.path, acknowledgingException);
+        }
+
+        for (int index = 0; index < settledCount; index++) {
+            this.window.pollFirst();
+        }
+
+        this.settledBatchesCount.increment();
+        this.settledCount.add(settledCount);
+
+        try {
+            if (this.settledPosition == this.writePosition && this.writePosition >= COMPACTION_THRESHOLD_IN_BYTES) {
+                this.channel.truncate(HEADER_SIZE);
+                this.settledPosition = HEADER_SIZE;
+                this.writePosition = HEADER_SIZE;
+                this.loadedPosition = HEADER_SIZE;
+                this.writeHeader();
+            }
+
+            this.refillWindow();
+        } catch (IOException compactingException) {
+            throw new UncheckedIOException("Could not compact or read back settlements in " + this.path, compactingException);
+        }
+
+        return true;
+    }
+
+    private void refillWindow() throws IOException {
+        while (this.window.size() < this.maxInFlightCount && this.loadedPosition < this.writePosition) {
+            this.window.add(this.readRecord(this.loadedPosition));
+            this.loadedPosition += RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Reads the header and finds the end of the records, i.e the first one
+     * that is torn or out of sequence, and cuts the file there.
+     */
+    private void recover() throws IOException {
+        this.headerBuffer.clear();
+        this.channel.read(this.headerBuffer, 0);
+
+        if (this.headerBuffer.getInt(MAGIC_OFFSET) != MAGIC || this.headerBuffer.getInt(FORMAT_VERSION_OFFSET) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not a card settlement queue: " + this.path);
+        }
+
+        this.settledPosition = this.headerBuffer.getLong(SETTLED_POSITION_OFFSET);
+        this.lastSequence = this.headerBuffer.getLong(LAST_SEQUENCE_OFFSET);
+
+        if (this.settledPosition > this.channel.size()) {
+            // Cut while compacting, before the header was rewritten. A file
+            // settled up to its end without being compacted is left as it is.
+            this.settledPosition = HEADER_SIZE;
+        }
+
+        long position = this.settledPosition;
+        long fileSize = this.channel.size();
+
+        while (position + RECORD_SIZE <= fileSize) {
+            this.recordBuffer.clear();
+            this.channel.read(this.recordBuffer, position);
+
+            long sequence = this.recordBuffer.getLong(0);
+
+            if (this.recordBuffer.getInt(32) != checksumOf(this.recordBuffer) || (position > this.settledPosition && sequence != this.lastSequence + 1)) {
+                break;
+            }
+
+            this.lastSequence = sequence;
+            position += RECORD_SIZE;
+        }
+
+        this.writePosition = position;
+        this.channel.truncate(position);
+        this.writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        this.headerBuffer.clear();
+        this.headerBuffer.putInt(MAGIC_OFFSET, MAGIC);
+        this.headerBuffer.putInt(FORMAT_VERSION_OFFSET, FORMAT_VERSION);
+        this.headerBuffer.putLong(SETTLED_POSITION_OFFSET, this.settledPosition);
+        this.headerBuffer.putLong(LAST_SEQUENCE_OFFSET, this.lastSequence);
+
+        while (this.headerBuffer.hasRemaining()) {
+            this.channel.write(this.headerBuffer, this.headerBuffer.position());
+        }
+
+        this.channel.force(false);
+    }
+
+    private void writeRecord(CardSettlement settlement, long position) throws IOException {
+        this.recordBuffer.clear();
+        this.recordBuffer.putLong(settlement.getSequence());
+        this.recordBuffer.putLong(settlement.getAuthorizationId());
+        this.recordBuffer.putLong(settlement.getAmountInCents());
+        this.recordBuffer.putLong(settlement.getCapturedAtMillis());
+        this.recordBuffer.putInt(checksumOf(this.recordBuffer));
+        this.recordBuffer.putInt(0);
+        this.recordBuffer.flip();
+
+        while (this.recordBuffer.hasRemaining()) {
+            this.channel.write(this.recordBuffer, position + this.recordBuffer.position());
+        }
+    }
+
+    private CardSettlement readRecord(long position) throws IOException {
+        this.recordBuffer.clear();
+
+        while (this.recordBuffer.hasRemaining() && this.channel.read(this.recordBuffer, position + this.recordBuffer.position()) >= 0) {
+            // Reads until the record is complete.
+        }
+
+        return new CardSettlement(
+                this.terminalId,
+                this.recordBuffer.getLong(0),
+                this.recordBuffer.getLong(8),
+                this.recordBuffer.getLong(16),
+                this.recordBuffer.getLong(24)
+        );
+    }
+
+    private void ensureOpen() {
+        if (this.isClosed) {
+            throw new IllegalStateException("Settlement queue is closed: " + this.path);
+        }
+    }
+
+    /**
+     * @return checksum of the record's four longs, as laid out in the buffer.
+     */
+    private static int checksumOf(ByteBuffer record) {
+        long hash = record.getLong(0) * 0x9E3779B97F4A7C15L;
+
+        hash = (hash ^ record.getLong(8)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ record.getLong(16)) * 0x94D049BB133111EBL;
+        hash = (hash ^ record.getLong(24)) * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash ^ (hash >>> 31));
+    }
+}
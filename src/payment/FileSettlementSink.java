@@ -0,0 +1,116 @@
+package payment;
+
+import interfaces.SettlementSink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Local stand-in for an acquirer, to run settlement offline: settled
+ * payments are appended to a text file, one "idempotencyKey,authorizationId,
+ * amountInCents" line each, and a payment whose key is already in the file
+ * is acknowledged without being written again. A configured share of the
+ * batches fails at random, as if the acquirer could not be reached.
+ */
+public class FileSettlementSink implements SettlementSink {
+    private final Path path;
+    private final double failureRate;
+    private final Random random;
+    private final Set<String> settledKeys;
+    private long settledAmountInCents;
+    private long duplicatesCount;
+
+    public FileSettlementSink(Path path) throws IOException {
+        this(path, 0, new Random());
+    }
+
+    /**
+     * Reads back the keys already settled in the file, if it exists.
+     *
+     * @param failureRate share of the batches failed at random, from 0 to 1.
+     * @param random source of the failures, seeded for reproducible runs.
+     */
+    public FileSettlementSink(Path path, double failureRate, Random random) throws IOException {
+        this.path = path;
+        this.failureRate = failureRate;
+        this.random = random;
+        this.settledKeys = new HashSet<>();
+
+        if (Files.exists(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(",");
+
+                if (fields.length == 3 && this.settledKeys.add(fields[0])) {
+                    this.settledAmountInCents += Long.parseLong(fields[2]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void settle(List<CardSettlement> batch) throws IOException {
+        if (this.random.nextDouble() < this.failureRate) {
+            throw new IOException("Acquirer is unreachable: " + this.path);
+        }
+
+        StringBuilder lines = new StringBuilder();
+        Set<String> batchKeys = new HashSet<>();
+        long batchAmountInCents = 0;
+        int batchDuplicatesCount = 0;
+
+        for (CardSettlement settlement : batch) {
+            String idempotencyKey = settlement.getIdempotencyKey();
+
+            if (this.settledKeys.contains(idempotencyKey) || ! batchKeys.add(idempotencyKey)) {
+                batchDuplicatesCount++;
+                continue;
+            }
+
+            lines.append(idempotencyKey).append(',')
+                    .append(settlement.getAuthorizationId()).append(',')
+                    .append(settlement.getAmountInCents()).append('\n');
+            batchAmountInCents += settlement.getAmountInCents();
+        }
+
+        Files.write(
+                this.path,
+                lines.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND,
+                StandardOpenOption.SYNC
+        );
+
+        this.settledKeys.addAll(batchKeys);
+        this.settledAmountInCents += batchAmountInCents;
+        this.duplicatesCount += batchDuplicatesCount;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return count of distinct payments settled, including those read back from the file.
+     */
+    public synchronized int getSettledCount() {
+        return this.settledKeys.size();
+    }
+
+    public synchronized long getSettledAmountInCents() {
+        return settledAmountInCents;
+    }
+
+    /**
+     * @return count of payments sent again after they were settled, and acknowledged without settling them.
+     */
+    public synchronized long getDuplicatesCount() {
+        return duplicatesCount;
+    }
+}
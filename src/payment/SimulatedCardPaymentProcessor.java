@@ -0,0 +1,133 @@
+package payment;
+
+import enumerations.Card;
+import enumerations.CardAuthorizationStatus;
+import interfaces.CardPaymentProcessor;
+import utils.Money;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for a payment network, for simulations and tests:
+ * answers after a random latency within the configured bounds, declines a
+ * configured share of the requests at random, and declines any hold the
+ * card's balance (less the holds already on it) does not cover. Captures
+ * take the amount off the card's balance straight away.
+ *
+ * Answers are sent from a shared daemon thread.
+ */
+public class SimulatedCardPaymentProcessor implements CardPaymentProcessor {
+    public static final long DEFAULT_MIN_LATENCY_MILLIS = 20;
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 80;
+
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double declineRate;
+    private final Random random;
+    private final Map<String, Long> heldInCentsByCardNumber;
+    private final Map<Long, Long> heldInCentsByAuthorizationId;
+    private long lastAuthorizationId;
+
+    public SimulatedCardPaymentProcessor() {
+        this(DEFAULT_MIN_LATENCY_MILLIS, DEFAULT_MAX_LATENCY_MILLIS, 0, new Random());
+    }
+
+    /**
+     * @param declineRate share of the requests declined regardless of the balance, from 0 to 1.
+     * @param random source of the latencies and random declines, seeded for reproducible runs.
+     */
+    public SimulatedCardPaymentProcessor(long minLatencyMillis, long maxLatencyMillis, double declineRate, Random random) {
+        if (minLatencyMillis < 0 || maxLatencyMillis < minLatencyMillis) {
+            throw new IllegalArgumentException("Latency bounds must satisfy 0 <= min <= max: " + minLatencyMillis + ", " + maxLatencyMillis);
+        }
+
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.declineRate = declineRate;
+        this.random = random;
+        this.heldInCentsByCardNumber = new HashMap<>();
+        this.heldInCentsByAuthorizationId = new HashMap<>();
+    }
+
+    @Override
+    public CompletableFuture<CardAuthorization> authorize(Card card, long amountInCents) {
+        CompletableFuture<CardAuthorization> authorization = new CompletableFuture<>();
+
+        SharedSchedulerHolder.SHARED_SCHEDULER.schedule(
+                () -> authorization.complete(this.decide(card, amountInCents)),
+                this.nextLatencyMillis(),
+                TimeUnit.MILLISECONDS
+        );
+
+        return authorization;
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> capture(CardAuthorization authorization, long amountInCents) {
+        if (amountInCents > authorization.getAmountInCents() || ! this.dropHold(authorization)) {
+            throw new IllegalArgumentException("Cannot capture " + amountInCents + " cents of " + authorization);
+        }
+
+        Card card = authorization.getCard();
+        card.setBalance((card.getWorthInCents() - amountInCents) / (double) Money.CENTS_PER_DOLLAR);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public synchronized void release(CardAuthorization authorization) {
+        this.dropHold(authorization);
+    }
+
+    /**
+     * @return the amount held on the card by approved authorizations neither captured nor released yet.
+     */
+    public synchronized long getHeldInCents(Card card) {
+        return this.heldInCentsByCardNumber.getOrDefault(card.getNumber(), 0L);
+    }
+
+    private synchronized CardAuthorization decide(Card card, long amountInCents) {
+        long heldInCents = this.getHeldInCents(card);
+
+        if (this.random.nextDouble() < this.declineRate || card.getWorthInCents() - heldInCents < amountInCents) {
+            return CardAuthorization.declined(card, amountInCents);
+        }
+
+        long authorizationId = ++this.lastAuthorizationId;
+
+        this.heldInCentsByCardNumber.put(card.getNumber(), heldInCents + amountInCents);
+        this.heldInCentsByAuthorizationId.put(authorizationId, amountInCents);
+        return new CardAuthorization(authorizationId, card, amountInCents, CardAuthorizationStatus.APPROVED);
+    }
+
+    /**
+     * @return false if the authorization holds nothing, e.g it was already captured.
+     */
+    private boolean dropHold(CardAuthorization authorization) {
+        Long heldInCents = this.heldInCentsByAuthorizationId.remove(authorization.getId());
+
+        if (heldInCents == null) {
+            return false;
+        }
+
+        this.heldInCentsByCardNumber.merge(authorization.getCard().getNumber(), -heldInCents, Long::sum);
+        return true;
+    }
+
+    private synchronized long nextLatencyMillis() {
+        return this.minLatencyMillis + (long) (this.random.nextDouble() * (this.maxLatencyMillis - this.minLatencyMillis));
+    }
+
+    private static final class SharedSchedulerHolder {
+        private static final ScheduledExecutorService SHARED_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-payment-processor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
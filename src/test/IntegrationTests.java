@@ -1,7 +1,18 @@
 package test;
 
 import components.*;
+import core.MachineSnapshotFile;
+import core.PurchaseOrder;
+import core.PurchaseReceipt;
+import core.PurchaseResultBatch;
 import core.SnackVendingMachine;
+import core.VendingSession;
+import fleet.FleetRuntime;
+import journal.MappedMachineJournal;
+import payment.CardAuthorization;
+import payment.CardSettlementQueue;
+import payment.FileSettlementSink;
+import payment.SimulatedCardPaymentProcessor;
 import enumerations.*;
 import exception.ItemNotFullyPaidException;
 import exception.SnackSoldOutException;
@@ -11,9 +22,18 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import utils.Pair;
 import interfaces.Payable;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Author's Note:
@@ -46,7 +66,10 @@ public class IntegrationTests {
     @Test(expected = SnackSoldOutException.class)
     public void Should_ThrowSnackSoldOutException_When_SelectingOutOfStockItem() {
         snackVendingMachine.getDisplayScreen().clear();
-        snackVendingMachine.getSnackSlots()[1][0].setQuantity(0); // Snack Slot Selection = B1
+        // Snack Slot Selection = B1, ALL DONUTS (ROW B) SOLD OUT SO THERE IS NO OTHER SLOT TO REDIRECT TO
+        for (SnackSlot donutsSnackSlot : snackVendingMachine.getSnackSlots()[1]) {
+            donutsSnackSlot.setQuantity(0);
+        }
 
         int rowIndex = snackVendingMachine.getKeypad().pressButton(Button.B);
         int colIndex = snackVendingMachine.getKeypad().pressButton(Button.DIGIT_ONE);
@@ -85,6 +108,7 @@ public class IntegrationTests {
     public void Should_RefundAccumulatedMoneyAsChange_When_CustomerCancelsRequest() {
         snackVendingMachine.getChangeInventory().clear();
         snackVendingMachine.setAccumulatedMoney(BigDecimal.valueOf(0));
+        long refundingCount = snackVendingMachine.getMetricsSnapshot().getStateTransitionCount(MachineState.REFUNDING_CUSTOMER_MONEY);
 
         snackVendingMachine.insertMoney(snackVendingMachine.getCoinSlot(), Coin.TEN_CENTS);
         snackVendingMachine.insertMoney(snackVendingMachine.getCoinSlot(), Coin.FIFTY_CENTS);
@@ -94,7 +118,8 @@ public class IntegrationTests {
         BigDecimal totalRefundedAmount = calculateTotalChangeAmount(snackVendingMachine.cancelRequestAndRefundCustomer());
 
         Assert.assertEquals(0, totalRefundedAmount.compareTo(tempAccumulatedMoney));
-        Assert.assertEquals(MachineState.REFUNDING_CUSTOMER_MONEY.getDescription(), snackVendingMachine.getCurrentlyOperatingState().getDescription());
+        Assert.assertEquals(refundingCount + 1, snackVendingMachine.getMetricsSnapshot().getStateTransitionCount(MachineState.REFUNDING_CUSTOMER_MONEY));
+        Assert.assertEquals(MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY.getDescription(), snackVendingMachine.getCurrentlyOperatingState().getDescription());
     }
 
     @Test
@@ -102,6 +127,7 @@ public class IntegrationTests {
         // RESET TO ISOLATE TESTS
         snackVendingMachine.getChangeInventory().clear();
         snackVendingMachine.setAccumulatedMoney(BigDecimal.valueOf(0));
+        long refundingCount = snackVendingMachine.getMetricsSnapshot().getStateTransitionCount(MachineState.REFUNDING_CUSTOMER_MONEY);
 
         snackVendingMachine.getChangeInventory().add(Coin.TEN_CENTS, 3);
         snackVendingMachine.getChangeInventory().add(Coin.ONE_DOLLAR, 15);
@@ -122,7 +148,8 @@ public class IntegrationTests {
 
         Assert.assertNull(result.getFirst());
         Assert.assertEquals(0, totalRefundedAmount.compareTo(tempAccumulatedMoney));
-        Assert.assertEquals(MachineState.REFUNDING_CUSTOMER_MONEY.getDescription(), snackVendingMachine.getCurrentlyOperatingState().getDescription());
+        Assert.assertEquals(refundingCount + 1, snackVendingMachine.getMetricsSnapshot().getStateTransitionCount(MachineState.REFUNDING_CUSTOMER_MONEY));
+        Assert.assertEquals(MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY.getDescription(), snackVendingMachine.getCurrentlyOperatingState().getDescription());
     }
 
     @Test
@@ -190,6 +217,431 @@ public class IntegrationTests {
         Assert.assertEquals(dispensedSnackItem.getPrice(), snackVendingMachine.getSalesTotal());
     }
 
+    @Test
+    public void Should_RedirectSelectionToAnotherSlot_When_SelectedSlotIsSoldOutButItemIsNot() {
+        // D1 -> [3][0] -> OATS_BAR, D2..D5 STILL HOLD ONE OATS_BAR EACH
+        snackVendingMachine.getSnackSlots()[3][0].setQuantity(0);
+        snackVendingMachine.getDisplayScreen().clear();
+
+        int rowIndex = snackVendingMachine.getKeypad().pressButton(Button.D);
+        int colIndex = snackVendingMachine.getKeypad().pressButton(Button.DIGIT_ONE);
+        snackVendingMachine.getKeypad().pressButton(Button.CONFIRM);
+        SnackItem selectedSnackItem = snackVendingMachine.processRequestAndReturnSelectedSnackItem(
+                snackVendingMachine.getSnackSlots()[rowIndex][colIndex]
+        );
+
+        Assert.assertEquals(SnackItem.OATS_BAR, selectedSnackItem);
+        Assert.assertTrue(snackVendingMachine.getCurrentlySelectedSnackSlot().getQuantity() > 0);
+        Assert.assertEquals(4, snackVendingMachine.getSnackItemStock(SnackItem.OATS_BAR));
+        Assert.assertTrue(snackVendingMachine.isSnackItemAvailable(SnackItem.OATS_BAR));
+    }
+
+    @Test
+    public void Should_KeepCustomersApart_When_ServingTwoSessionsOnTheSameMachine() {
+        VendingSession firstSession = snackVendingMachine.openSession();
+        VendingSession secondSession = snackVendingMachine.openSession();
+        snackVendingMachine.getChangeInventory().putPayableWithCount(Coin.FIFTY_CENTS, 10);
+
+        // A1, A2 -> [0][0], [0][1] -> BAGEL = 1.5
+        snackVendingMachine.insertMoney(firstSession, snackVendingMachine.getCoinSlot(), Coin.ONE_DOLLAR);
+        snackVendingMachine.insertMoney(secondSession, snackVendingMachine.getCoinSlot(), Coin.ONE_DOLLAR);
+        snackVendingMachine.insertMoney(secondSession, snackVendingMachine.getCoinSlot(), Coin.ONE_DOLLAR);
+
+        Assert.assertEquals(100, firstSession.getAccumulatedMoneyInCents());
+        Assert.assertEquals(200, secondSession.getAccumulatedMoneyInCents());
+
+        firstSession.setShouldStartProcessingRequest(true);
+        secondSession.setShouldStartProcessingRequest(true);
+        snackVendingMachine.processRequestAndReturnSelectedSnackItem(firstSession, snackVendingMachine.getSnackSlots()[0][0]);
+        snackVendingMachine.processRequestAndReturnSelectedSnackItem(secondSession, snackVendingMachine.getSnackSlots()[0][1]);
+        snackVendingMachine.insertMoney(firstSession, snackVendingMachine.getCoinSlot(), Coin.ONE_DOLLAR);
+
+        Pair<SnackItem, Map<Payable, Integer>> firstResult = snackVendingMachine.dispenseSelectedItemAndCustomerChange(firstSession);
+        Pair<SnackItem, Map<Payable, Integer>> secondResult = snackVendingMachine.dispenseSelectedItemAndCustomerChange(secondSession);
+
+        Assert.assertEquals(SnackItem.BAGEL, firstResult.getFirst());
+        Assert.assertEquals(SnackItem.BAGEL, secondResult.getFirst());
+        Assert.assertEquals(1, (int) firstResult.getSecond().get(Coin.FIFTY_CENTS));
+        Assert.assertEquals(1, (int) secondResult.getSecond().get(Coin.FIFTY_CENTS));
+        Assert.assertEquals(0, firstSession.getAccumulatedMoneyInCents());
+        Assert.assertNull(secondSession.getSelectedSnackSlot());
+    }
+
+    @Test
+    public void Should_ApplyEveryCommandInOrder_When_RoutingCommandsAcrossFleet() {
+        final int machinesCount = 100;
+        final int insertionsPerMachine = 20;
+        List<CompletableFuture<Void>> insertions = new ArrayList<>();
+
+        try (FleetRuntime fleetRuntime = new FleetRuntime()) {
+            for (int machineIndex = 0; machineIndex < machinesCount; machineIndex++) {
+                fleetRuntime.register("machine-" + machineIndex, new SnackVendingMachine());
+            }
+
+            for (int insertion = 0; insertion < insertionsPerMachine; insertion++) {
+                for (int machineIndex = 0; machineIndex < machinesCount; machineIndex++) {
+                    insertions.add(fleetRuntime.insertMoney("machine-" + machineIndex, Coin.TEN_CENTS));
+                }
+            }
+
+            CompletableFuture.allOf(insertions.toArray(new CompletableFuture<?>[0])).join();
+
+            Assert.assertEquals(0, fleetRuntime.getTotalBacklog());
+            Assert.assertEquals((long) machinesCount * insertionsPerMachine, fleetRuntime.getCompletedCommandsCount());
+
+            for (int machineIndex = 0; machineIndex < machinesCount; machineIndex++) {
+                SnackVendingMachine machine = fleetRuntime.getMachine("machine-" + machineIndex).getSnackVendingMachine();
+                Assert.assertEquals(10L * insertionsPerMachine, machine.getAccumulatedMoneyInCents());
+            }
+        }
+    }
+
+    @Test
+    public void Should_ServeOtherMachines_When_ACardIsBeingAuthorizedForADispense() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        SnackVendingMachine cardMachine = new SnackVendingMachine();
+        cardMachine.setCardPaymentProcessor(new SimulatedCardPaymentProcessor(300, 300, 0, new Random(7)));
+        cardMachine.getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+        cardMachine.getSnackSlots()[0][0].setCapacity(5);
+        cardMachine.getSnackSlots()[0][0].setQuantity(5);
+        cardMachine.getDefaultSession().setShouldStartProcessingRequest(true);
+        cardMachine.processRequestAndReturnSelectedSnackItem(cardMachine.getDefaultSession(), cardMachine.getSnackSlots()[0][0]);
+
+        try (FleetRuntime fleetRuntime = new FleetRuntime(executor)) {
+            fleetRuntime.register("card-machine", cardMachine);
+            fleetRuntime.register("cash-machine", new SnackVendingMachine());
+
+            fleetRuntime.insertMoney("card-machine", new Card("4002123456789900", "VISA", 100));
+            CompletableFuture<Pair<SnackItem, Map<Payable, Integer>>> cardDispense = fleetRuntime.dispense("card-machine");
+
+            /** The only executor thread is not held by the card's authorization **/
+            fleetRuntime.insertMoney("cash-machine", Coin.ONE_DOLLAR).join();
+            Assert.assertFalse(cardDispense.isDone());
+            Assert.assertEquals(SnackItem.BAGEL, cardDispense.join().getFirst());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void Should_KeepServingTheMachine_When_ACommandThrowsAnError() {
+        try (FleetRuntime fleetRuntime = new FleetRuntime()) {
+            fleetRuntime.register("machine-0", new SnackVendingMachine());
+
+            CompletableFuture<Object> failedCommand = fleetRuntime.send("machine-0", machine -> {
+                throw new OutOfMemoryError("Simulated");
+            });
+
+            Assert.assertTrue(failedCommand.handle((value, failure) -> failure instanceof OutOfMemoryError).join());
+            Assert.assertEquals(Long.valueOf(0), fleetRuntime.send("machine-0", SnackVendingMachine::getSalesTotalInCents).join());
+            Assert.assertEquals(0, fleetRuntime.getTotalBacklog());
+        }
+    }
+
+    @Test
+    public void Should_RestoreSalesStockAndChange_When_ReplayingTheJournal() throws IOException {
+        Path journalPath = Files.createTempFile("snack-vending-machine", ".journal");
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+        machine.getSnackSlots()[0][0].setCapacity(5);
+        machine.getSnackSlots()[0][0].setQuantity(4);
+        machine.getChangeInventory().putPayableWithCount(Coin.FIFTY_CENTS, 10);
+
+        // A SMALL FILE, SO THAT IT IS COMPACTED ON THE WAY
+        try (MappedMachineJournal journal = new MappedMachineJournal(journalPath, 25, JournalSyncPolicy.GROUP_COMMIT, 3072, 1)) {
+            machine.attachJournal(journal);
+
+            for (int purchase = 0; purchase < 3; purchase++) {
+                VendingSession session = machine.openSession();
+                session.setShouldStartProcessingRequest(true);
+                machine.processRequestAndReturnSelectedSnackItem(session, machine.getSnackSlots()[0][0]);
+                machine.insertMoney(session, machine.getCoinSlot(), Coin.ONE_DOLLAR);
+                machine.insertMoney(session, machine.getCoinSlot(), Coin.ONE_DOLLAR);
+                machine.dispenseSelectedItemAndCustomerChange(session);
+            }
+
+            machine.insertMoney(machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS);
+        }
+
+        SnackVendingMachine restoredMachine = new SnackVendingMachine();
+
+        try (MappedMachineJournal journal = new MappedMachineJournal(journalPath, 25, JournalSyncPolicy.GROUP_COMMIT, 3072, 1)) {
+            restoredMachine.attachJournal(journal);
+        } finally {
+            Files.deleteIfExists(journalPath);
+        }
+
+        Assert.assertEquals(450, restoredMachine.getSalesTotalInCents());
+        Assert.assertEquals(25, restoredMachine.getAccumulatedMoneyInCents());
+        Assert.assertEquals(SnackItem.BAGEL, restoredMachine.getSnackSlots()[0][0].getItem());
+        Assert.assertEquals(1, restoredMachine.getSnackSlots()[0][0].getQuantity());
+        Assert.assertEquals(7, restoredMachine.getChangeInventory().getCountOfPayable(Coin.FIFTY_CENTS));
+        Assert.assertEquals(6, restoredMachine.getChangeInventory().getCountOfPayable(Coin.ONE_DOLLAR));
+        Assert.assertEquals(0, restoredMachine.getChangeInventory().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+        Assert.assertEquals(1, restoredMachine.getDefaultSession().getEscrow().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+    }
+
+    @Test
+    public void Should_RestoreEveryMachine_When_ReadingASnapshotFile() throws IOException {
+        Path snapshotPath = Files.createTempFile("snack-vending-machines", ".snapshot");
+        SnackVendingMachine largeMachine = new SnackVendingMachine(8, 12);
+        largeMachine.getSnackSlotByCode("H12").setItem(SnackItem.PEANUTS);
+        largeMachine.getSnackSlotByCode("H12").setCapacity(6);
+        largeMachine.getSnackSlotByCode("H12").setQuantity(5);
+        largeMachine.getChangeInventory().putPayableWithCount(Note.FIVE_DOLLARS_BILL, 3);
+        largeMachine.setSalesTotalInCents(1_250);
+        largeMachine.insertMoney(largeMachine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS);
+        largeMachine.setFunctional(false);
+
+        try {
+            MachineSnapshotFile.write(snapshotPath, Arrays.asList(snackVendingMachine, largeMachine));
+            List<SnackVendingMachine> restoredMachines = MachineSnapshotFile.read(snapshotPath);
+
+            SnackVendingMachine restoredLargeMachine = restoredMachines.get(1);
+            Assert.assertEquals(2, restoredMachines.size());
+            Assert.assertEquals(
+                    snackVendingMachine.getSnackItemStock(SnackItem.BAGEL),
+                    restoredMachines.get(0).getSnackItemStock(SnackItem.BAGEL)
+            );
+            Assert.assertEquals(SnackItem.PEANUTS, restoredLargeMachine.getSnackSlotByCode("H12").getItem());
+            Assert.assertEquals(5, restoredLargeMachine.getSnackItemStock(SnackItem.PEANUTS));
+            Assert.assertEquals(3, restoredLargeMachine.getChangeInventory().getCountOfPayable(Note.FIVE_DOLLARS_BILL));
+            Assert.assertEquals(1_250, restoredLargeMachine.getSalesTotalInCents());
+            Assert.assertEquals(25, restoredLargeMachine.getAccumulatedMoneyInCents());
+            Assert.assertEquals(1, restoredLargeMachine.getDefaultSession().getEscrow().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+            Assert.assertEquals(MachineState.OUT_OF_SERVICE, restoredLargeMachine.getCurrentlyOperatingState());
+            Assert.assertFalse(restoredLargeMachine.isFunctional());
+        } finally {
+            Files.deleteIfExists(snapshotPath);
+        }
+    }
+
+    @Test
+    public void Should_SettleEveryCaptureOnce_When_ResendingAfterALostAnswer() throws IOException {
+        Path queuePath = Files.createTempFile("snack-vending-machine", ".settlements");
+        Path acquirerPath = Files.createTempFile("snack-vending-machine", ".acquirer");
+        Files.delete(queuePath);
+        Card card = new Card("4002123456789900", "VISA", 100);
+
+        try {
+            FileSettlementSink acquirer = new FileSettlementSink(acquirerPath);
+
+            // THE ACQUIRER SETTLES THE FIRST BATCH, BUT ITS ANSWER NEVER COMES BACK
+            try (CardSettlementQueue queue = new CardSettlementQueue(queuePath, "VM-001", batch -> {
+                acquirer.settle(batch);
+                throw new IOException("Answer lost");
+            }, 2, 60_000, 2, 60_000, 60_000)) {
+                for (long authorizationId = 1; authorizationId <= 5; authorizationId++) {
+                    queue.enqueue(new CardAuthorization(authorizationId, card, 300, CardAuthorizationStatus.APPROVED), 150);
+                }
+
+                Assert.assertFalse(queue.flush());
+                Assert.assertEquals(5, queue.getQueueDepth());
+                Assert.assertEquals(2, queue.getInFlightCount());
+            }
+
+            FileSettlementSink restartedAcquirer = new FileSettlementSink(acquirerPath);
+
+            try (CardSettlementQueue queue = new CardSettlementQueue(queuePath, "VM-001", restartedAcquirer, 2, 60_000, 2, 60_000, 60_000)) {
+                Assert.assertTrue(queue.flush());
+                Assert.assertEquals(0, queue.getQueueDepth());
+                Assert.assertEquals(3, queue.getSettledBatchesCount());
+                Assert.assertEquals("VM-001:6", queue.enqueue(new CardAuthorization(6, card, 300, CardAuthorizationStatus.APPROVED), 150).getIdempotencyKey());
+            }
+
+            Assert.assertEquals(5, restartedAcquirer.getSettledCount());
+            Assert.assertEquals(2, restartedAcquirer.getDuplicatesCount());
+            Assert.assertEquals(750, restartedAcquirer.getSettledAmountInCents());
+        } finally {
+            Files.deleteIfExists(queuePath);
+            Files.deleteIfExists(acquirerPath);
+        }
+    }
+
+    @Test
+    public void Should_SendNothingAgain_When_ReopeningASettledQueue() throws IOException {
+        Path queuePath = Files.createTempFile("snack-vending-machine", ".settlements");
+        Path acquirerPath = Files.createTempFile("snack-vending-machine", ".acquirer");
+        Files.delete(queuePath);
+        Card card = new Card("4002123456789900", "VISA", 100);
+
+        try {
+            FileSettlementSink acquirer = new FileSettlementSink(acquirerPath);
+
+            try (CardSettlementQueue queue = new CardSettlementQueue(queuePath, "VM-001", acquirer, 2, 60_000, 2, 60_000, 60_000)) {
+                for (long authorizationId = 1; authorizationId <= 3; authorizationId++) {
+                    queue.enqueue(new CardAuthorization(authorizationId, card, 300, CardAuthorizationStatus.APPROVED), 150);
+                }
+
+                Assert.assertTrue(queue.flush());
+                Assert.assertEquals(0, queue.getQueueDepth());
+            }
+
+            try (CardSettlementQueue queue = new CardSettlementQueue(queuePath, "VM-001", acquirer, 2, 60_000, 2, 60_000, 60_000)) {
+                Assert.assertEquals(0, queue.getQueueDepth());
+                Assert.assertEquals(0, queue.getInFlightCount());
+                Assert.assertTrue(queue.flush());
+                Assert.assertEquals("VM-001:4", queue.enqueue(new CardAuthorization(4, card, 300, CardAuthorizationStatus.APPROVED), 150).getIdempotencyKey());
+            }
+
+            Assert.assertEquals(3, acquirer.getSettledCount());
+            Assert.assertEquals(0, acquirer.getDuplicatesCount());
+        } finally {
+            Files.deleteIfExists(queuePath);
+            Files.deleteIfExists(acquirerPath);
+        }
+    }
+
+    @Test
+    public void Should_CountTheLostSettlement_When_TheSettlementQueueCannotTakeIt() throws IOException {
+        Path queuePath = Files.createTempFile("snack-vending-machine", ".settlements");
+        Files.delete(queuePath);
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.setCardPaymentProcessor(new SimulatedCardPaymentProcessor(0, 0, 0, new Random(7)));
+        machine.getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+        machine.getSnackSlots()[0][0].setCapacity(5);
+        machine.getSnackSlots()[0][0].setQuantity(5);
+
+        try {
+            CardSettlementQueue queue = new CardSettlementQueue(queuePath, "VM-001", batch -> { });
+            queue.close();
+            machine.setCardSettlementQueue(queue);
+
+            VendingSession session = machine.openSession();
+            session.setShouldStartProcessingRequest(true);
+            machine.processRequestAndReturnSelectedSnackItem(session, machine.getSnackSlots()[0][0]);
+            machine.insertMoney(session, machine.getCardSlot(), new Card("4002123456789900", "VISA", 100));
+
+            Assert.assertEquals(OperationResult.OK, machine.tryDispenseSelectedItemAndCustomerChange(session, new PurchaseReceipt()));
+            Assert.assertEquals(1, machine.getMetricsSnapshot().getSettlementFailuresCount());
+        } finally {
+            Files.deleteIfExists(queuePath);
+        }
+    }
+
+    @Test
+    public void Should_ReportResultCodesWithoutThrowing_When_UsingTheTryApi() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        VendingSession session = machine.openSession();
+        PurchaseReceipt receipt = new PurchaseReceipt();
+        machine.getSnackSlotByCode("A1").setItem(SnackItem.BAGEL);
+        machine.getSnackSlotByCode("A1").setCapacity(5);
+        machine.getSnackSlotByCode("A1").setQuantity(1);
+        machine.getChangeInventory().putPayableWithCount(Coin.FIFTY_CENTS, 1);
+
+        Assert.assertEquals(OperationResult.INVALID_ENTRY, machine.tryInsertMoney(session, machine.getCoinSlot(), Note.TWENTY_DOLLARS_BILL));
+        Assert.assertEquals(OperationResult.UNSUPPORTED_PAYABLE_TYPE, machine.tryInsertMoney(session, machine.getCoinSlot(), Coin.FIVE_CENTS));
+        Assert.assertEquals(OperationResult.REQUEST_NOT_CONFIRMED, machine.tryProcessRequest(session, machine.getSnackSlotByCode("A1")));
+        Assert.assertEquals(0, session.getAccumulatedMoneyInCents());
+
+        session.setShouldStartProcessingRequest(true);
+        Assert.assertEquals(OperationResult.OK, machine.tryProcessRequest(session, machine.getSnackSlotByCode("A1")));
+        Assert.assertEquals(OperationResult.OK, machine.tryInsertMoney(session, machine.getCoinSlot(), Coin.ONE_DOLLAR));
+        Assert.assertEquals(OperationResult.NOT_FULLY_PAID, machine.tryDispenseSelectedItemAndCustomerChange(session, receipt));
+        Assert.assertEquals(OperationResult.OK, machine.tryInsertMoney(session, machine.getCoinSlot(), Coin.ONE_DOLLAR));
+        Assert.assertEquals(OperationResult.OK, machine.tryDispenseSelectedItemAndCustomerChange(session, receipt));
+
+        Assert.assertEquals(SnackItem.BAGEL, receipt.getDispensedItem());
+        Assert.assertEquals(1, (int) receipt.getChange().get(Coin.FIFTY_CENTS));
+        Assert.assertFalse(receipt.isRefunded());
+
+        session.setShouldStartProcessingRequest(true);
+        Assert.assertEquals(OperationResult.SOLD_OUT, machine.tryProcessRequest(session, machine.getSnackSlotByCode("A1")));
+    }
+
+    @Test
+    public void Should_ReportEveryOrderInColumns_When_ProcessingAPurchaseBatch() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.getSnackSlotByCode("A1").setItem(SnackItem.BAGEL);
+        machine.getSnackSlotByCode("A1").setCapacity(5);
+        machine.getSnackSlotByCode("A1").setQuantity(1);
+        machine.getSnackSlotByCode("A2").setItem(SnackItem.DONUT);
+        machine.getSnackSlotByCode("A2").setCapacity(5);
+        machine.getSnackSlotByCode("A2").setQuantity(2);
+        machine.getChangeInventory().putPayableWithCount(Coin.FIFTY_CENTS, 1);
+
+        PurchaseResultBatch resultBatch = machine.processPurchaseOrders(new PurchaseOrder[] {
+                new PurchaseOrder(0, PaymentType.CASH, Coin.ONE_DOLLAR, Coin.ONE_DOLLAR),
+                new PurchaseOrder(0, PaymentType.CASH, Coin.ONE_DOLLAR, Coin.ONE_DOLLAR),
+                new PurchaseOrder(99, PaymentType.CASH, Coin.ONE_DOLLAR),
+                new PurchaseOrder(1, PaymentType.CASH, Coin.FIVE_CENTS),
+                new PurchaseOrder(1, PaymentType.CASH, Coin.ONE_DOLLAR)
+        });
+
+        Assert.assertEquals(PurchaseOutcome.DISPENSED, resultBatch.getOutcome(0));
+        Assert.assertEquals(SnackItem.BAGEL, resultBatch.getDispensedItem(0));
+        Assert.assertEquals(1, resultBatch.getChangeCount(0, Coin.FIFTY_CENTS));
+        Assert.assertFalse(resultBatch.isRefunded(0));
+
+        Assert.assertEquals(PurchaseOutcome.SOLD_OUT, resultBatch.getOutcome(1));
+        Assert.assertTrue(resultBatch.isRefunded(1));
+        Assert.assertEquals(200, resultBatch.getChangeInCents(1));
+
+        Assert.assertEquals(PurchaseOutcome.INVALID_SLOT, resultBatch.getOutcome(2));
+        Assert.assertEquals(PurchaseOutcome.UNSUPPORTED_PAYMENT, resultBatch.getOutcome(3));
+        Assert.assertTrue(resultBatch.isRefunded(3));
+        Assert.assertEquals(1, resultBatch.getChangeCount(3, Coin.FIVE_CENTS));
+        Assert.assertEquals(PurchaseOutcome.NOT_FULLY_PAID, resultBatch.getOutcome(4));
+        Assert.assertNull(resultBatch.getDispensedItem(4));
+
+        Assert.assertEquals(150, machine.getSalesTotalInCents());
+        Assert.assertEquals(2, machine.getChangeInventory().getCountOfPayable(Coin.ONE_DOLLAR));
+        Assert.assertEquals(0, machine.getChangeInventory().getCountOfPayable(Coin.FIFTY_CENTS));
+    }
+
+    @Test
+    public void Should_ChargeTheCardThePriceOnly_When_ProcessingACardOrder() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.setCardPaymentProcessor(new SimulatedCardPaymentProcessor(0, 0, 0, new Random(7)));
+        machine.getSnackSlotByCode("A1").setItem(SnackItem.BAGEL);
+        machine.getSnackSlotByCode("A1").setCapacity(5);
+        machine.getSnackSlotByCode("A1").setQuantity(2);
+        int notesCount = machine.getChangeInventory().getCountOfPayable(Note.FIFTY_DOLLARS_BILL);
+        Card card = new Card("4002123456789900", "VISA", 100);
+
+        PurchaseResultBatch resultBatch = machine.processPurchaseOrders(new PurchaseOrder[] {
+                new PurchaseOrder(0, PaymentType.CARD, card)
+        });
+
+        Assert.assertEquals(PurchaseOutcome.DISPENSED, resultBatch.getOutcome(0));
+        Assert.assertEquals(SnackItem.BAGEL, resultBatch.getDispensedItem(0));
+        Assert.assertEquals(0, resultBatch.getChangeInCents(0));
+        Assert.assertTrue(resultBatch.getChange(0).isEmpty());
+        Assert.assertEquals(9850, card.getWorthInCents());
+        Assert.assertEquals(150, machine.getSalesTotalInCents());
+        Assert.assertEquals(notesCount, machine.getChangeInventory().getCountOfPayable(Note.FIFTY_DOLLARS_BILL));
+    }
+
+    @Test
+    public void Should_WaitForTheProcessorOnce_When_ProcessingManyCardOrders() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.setCardPaymentProcessor(new SimulatedCardPaymentProcessor(200, 200, 0, new Random(7)));
+        machine.getSnackSlotByCode("A1").setItem(SnackItem.BAGEL);
+        machine.getSnackSlotByCode("A1").setCapacity(10);
+        machine.getSnackSlotByCode("A1").setQuantity(10);
+        Card card = new Card("4002123456789900", "VISA", 100);
+        PurchaseOrder[] purchaseOrders = new PurchaseOrder[11];
+
+        for (int orderIndex = 0; orderIndex < purchaseOrders.length; orderIndex++) {
+            purchaseOrders[orderIndex] = new PurchaseOrder(0, PaymentType.CARD, card);
+        }
+
+        long startMillis = System.currentTimeMillis();
+        PurchaseResultBatch resultBatch = machine.processPurchaseOrders(purchaseOrders);
+
+        /** 11 authorizations of 200 ms each, asked for all at once **/
+        Assert.assertTrue(System.currentTimeMillis() - startMillis < 1_000);
+
+        for (int orderIndex = 0; orderIndex < 10; orderIndex++) {
+            Assert.assertEquals(PurchaseOutcome.DISPENSED, resultBatch.getOutcome(orderIndex));
+        }
+
+        Assert.assertEquals(PurchaseOutcome.SOLD_OUT, resultBatch.getOutcome(10));
+        Assert.assertTrue(resultBatch.isRefunded(10));
+        Assert.assertEquals(8500, card.getWorthInCents());
+        Assert.assertEquals(1500, machine.getSalesTotalInCents());
+    }
+
     public BigDecimal calculateTotalChangeAmount(Map<Payable, Integer> change) {
         return change.entrySet()
                 .stream()
@@ -231,8 +683,12 @@ public class IntegrationTests {
                 turkeySandwichSnackSlot
         };
 
+        SnackSlot[][] initialSnackSlots = new SnackSlot[snackVendingMachine.getRowsCount()][snackVendingMachine.getColumnsCount()];
+
         for (int rowIndex = 0; rowIndex < snackVendingMachine.getRowsCount(); rowIndex++) {
-            Arrays.fill(snackVendingMachine.getSnackSlots()[rowIndex], snackSlots[rowIndex]);
+            Arrays.fill(initialSnackSlots[rowIndex], snackSlots[rowIndex]);
         }
+
+        snackVendingMachine.setSnackSlots(initialSnackSlots);
     }
 }
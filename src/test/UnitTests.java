@@ -1,15 +1,44 @@
 package test;
 
 import components.Button;
+import components.ChangeInventory;
+import components.ChangeReservation;
+import components.DenominationRegistry;
+import components.DisplayScreen;
+import components.MoneySlot;
+import components.PriceBook;
+import components.SlotCodeResolver;
 import components.SnackSlot;
+import components.SnackSlotGrid;
+import core.PurchaseReceipt;
 import core.SnackVendingMachine;
+import core.StateTransitionTable;
+import core.VendingSession;
+import events.MachineEvent;
+import events.MachineEventBus;
 import enumerations.*;
 import exception.*;
 import org.junit.*;
 import interfaces.Payable;
+import journal.NoOpMachineJournal;
+import metrics.HistogramSnapshot;
+import metrics.LatencyHistogram;
+import metrics.MachineMetricsSnapshot;
+import utils.Money;
+import payment.CardAuthorization;
+import payment.SimulatedCardPaymentProcessor;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UnitTests {
     private static SnackVendingMachine snackVendingMachine;
@@ -78,7 +107,10 @@ public class UnitTests {
 
     @Test(expected = FullSnackSlotException.class)
     public void Should_ThrowFullSnackSlotException_When_AddingSnackItemToFullSlot() {
-        Arrays.fill(snackVendingMachine.getSnackSlots()[0], new SnackSlot(SnackItem.BAGEL, 5, 5));
+        SnackSlot bagelsSnackSlot = snackVendingMachine.getSnackSlots()[0][0];
+        bagelsSnackSlot.setItem(SnackItem.BAGEL);
+        bagelsSnackSlot.setCapacity(5);
+        bagelsSnackSlot.setQuantity(5);
 
         /** FullSnackSlotException should be thrown **/
         snackVendingMachine.getSnackSlots()[0][0].addSnackItems(SnackItem.BAGEL, SnackItem.BAGEL);
@@ -118,5 +150,633 @@ public class UnitTests {
         );
     }
 
+    @Test
+    public void Should_DecodePendingSlotAndShowOnlyTheCode_When_DeletingAndConfirming() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.getKeypad().pressButton(Button.C);
+        machine.getKeypad().pressButton(Button.DIGIT_NINE);
+        machine.getKeypad().pressButton(Button.DELETE);
+        machine.getKeypad().pressButton(Button.DIGIT_THREE);
+        machine.getKeypad().pressButton(Button.CONFIRM);
+
+        Assert.assertEquals("C3", machine.getKeypad().getEnteredSlotCode());
+        Assert.assertEquals(2 * 5 + 2, machine.getKeypad().getEnteredSlotId());
+        Assert.assertEquals("C3", machine.getDisplayScreen().getDisplayedText());
+
+        machine.getKeypad().pressButton(Button.DELETE);
+        machine.getKeypad().pressButton(Button.DELETE);
+        machine.getKeypad().pressButton(Button.DELETE);
+
+        Assert.assertEquals(SlotCodeResolver.INVALID_SLOT_ID, machine.getKeypad().getEnteredSlotId());
+        Assert.assertEquals("", machine.getDisplayScreen().getDisplayedText());
+    }
+
+    @Test
+    public void Should_ResolveMultiDigitSlotCode_When_GridIsLargerThanDefault() {
+        SnackVendingMachine comboVendingMachine = new SnackVendingMachine(8, 12);
+        comboVendingMachine.getKeypad().pressButton(Button.H);
+        comboVendingMachine.getKeypad().pressButton(Button.DIGIT_ONE);
+        comboVendingMachine.getKeypad().pressButton(Button.DIGIT_TWO);
+
+        Assert.assertEquals("H12", comboVendingMachine.getKeypad().getEnteredSlotCode());
+        Assert.assertEquals(7 * 12 + 11, comboVendingMachine.getKeypad().getEnteredSlotId());
+        Assert.assertSame(comboVendingMachine.getSnackSlots()[7][11], comboVendingMachine.getSnackSlotByCode("H12"));
+        Assert.assertEquals(SlotCodeResolver.INVALID_SLOT_ID, comboVendingMachine.getSlotCodeResolver().resolve("H13"));
+        Assert.assertEquals(SlotCodeResolver.INVALID_SLOT_ID, comboVendingMachine.getSlotCodeResolver().resolve("I1"));
+    }
+
+    @Test(expected = InvalidSlotCodeException.class)
+    public void Should_ThrowInvalidSlotCodeException_When_SlotCodeIsOutsideGrid() {
+        snackVendingMachine.getSnackSlotByCode("F1");
+    }
+
+    @Test
+    public void Should_ScanWholeGrid_When_PlanningRestock() {
+        SnackVendingMachine comboVendingMachine = new SnackVendingMachine(10, 10);
+        SnackSlot donutsSnackSlot = comboVendingMachine.getSnackSlotByCode("J10");
+        donutsSnackSlot.setItem(SnackItem.DONUT);
+        donutsSnackSlot.setCapacity(4);
+        donutsSnackSlot.addSnackItems(SnackItem.DONUT);
+        donutsSnackSlot.dispenseSnackItem();
+
+        SnackSlotGrid snackSlotGrid = comboVendingMachine.getSnackSlotGrid();
+        Assert.assertEquals(1, snackSlotGrid.countSoldOutSlots());
+        Assert.assertEquals(4, snackSlotGrid.countMissingItems());
+        Assert.assertEquals(SnackItem.DONUT, snackSlotGrid.getItem(donutsSnackSlot.getSlotId()));
+    }
+
+    @Test
+    public void Should_AddUpExactly_When_SummingTenAndTwentyCents() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.insertMoney(machine.getCoinSlot(), Coin.TEN_CENTS);
+        machine.insertMoney(machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS);
+        machine.insertMoney(machine.getCoinSlot(), Coin.TEN_CENTS);
+        machine.insertMoney(machine.getCoinSlot(), Coin.TEN_CENTS);
+
+        /** 0.1 + 0.2 is 0.30000000000000004 in doubles, but exactly 30 cents here **/
+        Assert.assertEquals(30, Money.toCents(0.1 + 0.2));
+        Assert.assertEquals(55, machine.getAccumulatedMoneyInCents());
+        Assert.assertEquals(new BigDecimal("0.55"), machine.getAccumulatedMoney());
+    }
+
+    @Test
+    public void Should_RoundHalfUpAndKeepTwoDecimals_When_ConvertingAndFormattingMoney() {
+        Assert.assertEquals(13, Money.toCents(new BigDecimal("0.125")));
+        Assert.assertEquals(12, Money.toCents(new BigDecimal("0.1249")));
+        Assert.assertEquals(150, Money.toCents(new BigDecimal("1.5")));
+        Assert.assertEquals(199, Money.toCents(1.99));
+        Assert.assertEquals(new BigDecimal("0.30"), Money.toBigDecimal(30));
+
+        Assert.assertEquals("0.05", Money.format(5));
+        Assert.assertEquals("0.30", Money.format(30));
+        Assert.assertEquals("1234.56", Money.format(123_456));
+        Assert.assertEquals("-0.75", Money.format(-75));
+        Assert.assertEquals("0.00", Money.format(0));
+    }
+
+    @Test
+    public void Should_GiveEveryCoinAndNoteItsOwnIndex_When_RegisteringDenominations() {
+        List<Payable> denominations = new ArrayList<>(Arrays.asList(Coin.values()));
+        denominations.addAll(Arrays.asList(Note.values()));
+
+        Assert.assertEquals(denominations.size(), DenominationRegistry.size());
+
+        boolean[] isIndexTaken = new boolean[DenominationRegistry.size()];
+
+        for (Payable denomination : denominations) {
+            int index = DenominationRegistry.indexOf(denomination);
+
+            Assert.assertTrue(DenominationRegistry.isDenomination(denomination));
+            Assert.assertFalse(isIndexTaken[index]);
+            Assert.assertSame(denomination, DenominationRegistry.getDenomination(index));
+            Assert.assertEquals(denomination.getWorthInCents(), DenominationRegistry.getWorthInCents(index));
+            isIndexTaken[index] = true;
+        }
+
+        /** Indexes follow the descending order of worth, across coins and notes **/
+        for (int index = 1; index < DenominationRegistry.size(); index++) {
+            Assert.assertTrue(DenominationRegistry.getWorthInCents(index - 1) > DenominationRegistry.getWorthInCents(index));
+        }
+
+        Assert.assertEquals(Note.TWO_DOLLARS_BILL, DenominationRegistry.getDenomination(DenominationRegistry.indexOf(Coin.ONE_DOLLAR) - 1));
+        Assert.assertEquals(-1, DenominationRegistry.indexOf(new Card("4002123456789900", "VISA", 100)));
+        Assert.assertFalse(DenominationRegistry.isDenomination(new Card("4002123456789900", "VISA", 100)));
+    }
+
+    @Test
+    public void Should_KeepExactCounts_When_AddingAndDeductingDenominations() {
+        ChangeInventory changeInventory = new ChangeInventory();
+
+        changeInventory.add(Coin.TWENTY_FIVE_CENTS, 5);
+        changeInventory.add(Note.FIVE_DOLLARS_BILL, 2);
+        changeInventory.deduct(Coin.TWENTY_FIVE_CENTS, 2);
+
+        Assert.assertEquals(3, changeInventory.getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+        Assert.assertEquals(2, changeInventory.getCountOfPayable(Note.FIVE_DOLLARS_BILL));
+
+        /** A deduction the inventory cannot cover leaves the count untouched **/
+        Assert.assertFalse(changeInventory.tryDeduct(Coin.TWENTY_FIVE_CENTS, 4));
+        Assert.assertEquals(3, changeInventory.getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+        Assert.assertEquals(0, changeInventory.getCountOfPayable(Coin.TEN_CENTS));
+
+        ByteBuffer buffer = ByteBuffer.allocate(changeInventory.getSerializedSize());
+        changeInventory.writeCountsTo(buffer);
+        buffer.flip();
+
+        ChangeInventory restoredChangeInventory = new ChangeInventory();
+        restoredChangeInventory.readCountsFrom(buffer);
+
+        Assert.assertEquals(changeInventory.getInventory(), restoredChangeInventory.getInventory());
+        Assert.assertEquals(3, restoredChangeInventory.getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+        Assert.assertEquals(2, restoredChangeInventory.getCountOfPayable(Note.FIVE_DOLLARS_BILL));
+    }
+
+    @Test
+    public void Should_ProduceChangeFromSmallerCoins_When_GreedyChoiceLeavesRemainder() {
+        ChangeInventory changeInventory = new ChangeInventory();
+        changeInventory.add(Coin.TWENTY_FIVE_CENTS, 1);
+        changeInventory.add(Coin.TEN_CENTS, 3);
+
+        /** Greedy would take the quarter first and be left with 5 cents it cannot pay. **/
+        Map<Payable, Integer> change = changeInventory.getChange(30);
+
+        Assert.assertTrue(changeInventory.canProduceChangeForAmount(30));
+        Assert.assertEquals(1, change.size());
+        Assert.assertEquals(3, (int) change.get(Coin.TEN_CENTS));
+    }
+
+    @Test
+    public void Should_RestoreChangeInventory_When_ChangeReservationIsRolledBack() {
+        ChangeInventory changeInventory = new ChangeInventory();
+        changeInventory.add(Coin.ONE_DOLLAR, 2);
+        changeInventory.add(Coin.FIFTY_CENTS, 1);
+
+        ChangeReservation changeReservation = changeInventory.reserveChange(150);
+        Assert.assertEquals(1, changeInventory.getCountOfPayable(Coin.ONE_DOLLAR));
+        Assert.assertEquals(0, changeInventory.getCountOfPayable(Coin.FIFTY_CENTS));
+
+        changeReservation.rollback();
+        Assert.assertEquals(2, changeInventory.getCountOfPayable(Coin.ONE_DOLLAR));
+        Assert.assertEquals(1, changeInventory.getCountOfPayable(Coin.FIFTY_CENTS));
+    }
+
+    @Test
+    public void Should_NotLoseCoins_When_InsertingAndDispensingConcurrently() throws InterruptedException {
+        final int threadsCount = 4;
+        final int operationsPerThread = 250_000;
+        ChangeInventory changeInventory = new ChangeInventory();
+        AtomicLong deductedDimesCount = new AtomicLong();
+        AtomicLong reservedCentsCount = new AtomicLong();
+        Thread[] threads = new Thread[threadsCount + 1];
+
+        for (int threadIndex = 0; threadIndex < threadsCount; threadIndex++) {
+            threads[threadIndex] = new Thread(() -> {
+                for (int operation = 0; operation < operationsPerThread; operation++) {
+                    changeInventory.add(Coin.TEN_CENTS, 1);
+
+                    if (changeInventory.tryDeduct(Coin.TEN_CENTS, 1)) {
+                        deductedDimesCount.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        /** Multi-denomination reservations racing against the single-coin deductions above. **/
+        threads[threadsCount] = new Thread(() -> {
+            for (int operation = 0; operation < 2_000; operation++) {
+                changeInventory.add(Coin.TWENTY_FIVE_CENTS, 1);
+
+                if (changeInventory.canProduceChangeForAmount(35)) {
+                    try {
+                        changeInventory.reserveChange(35).commit();
+                        reservedCentsCount.addAndGet(35);
+                    } catch (InsufficientChangeException insufficientChangeException) {
+                        // A dime was taken by another thread in between, nothing was deducted.
+                    }
+                }
+            }
+        });
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long reservedQuartersCount = reservedCentsCount.get() / 35;
+        long dimesLeftCount = (long) threadsCount * operationsPerThread - deductedDimesCount.get() - reservedQuartersCount;
+
+        Assert.assertEquals(dimesLeftCount, changeInventory.getCountOfPayable(Coin.TEN_CENTS));
+        Assert.assertEquals(2_000 - reservedQuartersCount, changeInventory.getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+    }
+
+    @Test
+    public void Should_DeliverMachineEventsInOrder_When_BusIsFlushed() {
+        List<MachineEvent> events = new ArrayList<>();
+        SnackVendingMachine machine = new SnackVendingMachine();
+
+        try (MachineEventBus eventBus = new MachineEventBus(events::add, 4)) {
+            machine.setEventBus(eventBus);
+            machine.insertMoney(machine.getCoinSlot(), Coin.TEN_CENTS);
+            machine.insertMoney(machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS);
+            eventBus.flush();
+
+            Assert.assertEquals(2, events.size());
+            Assert.assertEquals(MachineEventType.MONEY_INSERTED, events.get(1).getType());
+            Assert.assertEquals(Coin.TWENTY_FIVE_CENTS, events.get(1).getPayable());
+            Assert.assertEquals(35, events.get(1).getAmountInCents());
+            Assert.assertEquals(0, eventBus.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void Should_ReportPercentilesWithinBucketPrecision_When_RecordingLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        Assert.assertEquals(10_000, snapshot.getCount());
+        Assert.assertEquals(10_000_000, snapshot.getMax());
+        Assert.assertEquals(5_000_000, snapshot.getValueAtPercentile(50), 5_000_000 / 16);
+        Assert.assertEquals(9_900_000, snapshot.getValueAtPercentile(99), 9_900_000 / 16);
+    }
+
+    @Test
+    public void Should_CountRefundAndStateTransitions_When_RefundingInsertedMoney() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+
+        machine.insertMoney(machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS);
+        machine.refund();
+
+        MachineMetricsSnapshot snapshot = machine.getMetricsSnapshot();
+
+        Assert.assertEquals(1, snapshot.getRefundsCount());
+        Assert.assertEquals(25, snapshot.getRefundedInCents());
+        Assert.assertEquals(1, snapshot.getStateTransitionCount(MachineState.REFUNDING_CUSTOMER_MONEY));
+        Assert.assertEquals(1, snapshot.getLatency(MachineOperation.INSERT_MONEY).getCount());
+        Assert.assertEquals(1, snapshot.getLatency(MachineOperation.REFUND).getCount());
+    }
+
+    @Test
+    public void Should_CreditWholeBurstOnce_When_InsertingManyCoinsAtOnce() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        VendingSession session = machine.openSession();
+        int quartersCount = machine.getChangeInventory().getCountOfPayable(Coin.TWENTY_FIVE_CENTS);
 
+        machine.insertMoney(session, machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS, 20);
+
+        Assert.assertEquals(500, session.getAccumulatedMoneyInCents());
+        Assert.assertEquals(20, session.getEscrow().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+        Assert.assertEquals(quartersCount, machine.getChangeInventory().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+        Assert.assertEquals(OperationResult.UNSUPPORTED_PAYABLE_TYPE, machine.tryInsertMoney(session, machine.getNoteSlot(), Note.HUNDRED_DOLLARS_BILL, 3));
+        Assert.assertEquals(500, session.getAccumulatedMoneyInCents());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowIllegalArgumentException_When_RestoringASnapshotWithAnUnknownState() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        ByteBuffer buffer = ByteBuffer.allocate(machine.getSnapshotSize());
+        machine.snapshot(buffer);
+
+        /** The operating state's ordinal follows the magic, the version and the grid's size **/
+        buffer.putInt(4 * Integer.BYTES, MachineState.values().length);
+        buffer.flip();
+        new SnackVendingMachine().restore(buffer);
+    }
+
+    @Test
+    public void Should_LeaveTheMachineAsItWas_When_RestoringASnapshotWithAnUnknownItem() {
+        SnackVendingMachine snapshotMachine = new SnackVendingMachine();
+        snapshotMachine.getChangeInventory().clear();
+        ByteBuffer buffer = ByteBuffer.allocate(snapshotMachine.getSnapshotSize());
+        snapshotMachine.snapshot(buffer);
+
+        /** The grid comes last, its last slot's item ordinal right before the quantities **/
+        int slotsCount = snapshotMachine.getSnackSlotGrid().getSlotsCount();
+        buffer.put(buffer.capacity() - slotsCount * 2 * Integer.BYTES - 1, (byte) SnackItem.values().length);
+        buffer.flip();
+
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+        machine.getSnackSlots()[0][0].setCapacity(5);
+        machine.getSnackSlots()[0][0].setQuantity(5);
+        Map<Payable, Integer> inventory = new HashMap<>(machine.getChangeInventory().getInventory());
+
+        try {
+            machine.restore(buffer);
+            Assert.fail("The snapshot names an unknown item");
+        } catch (IllegalArgumentException illegalArgumentException) {
+            Assert.assertEquals(inventory, machine.getChangeInventory().getInventory());
+            Assert.assertEquals(SnackItem.BAGEL, machine.getSnackSlots()[0][0].getItem());
+            Assert.assertEquals(5, machine.getSnackSlotGrid().getTotalQuantity(SnackItem.BAGEL));
+        }
+
+        /** Negative counts are rejected as well **/
+        buffer.clear();
+        snapshotMachine.snapshot(buffer);
+        buffer.putInt(buffer.capacity() - snapshotMachine.getSnackSlotGrid().getSerializedSize() - Integer.BYTES, -1);
+        buffer.flip();
+
+        try {
+            machine.restore(buffer);
+            Assert.fail("The snapshot holds a negative count");
+        } catch (IllegalArgumentException illegalArgumentException) {
+            Assert.assertEquals(inventory, machine.getChangeInventory().getInventory());
+        }
+    }
+
+    @Test
+    public void Should_LeaveTheSessionAsItWas_When_TheRefundCannotBePaid() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.getChangeInventory().clear();
+        VendingSession session = machine.openSession();
+        machine.insertMoney(session, machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS);
+        session.setAccumulatedMoneyInCents(100);
+        MachineState state = machine.getCurrentlyOperatingState();
+
+        /** Only the quarter is escrowed, the other 75 cents cannot be paid out **/
+        try {
+            machine.refund(session);
+            Assert.fail("The refund cannot be paid from an empty change inventory");
+        } catch (InsufficientChangeException insufficientChangeException) {
+            Assert.assertEquals(100, session.getAccumulatedMoneyInCents());
+            Assert.assertEquals(1, session.getEscrow().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+            Assert.assertEquals(state, machine.getCurrentlyOperatingState());
+        }
+    }
+
+    @Test
+    public void Should_PutTheItemBack_When_TheCardCaptureFails() {
+        SimulatedCardPaymentProcessor processor = new SimulatedCardPaymentProcessor(0, 0, 0, new Random(7)) {
+            @Override
+            public CompletableFuture<Void> capture(CardAuthorization authorization, long amountInCents) {
+                throw new IllegalStateException("Processor is down");
+            }
+        };
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.setCardPaymentProcessor(processor);
+        machine.getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+        machine.getSnackSlots()[0][0].setCapacity(5);
+        machine.getSnackSlots()[0][0].setQuantity(1);
+        Card card = new Card("4002123456789900", "VISA", 100);
+
+        VendingSession session = machine.openSession();
+        session.setShouldStartProcessingRequest(true);
+        machine.processRequestAndReturnSelectedSnackItem(session, machine.getSnackSlots()[0][0]);
+        machine.insertMoney(session, machine.getCardSlot(), card);
+
+        Assert.assertEquals(OperationResult.CARD_DECLINED, machine.tryDispenseSelectedItemAndCustomerChange(session, new PurchaseReceipt()));
+        Assert.assertEquals(1, machine.getSnackSlots()[0][0].getQuantity());
+        Assert.assertEquals(0, machine.getSalesTotalInCents());
+        Assert.assertEquals(0, processor.getHeldInCents(card));
+        Assert.assertEquals(1, machine.getMetricsSnapshot().getCardCaptureFailuresCount());
+    }
+
+    @Test
+    public void Should_ChargeThePinnedPrice_When_RepricedDuringAPurchase() {
+        PriceBook segmentPriceBook = new PriceBook();
+        SnackVendingMachine[] machines = {new SnackVendingMachine(), new SnackVendingMachine()};
+        VendingSession[] sessions = new VendingSession[machines.length];
+
+        for (int index = 0; index < machines.length; index++) {
+            machines[index].setPriceBook(segmentPriceBook);
+            machines[index].getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+            machines[index].getSnackSlots()[0][0].setCapacity(5);
+            machines[index].getSnackSlots()[0][0].setQuantity(5);
+            machines[index].getChangeInventory().putPayableWithCount(Coin.FIFTY_CENTS, 1);
+            sessions[index] = machines[index].openSession();
+        }
+
+        sessions[0].setShouldStartProcessingRequest(true);
+        machines[0].processRequestAndReturnSelectedSnackItem(sessions[0], machines[0].getSnackSlots()[0][0]);
+
+        /** One swap reprices every machine of the segment, the pinned session keeps its price **/
+        segmentPriceBook.reprice(priceTable -> priceTable.withPriceInCents(SnackItem.BAGEL, 400));
+
+        sessions[1].setShouldStartProcessingRequest(true);
+        machines[1].processRequestAndReturnSelectedSnackItem(sessions[1], machines[1].getSnackSlots()[0][0]);
+
+        for (int index = 0; index < machines.length; index++) {
+            machines[index].insertMoney(sessions[index], machines[index].getCoinSlot(), Coin.ONE_DOLLAR, 2);
+        }
+
+        Map<Payable, Integer> change = machines[0].dispenseSelectedItemAndCustomerChange(sessions[0]).getSecond();
+        Assert.assertEquals(Collections.singletonMap(Coin.FIFTY_CENTS, 1), change);
+        Assert.assertEquals(150, machines[0].getSalesTotalInCents());
+        Assert.assertEquals(OperationResult.NOT_FULLY_PAID, machines[1].tryDispenseSelectedItemAndCustomerChange(sessions[1], new PurchaseReceipt()));
+        Assert.assertEquals(2, segmentPriceBook.getCurrent().getVersion());
+        Assert.assertEquals(150, SnackItem.BAGEL.getPriceInCents());
+    }
+
+    @Test
+    public void Should_GiveBackEscrowedCoins_When_CancellingWithAnEmptyChangeInventory() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.getChangeInventory().clear();
+        machine.getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+        machine.getSnackSlots()[0][0].setCapacity(5);
+        machine.getSnackSlots()[0][0].setQuantity(5);
+
+        VendingSession buyingSession = machine.openSession();
+        buyingSession.setShouldStartProcessingRequest(true);
+        machine.processRequestAndReturnSelectedSnackItem(buyingSession, machine.getSnackSlots()[0][0]);
+        machine.insertMoney(buyingSession, machine.getCoinSlot(), Coin.ONE_DOLLAR);
+        machine.insertMoney(buyingSession, machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS, 3);
+
+        /** The change can only come from the customer's own quarters **/
+        Map<Payable, Integer> change = machine.dispenseSelectedItemAndCustomerChange(buyingSession).getSecond();
+        Assert.assertEquals(Collections.singletonMap(Coin.TWENTY_FIVE_CENTS, 1), change);
+        Assert.assertEquals(1, machine.getChangeInventory().getCountOfPayable(Coin.ONE_DOLLAR));
+        Assert.assertEquals(2, machine.getChangeInventory().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+
+        VendingSession cancellingSession = machine.openSession();
+        machine.insertMoney(cancellingSession, machine.getCoinSlot(), Coin.FIFTY_CENTS, 2);
+        machine.insertMoney(cancellingSession, machine.getNoteSlot(), Note.TWENTY_DOLLARS_BILL);
+
+        Map<Payable, Integer> refund = machine.cancelRequestAndRefundCustomer(cancellingSession);
+        Assert.assertEquals(2, (int) refund.get(Coin.FIFTY_CENTS));
+        Assert.assertEquals(1, (int) refund.get(Note.TWENTY_DOLLARS_BILL));
+        Assert.assertEquals(2, refund.size());
+        Assert.assertTrue(cancellingSession.getEscrow().isEmpty());
+        Assert.assertEquals(0, machine.getChangeInventory().getCountOfPayable(Note.TWENTY_DOLLARS_BILL));
+    }
+
+    @Test
+    public void Should_KeepTheCoinsInEscrow_When_TheDispenseFailsAfterReservingChangeFromThem() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        machine.getChangeInventory().clear();
+        SnackSlot snackSlot = machine.getSnackSlots()[0][0];
+        snackSlot.setItem(SnackItem.BAGEL);
+        snackSlot.setCapacity(5);
+        snackSlot.setQuantity(1);
+
+        VendingSession session = machine.openSession();
+        session.setShouldStartProcessingRequest(true);
+        machine.processRequestAndReturnSelectedSnackItem(session, snackSlot);
+        machine.insertMoney(session, machine.getCoinSlot(), Coin.ONE_DOLLAR);
+        machine.insertMoney(session, machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS, 3);
+
+        /** Another customer takes the last bagel once the change is planned from the escrowed quarters **/
+        snackSlot.getGrid().tryDispenseItem(snackSlot.getSlotId());
+
+        Assert.assertEquals(OperationResult.SOLD_OUT, machine.tryDispenseSelectedItemAndCustomerChange(session, new PurchaseReceipt()));
+        Assert.assertEquals(3, session.getEscrow().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+        Assert.assertEquals(0, machine.getChangeInventory().getCountOfPayable(Coin.TWENTY_FIVE_CENTS));
+
+        Map<Payable, Integer> refund = machine.cancelRequestAndRefundCustomer(session);
+        Assert.assertEquals(1, (int) refund.get(Coin.ONE_DOLLAR));
+        Assert.assertEquals(3, (int) refund.get(Coin.TWENTY_FIVE_CENTS));
+        Assert.assertEquals(2, refund.size());
+    }
+
+    @Test
+    public void Should_KeepTakingKeypadInput_When_CardAuthorizationIsInFlight() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        SimulatedCardPaymentProcessor processor = new SimulatedCardPaymentProcessor(200, 200, 0, new Random(7));
+        Card visa = new Card("4002123456789999", "VISA", 10);
+        machine.setCardPaymentProcessor(processor);
+        machine.getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+        machine.getSnackSlots()[0][0].setCapacity(5);
+        machine.getSnackSlots()[0][0].setQuantity(5);
+
+        VendingSession session = machine.openSession();
+        machine.insertMoney(session, machine.getCardSlot(), visa);
+        Assert.assertFalse(session.getCardAuthorization().isDone());
+
+        session.setShouldStartProcessingRequest(true);
+        Assert.assertEquals(OperationResult.OK, machine.tryProcessRequest(session, machine.getSnackSlots()[0][0]));
+        Assert.assertEquals(SnackItem.BAGEL, machine.dispenseSelectedItemAndCustomerChange(session).getFirst());
+        Assert.assertEquals(8.5, visa.getBalance(), 0);
+        Assert.assertEquals(0, processor.getHeldInCents(visa));
+
+        /** An answer slower than the timeout declines the payment **/
+        PurchaseReceipt receipt = new PurchaseReceipt();
+        machine.setCardAuthorizationTimeoutMillis(20);
+        machine.insertMoney(session, machine.getCardSlot(), visa);
+        session.setShouldStartProcessingRequest(true);
+        machine.tryProcessRequest(session, machine.getSnackSlots()[0][0]);
+
+        Assert.assertEquals(OperationResult.CARD_DECLINED, machine.tryDispenseSelectedItemAndCustomerChange(session, receipt));
+        Assert.assertNull(session.getCardAuthorization());
+        Assert.assertEquals(8.5, visa.getBalance(), 0);
+    }
+
+    @Test
+    public void Should_GoOutOfServiceOnceTheDispenseCompletes_When_DisabledWhileDispensing() {
+        SnackVendingMachine machine = new SnackVendingMachine();
+        VendingSession session = machine.openSession();
+        machine.getSnackSlots()[0][0].setItem(SnackItem.BAGEL);
+        machine.getSnackSlots()[0][0].setCapacity(5);
+        machine.getSnackSlots()[0][0].setQuantity(5);
+        machine.getStateTransitionTable().onEntry(
+                MachineState.DISPENSING_SELECTED_ITEM_AND_CUSTOMER_CHANGE,
+                (fromState, toState) -> machine.setFunctional(false)
+        );
+
+        session.setShouldStartProcessingRequest(true);
+        machine.processRequestAndReturnSelectedSnackItem(session, machine.getSnackSlots()[0][0]);
+        machine.insertMoney(session, machine.getCoinSlot(), Coin.FIFTY_CENTS);
+        machine.insertMoney(session, machine.getCoinSlot(), Coin.ONE_DOLLAR);
+
+        Assert.assertEquals(SnackItem.BAGEL, machine.dispenseSelectedItemAndCustomerChange(session).getFirst());
+        Assert.assertEquals(MachineState.OUT_OF_SERVICE, machine.getCurrentlyOperatingState());
+
+        session.setShouldStartProcessingRequest(true);
+        Assert.assertEquals(OperationResult.ILLEGAL_STATE_TRANSITION, machine.tryProcessRequest(session, machine.getSnackSlots()[0][0]));
+        Assert.assertFalse(machine.tryTransitionTo(MachineState.PROCESSING_CUSTOMER_SELECTION));
+        Assert.assertEquals(MachineState.OUT_OF_SERVICE, machine.getCurrentlyOperatingState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowIllegalArgumentException_When_AcceptingAPayableThatIsNotADenomination() {
+        new MoneySlot(null, Arrays.asList(Coin.ONE_DOLLAR, new Card("4002123456789900", "VISA", 100))) {
+            @Override
+            public OperationResult checkEntry(Payable entry) {
+                return OperationResult.OK;
+            }
+        };
+    }
+
+    @Test
+    public void Should_RecordToAnyJournal_When_AttachingOneThatIsNotMapped() {
+        List<String> records = new ArrayList<>();
+        SnackVendingMachine machine = new SnackVendingMachine();
+
+        machine.attachJournal(new NoOpMachineJournal() {
+            @Override
+            public void recordMoneyInserted(Payable payable, int count) {
+                records.add("inserted " + payable.getWorthInCents() + " x " + count);
+            }
+
+            @Override
+            public void recordRefundIssued(long amountInCents) {
+                records.add("refunded " + amountInCents);
+            }
+        });
+
+        machine.insertMoney(machine.getCoinSlot(), Coin.TWENTY_FIVE_CENTS, 2);
+        machine.refund();
+
+        Assert.assertEquals(Arrays.asList("inserted 25 x 2", "refunded 50"), records);
+    }
+
+    @Test
+    public void Should_RejectEveryTransitionOffThePurchaseLifecycle_When_UsingTheDefaultTable() {
+        StateTransitionTable table = StateTransitionTable.createDefault();
+        MachineState idle = MachineState.IDLE_WAITING_CUSTOMER_MONEY_ENTRY;
+        MachineState processing = MachineState.PROCESSING_CUSTOMER_SELECTION;
+        MachineState dispensing = MachineState.DISPENSING_SELECTED_ITEM_AND_CUSTOMER_CHANGE;
+        MachineState refunding = MachineState.REFUNDING_CUSTOMER_MONEY;
+        MachineState outOfService = MachineState.OUT_OF_SERVICE;
+        Map<MachineState, List<MachineState>> allowedTargets = new EnumMap<>(MachineState.class);
+
+        allowedTargets.put(outOfService, Arrays.asList(idle));
+        allowedTargets.put(idle, Arrays.asList(processing, refunding, outOfService));
+        allowedTargets.put(processing, Arrays.asList(idle, dispensing, refunding, outOfService));
+        allowedTargets.put(dispensing, Arrays.asList(idle, refunding));
+        allowedTargets.put(refunding, Arrays.asList(idle, outOfService));
+
+        for (MachineState fromState : MachineState.values()) {
+            for (MachineState toState : MachineState.values()) {
+                Assert.assertEquals(
+                        fromState + " -> " + toState,
+                        allowedTargets.get(fromState).contains(toState),
+                        table.isAllowed(fromState, toState)
+                );
+            }
+        }
+
+        /** A machine cannot skip the selection **/
+        SnackVendingMachine machine = new SnackVendingMachine();
+        Assert.assertFalse(machine.tryTransitionTo(dispensing));
+        Assert.assertEquals(idle, machine.getCurrentlyOperatingState());
+    }
+
+    @Test
+    public void Should_CoalesceEditsIntoOneFrame_When_TypingFasterThanTheRefreshRate() {
+        List<String> drawnFrames = new ArrayList<>();
+        DisplayScreen displayScreen = new DisplayScreen();
+        displayScreen.setDriver((frame, length) -> drawnFrames.add(new String(frame, 0, length)));
+        displayScreen.getRenderer().setFramesPerSecond(1);
+        displayScreen.getRenderer().flush();
+
+        displayScreen.appendCharacter('C');
+        displayScreen.appendCharacter('9');
+        displayScreen.delete();
+        displayScreen.appendCharacter('3');
+        displayScreen.getRenderer().flush();
+        displayScreen.getRenderer().flush();
+
+        Assert.assertEquals(Arrays.asList("", "C3"), drawnFrames);
+        Assert.assertTrue(displayScreen.getRenderer().getSkippedFramesCount() >= 1);
+        Assert.assertEquals(
+                displayScreen.getRenderer().getRenderedFramesCount(),
+                displayScreen.getRenderer().getFrameLatency().getCount()
+        );
+    }
 }
@@ -0,0 +1,32 @@
+package utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money helpers. Amounts are carried around the machine as
+ * a primitive long of whole cents, BigDecimal is only used at the display
+ * and reporting edges (printing, getters kept for compatibility).
+ */
+public final class Money {
+    public static final int CENTS_SCALE = 2;
+    public static final long CENTS_PER_DOLLAR = 100L;
+
+    private Money() { }
+
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(CENTS_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * CENTS_PER_DOLLAR);
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, CENTS_SCALE);
+    }
+
+    public static String format(long cents) {
+        return toBigDecimal(cents).toPlainString();
+    }
+}